@@ -0,0 +1,89 @@
+/*
+ * ActiveRegion.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import zone.Rectangle;
+
+/**
+ * A rectangular region of a particular Anoto paper that has some special meaning: the transmit box,
+ * a form field, a command box. Co-ordinates are in the same units as the samples given by
+ * <i>AnotoLogParser</i>.
+ *<p>
+ * Strokes made in a region marked as <i>filtered</i> are dropped from the page data altogether, as
+ * is done for the transmit box. Strokes made in other regions are kept, and tagged with the region.
+ *
+ * @see PaperRegions
+ * @see PaperRegionRegistry
+ * @author dak
+ * @since you asked
+ */
+public class ActiveRegion
+{
+    /** the kinds of active region */
+    public enum Kind {
+        /** the box that is marked to send the pen data */
+        TransmitBox,
+        /** a field of a printed form */
+        FormField,
+        /** a box for marking single stroke commands */
+        CommandBox
+    }
+
+    /**
+     * create an active region
+     *
+     * @param id name of the region
+     * @param kind the kind of region
+     * @param bounds the extent of the region on the paper
+     * @param filtered true if strokes in the region are to be dropped from the page
+     */
+    public ActiveRegion(String id, Kind kind, Rectangle bounds, boolean filtered)
+    {
+        this.id = id;
+        this.kind = kind;
+        this.bounds = bounds;
+        this.filtered = filtered;
+    }
+
+    /**
+     * tests whether a point lies in this region
+     *
+     * @param x x co-ordinate
+     * @param y y co-ordinate
+     * @return true if the point lies in the region, or on its edge
+     */
+    public boolean Contains(float x, float y)
+    {
+        return x >= bounds.left && x <= bounds.right && y >= bounds.top && y <= bounds.bottom;
+    }
+
+    /**
+     * maps the name of a kind of region, as found in a regions file, onto a Kind.
+     *
+     * @param s "transmit", "field", or "command"
+     * @return the kind, or null if the name isn't known
+     */
+    public static Kind kindOf(String s)
+    {
+        if (s.equals("transmit")) {
+            return Kind.TransmitBox;
+        } else if (s.equals("field")) {
+            return Kind.FormField;
+        } else if (s.equals("command")) {
+            return Kind.CommandBox;
+        }
+        return null;
+    }
+
+    /** name of the region */
+    public String       id;
+    /** the kind of region */
+    public Kind         kind;
+    /** the extent of the region on the paper */
+    public Rectangle    bounds;
+    /** true if strokes made in this region are dropped from the page data */
+    public boolean      filtered;
+}
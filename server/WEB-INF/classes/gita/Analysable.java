@@ -0,0 +1,29 @@
+/*
+ * Analysable.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import zone.HTMLwriter;
+
+/**
+ * Something whose features can be calculated: a <i>Stroke</i> or a <i>StrokeGroup</i>. It lets
+ * <i>PageData.AnalyseStrokesParallel()</i> hand groups and strokes to the same kind of task.
+ *
+ * @see PageData
+ * @see Stroke
+ * @see StrokeGroup
+ * @author dak
+ * @since you asked
+ */
+public interface Analysable
+{
+    /**
+     * calculates the features, and stores them in the <i>info</i>
+     *
+     * @param http HTMLwriter for diagnostic output, or null
+     * @throws Cow
+     */
+    public void CalculateFeatures(HTMLwriter http) throws Cow;
+}
@@ -5,11 +5,13 @@
  */
 package gita;
  
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.LinkedList;
 import zone.HTMLwriter;
-import zone.Rectangle;
  
 /**
  * A processor for Anoto log file data. Anoto log file data is in a simple ascii format, specified in
@@ -22,6 +24,9 @@ import zone.Rectangle;
  * better use of these marks... ie. have single stroke command chars
  * or such...
  *<p>
+ * The transmit box, and any other active regions, are looked up for each paper id in <i>regions</i>.
+ * Strokes touching a filtered region are dropped; strokes starting in any other region are tagged with it.
+ *<p>
  * The form of Anoto log data is a freely formatted ascii text file:
  *<ul>
  *   <li>    pen id, ...  16 chars.
@@ -31,6 +36,12 @@ import zone.Rectangle;
  *   <li>    total number of samples ... integer 
  *   <li>    (number of samples (x sample y sample)*)* ... integer float float 
  *</ul>
+ *<p>
+ * Tokens are normally read by an <i>AnotoLogScanner</i>, which converts numbers straight from the
+ * character data. The original regex scanner is kept, and can be selected with <i>regexScanner</i>,
+ * to compare the two. Either way, the time taken for the parse is reported in the diagnostic output.
+ *
+ * @see AnotoLogScanner
  *
  * @author  dak
  * @since you asked
@@ -45,12 +56,51 @@ public class AnotoLogParser
         rgbColor = new int[3];
         penId = null;
         paperId = null;
-        anotoTransmitBox = new Rectangle(385,560,405,580);
+        regions = defaultRegions;
         p = Pattern.compile("\\s\\s*|([0-9a-f]{16})|(\\d\\d*\\.\\d\\d*\\.\\d\\d*\\.\\d\\d*)|(-?\\d\\d*\\.\\d\\d*|-?\\.\\d\\d*)|(\\d\\d*)");
     }
 
     /**
-     * Crude scanner for the AnotoLogParser.
+     * Scans the next token, using whichever of the two scanners is active for this parse.
+     *
+     * @return an int giving the type of the scanned token. =1 for a pen-id, =2 for a paper-id, =3 for a real number, =4 for an int number
+     */
+    int nextTok()
+        throws IOException
+    {
+        if (scanner != null) {
+            tokenType = scanner.scanTok();
+            return tokenType;
+        }
+        return scanTok();
+    }
+
+    /**
+     * @return the text of the current token
+     */
+    String tokenText()
+    {
+        return (scanner != null)? scanner.text() : token;
+    }
+
+    /**
+     * @return the value of the current token, which should be an int
+     */
+    int tokenInt()
+    {
+        return (scanner != null)? scanner.intValue : Integer.parseInt(token);
+    }
+
+    /**
+     * @return the value of the current token, which should be a number
+     */
+    float tokenFloat()
+    {
+        return (scanner != null)? scanner.floatValue : Float.parseFloat(token);
+    }
+
+    /**
+     * Crude regex scanner for the AnotoLogParser.
      *
      * @return an int giving the type of the scanned token. =1 for a pen-id, =2 for a paper-id, =3 for a real number, =4 for an int number
      */
@@ -104,136 +154,241 @@ public class AnotoLogParser
      */
     PageData parseLogData(String logData, HTMLwriter http)
     throws LogParseException
+    {
+        if (logData == null || logData.length() == 0) {
+            http.printbr("Parsing log data...");
+            http.printbr("Absence of log data... oh hell!");
+            return new PageData();
+        }
+        http.printbr("Scanning non-absence of data, length "+logData.length()+"...");
+        return parseLogData(new StringReader(logData), http);
+    }
+
+    /**
+     * Parse the anoto log data read from the given Reader, returning the first page found. Diagnostic
+     * output is sent to the html page attached to the given HTMLwriter.
+     *
+     * @param logData a Reader giving the log data. It is read to the end, but not closed.
+     * @param http HTMLwriter for diagnostic output
+     * @return a PageData structure holding all the stroke data for the first page of the log
+     * @see #parseLogPages(Reader, HTMLwriter)
+     */
+    PageData parseLogData(Reader logData, HTMLwriter http)
+    throws LogParseException
+    {
+        LinkedList<PageData> pages = parseLogPages(logData, http);
+        return pages.isEmpty()? new PageData(): pages.getFirst();
+    }
+
+    /**
+     * Parse the anoto log data read from the given Reader. A log holds one or more blocks, each
+     * headed by a pen id and a paper id, and each block is returned as a seperate PageData. Strokes
+     * are built as the data is scanned, so only the pages being built are held in memory, not the
+     * whole of the log. Diagnostic output is sent to the html page attached to the given HTMLwriter.
+     *<p>
+     * The regex scanner needs the whole log as a CharSequence, so if <i>regexScanner</i> is set, the
+     * Reader is drained into a buffer first.
+     *<p>
+     * If a parse error is found, the pages parsed so far are returned, with the last of them only
+     * partially filled.
+     *
+     * @param logData a Reader giving the log data. It is read to the end, but not closed.
+     * @param http HTMLwriter for diagnostic output
+     * @return a list of PageData structures, one for each pen/paper block in the log
+     * @see HTMLwriter
+     * @see PageData
+     */
+    LinkedList<PageData> parseLogPages(Reader logData, HTMLwriter http)
+    throws LogParseException
     {
         http.printbr("Parsing log data...");
-        PageData page = new PageData();
+        LinkedList<PageData> pages = new LinkedList<>();
 
+        long    startTime = System.nanoTime();
+        nParsedSample = 0;
+
+        try {
+            if (regexScanner) {
+                StringBuilder   data = new StringBuilder();
+                char            buf[] = new char[4096];
+                int             n;
+                while ((n = logData.read(buf)) > 0) {
+                    data.append(buf, 0, n);
+                }
+                scanner = null;
+                m = p.matcher(data);
+            } else {
+                scanner = new AnotoLogScanner(logData);
+                m = null;
+            }
+
+            tokenType = nextTok();
+            if (tokenType != 1) {
+                throw new LogParseException("Expecting a pen");
+            }
+            while (tokenType == 1) {
+                PageData page = new PageData();
+                pages.add(page);
+                parsePage(page);
+            }
+            if (tokenType != 0) {
+                throw new LogParseException("Expecting a pen at token "+tokenText()+", type "+tokenType);
+            }
+        } catch (LogParseException lpe) {
+            http.printbr("parse error: "+lpe.getMessage());
+//                    strokes.nStroke = 0;
+        } catch (IOException e) {
+            http.printbr("io exception: "+e.getMessage());
+        }
+        parseTime = System.nanoTime() - startTime;
+        http.printbr("Parsed "+nParsedSample+" samples on "+pages.size()+" pages in "+(parseTime/1000)+"us with the "+
+                        (regexScanner? "regex": "direct")+" scanner");
+        scanner = null;
+        m = null;
+        return pages;
+    }
+
+    /**
+     * Parses a single pen/paper block of log data into the given page. The pen id should be the current
+     * token. On return, the token following the block has been scanned.
+     *
+     * @param page the PageData to fill
+     * @throws LogParseException if the block is badly formed
+     * @throws IOException if the underlying Reader does
+     */
+    void parsePage(PageData page)
+        throws LogParseException, IOException
+    {
         float   serverScale = 2;
 
         float   maxX = 0, minX=0;
         float   maxY = 0, minY = 100;
-        if (logData != null && logData.length() > 0) {
-            http.printbr("Scanning non-absence of data, length "+logData.length()+"...");
-            penId = null;
-            paperId = null;
-            rgbColor[0] = rgbColor[1] = rgbColor[2] = 0;
-
-            m = p.matcher(logData);
-
-            try {
-                tokenType = scanTok();
-//                    http.printbr("pid "+token);
-                if (tokenType != 1) {
-                    throw new LogParseException("Expecting a pen");
-                }
-                penId = token;
 
-                tokenType = scanTok();
+        penId = tokenText();
+        paperId = null;
+        rgbColor[0] = rgbColor[1] = rgbColor[2] = 0;
+
+        tokenType = nextTok();
 //                    http.printbr("papid "+token);
-                if (tokenType != 2) {
-                    throw new LogParseException("Expect paper");
-                }
-                paperId = token;
+        if (tokenType != 2) {
+            throw new LogParseException("Expect paper");
+        }
+        paperId = tokenText();
 
-                page.info = "anoto dump, pen "+penId+", paper "+paperId;
+        page.info = "anoto dump, pen "+penId+", paper "+paperId;
+        page.penId = penId;
+        page.paperId = paperId;
+        PaperRegions    paperRegions = regions != null? regions.get(paperId): null;
 
-                for (short i=0; i<3; i++) {
-                    tokenType = scanTok();
+        for (short i=0; i<3; i++) {
+            tokenType = nextTok();
 //                        http.printbr("rgb "+token);
-                    if (tokenType != 4) {
-                        throw new LogParseException("Expect rgb color");
-                    }
-                    rgbColor[i] = Integer.parseInt(token);
-                }
+            if (tokenType != 4) {
+                throw new LogParseException("Expect rgb color");
+            }
+            rgbColor[i] = tokenInt();
+            page.penColor[i] = rgbColor[i];
+        }
 
-                tokenType = scanTok();
+        tokenType = nextTok();
 //                    http.printbr("nstroke "+token);
-                if (tokenType != 4) {
-                    throw new LogParseException("Expect number of strokes");
-                 }
+        if (tokenType != 4) {
+            throw new LogParseException("Expect number of strokes");
+         }
 
-                int nRecvdStroke = Integer.parseInt(token);
+        int nRecvdStroke = tokenInt();
 
-                tokenType = scanTok();
+        tokenType = nextTok();
 //                    http.printbr("nsample "+token);
-                if (tokenType != 4) {
-                    throw new LogParseException("Expect number of samples");
-                }
+        if (tokenType != 4) {
+            throw new LogParseException("Expect number of samples");
+        }
 
-                int     nSample = Integer.parseInt(token);
+        int     nSample = tokenInt();
 
-                for (short i=0; i<nRecvdStroke; i++) {
-                    tokenType = scanTok();
+        for (short i=0; i<nRecvdStroke; i++) {
+            tokenType = nextTok();
 //                        http.printbr("n stroke sample "+token);
-                    if (tokenType != 4) {
-                        throw new LogParseException("Expect number of stroke samples");
-                    }
-                    boolean filteredStroke = false;
+            if (tokenType != 4) {
+                throw new LogParseException("Expect number of stroke samples");
+            }
+            boolean filteredStroke = false;
 
-                    int nStrokeSample = Integer.parseInt(token);
-                    Stroke s = new Stroke();
-                    s.SetMax(nStrokeSample);
-                    s.nSample = 0;
+            int nStrokeSample = tokenInt();
+            Stroke s = new Stroke();
+            s.SetMax(nStrokeSample);
 
-                    for (short j=0; j<nStrokeSample; j++) {
+            for (short j=0; j<nStrokeSample; j++) {
 
-                        tokenType = scanTok();
-                        if (tokenType != 3 && tokenType != 4) {
-                            throw new LogParseException("Expect sample at token "+token+", type "+tokenType);
-                        }
-                        float   x = serverScale*Float.parseFloat(token);
-                        tokenType = scanTok();
-                        if (tokenType != 3 && tokenType != 4) {
-                            throw new LogParseException("Expect sample at token "+token+", type "+tokenType);
-                        }
-                        float   y = serverScale*Float.parseFloat(token);
-                        InkSample   sample = new InkSample(x,y);
+                tokenType = nextTok();
+                if (tokenType != 3 && tokenType != 4) {
+                    throw new LogParseException("Expect sample at token "+tokenText()+", type "+tokenType);
+                }
+                float   x = serverScale*tokenFloat();
+                tokenType = nextTok();
+                if (tokenType != 3 && tokenType != 4) {
+                    throw new LogParseException("Expect sample at token "+tokenText()+", type "+tokenType);
+                }
+                float   y = serverScale*tokenFloat();
+                nParsedSample++;
 
-                        if (anotoTransmitBox.Contains(sample)) {
+// the rest of the stroke still has to be read, to stay in step with the data for the following strokes
+                if (filteredStroke) {
+                    continue;
+                }
+                if (paperRegions != null) {
+                    ActiveRegion    region = paperRegions.Find(x, y);
+                    if (region != null) {
+                        if (region.filtered) {
                             filteredStroke = true;
-                            break;
-                        }
-
-                        if (x < minX) {
-                            minX = x;
-                        } else if (x > maxX) {
-                            maxX = x;
+                            continue;
                         }
-
-                        if (y < minY) {
-                            minY = y;
-                        } else if (y > maxY) {
-                            maxY = y;
+                        if (s.nSample == 0) {
+                            s.region = region;
                         }
-
-                        s.sample[s.nSample] = sample;
-                        s.nSample++;
-                    }
-                    if (!filteredStroke) {
-                        page.add(s);
                     }
                 }
 
-                page.bounds.left = minX;
-                page.bounds.right = maxX;
-                page.bounds.top = minY;
-                page.bounds.bottom = maxY;
+                if (x < minX) {
+                    minX = x;
+                } else if (x > maxX) {
+                    maxX = x;
+                }
 
-            } catch (LogParseException lpe) {
-                http.printbr("parse error: "+lpe.getMessage());
-//                    strokes.nStroke = 0;
+                if (y < minY) {
+                    minY = y;
+                } else if (y > maxY) {
+                    maxY = y;
+                }
+
+                s.Add(x, y);
+            }
+            if (!filteredStroke) {
+                page.add(s);
             }
-        } else {
-            http.printbr("Absence of log data... oh hell!");
         }
-        return page;
 
+        page.bounds.left = minX;
+        page.bounds.right = maxX;
+        page.bounds.top = minY;
+        page.bounds.bottom = maxY;
+
+// scan ahead for the pen id of the next block, if there is one
+        tokenType = nextTok();
     }
 
     /** Pattern used for parsing words from the received log */
     Pattern     p;
     /** Matcher used for parsing words from the received log */
     Matcher     m;
+    /** Character level scanner used for parsing words from the received log, when not using the regex scanner */
+    AnotoLogScanner scanner;
+    /** set to use the original regex scanner, rather than an AnotoLogScanner, for timing comparisons */
+    boolean     regexScanner = false;
+    /** time taken by the most recent parse, in nanoseconds */
+    long        parseTime = 0;
+    /** number of samples read in the most recent parse */
+    int         nParsedSample = 0;
     /** The current word being processed from the Anoto log data */
     String      token;
     /** The type of word currently being processed from the Anoto log data. =1 for a pen-id, =2 for a paper-id, =3 for a real number, =4 for an int number */
@@ -245,7 +400,9 @@ public class AnotoLogParser
     String      paperId;
     /** the apparent color of the anoto pen, as reported by in the received log data */
     int         rgbColor[];
-    /** a rectangle giving the co-ordinates of the Anoto transmit box, (385,560,405,580) for page 44.0.3.8 */
-    Rectangle   anotoTransmitBox;
+    /** the active regions of each paper, including the Anoto transmit box, (385,560,405,580) for page 44.0.3.8 */
+    PaperRegionRegistry regions;
+    /** registry used when none is given, holding just the transmit box of the demo sheet */
+    static final PaperRegionRegistry    defaultRegions = PaperRegionRegistry.defaultRegistry();
 
 }
@@ -0,0 +1,307 @@
+/*
+ * AnotoLogScanner.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Hand rolled character level scanner for Anoto log data. This is the default scanner used by
+ * <i>AnotoLogParser</i>, replacing the regex scanner, which runs a full <i>Matcher.find()</i> and
+ * makes a String copy for every number in the log.
+ *<p>
+ * Characters are pulled from a <i>Reader</i> through a fixed size buffer. Words are gathered into a
+ * small reusable char array, and classified in place. Numbers are converted straight to primitives,
+ * and only pen and paper ids, which turn up once a page, are turned into Strings.
+ *<p>
+ * Token types are the same as those returned by <i>AnotoLogParser.scanTok()</i>. For well formed
+ * log data the token stream is identical. The regex scanner picks numbers out of the middle of junk;
+ * this one skips junk words entirely, and reads a leading '-' on an integer as a sign.
+ *
+ * @see AnotoLogParser
+ * @author dak
+ * @since you asked
+ */
+public class AnotoLogScanner
+{
+    /** token type for the end of the input */
+    public static final int     EOF = 0;
+    /** token type for a pen id: 16 hex chars */
+    public static final int     PEN_ID = 1;
+    /** token type for a paper id: number.number.number.number */
+    public static final int     PAPER_ID = 2;
+    /** token type for a real number */
+    public static final int     REAL = 3;
+    /** token type for an integer */
+    public static final int     INT = 4;
+
+    /**
+     * create a scanner reading from the given Reader
+     *
+     * @param r source of the log data
+     */
+    public AnotoLogScanner(Reader r)
+    {
+        reader = r;
+        buf = new char[4096];
+        bufLen = 0;
+        bufPos = 0;
+        word = new char[64];
+        wordLen = 0;
+    }
+
+    /**
+     * Scans the next token from the input.
+     *
+     * @return an int giving the type of the scanned token. =1 for a pen-id, =2 for a paper-id, =3 for a real number, =4 for an int number, =0 at end of input
+     * @throws IOException if the underlying Reader does
+     */
+    public int scanTok()
+        throws IOException
+    {
+        tokenType = EOF;
+        for (;;) {
+            int c = skipToWord();
+            if (c < 0) {
+                return EOF;
+            }
+            readWord();
+            tokenType = classifyWord();
+            if (tokenType != EOF) {
+                return tokenType;
+            }
+        }
+    }
+
+    /**
+     * Returns the text of the current token. This allocates, so is really only meant for pen and
+     * paper ids, and for error messages.
+     *
+     * @return the text of the current token
+     */
+    public String text()
+    {
+        return new String(word, 0, wordLen);
+    }
+
+    /**
+     * skips forward to the first character that could start a token
+     *
+     * @return the character found, or -1 at end of input
+     */
+    int skipToWord()
+        throws IOException
+    {
+        for (;;) {
+            if (bufPos >= bufLen && !fill()) {
+                return -1;
+            }
+            char c = buf[bufPos];
+            if (isWordChar(c)) {
+                return c;
+            }
+            bufPos++;
+        }
+    }
+
+    /**
+     * reads a run of word characters into <i>word</i>. Overlong words are truncated, and will
+     * fail classification.
+     */
+    void readWord()
+        throws IOException
+    {
+        wordLen = 0;
+        wordOverflow = false;
+        for (;;) {
+            if (bufPos >= bufLen && !fill()) {
+                return;
+            }
+            char c = buf[bufPos];
+            if (!isWordChar(c)) {
+                return;
+            }
+            if (wordLen < word.length) {
+                word[wordLen++] = c;
+            } else {
+                wordOverflow = true;
+            }
+            bufPos++;
+        }
+    }
+
+    /**
+     * works out what kind of token is sitting in <i>word</i>, setting <i>intValue</i> and
+     * <i>floatValue</i> for numbers.
+     *
+     * @return the token type, or EOF if the word isn't a token at all
+     */
+    int classifyWord()
+    {
+        if (wordOverflow || wordLen == 0) {
+            return EOF;
+        }
+        if (wordLen == 16 && isHex(0, 16)) {
+            return PEN_ID;
+        }
+        int     i = 0;
+        boolean negative = false;
+        if (word[0] == '-') {
+            negative = true;
+            i++;
+        }
+        int     numStart = i;
+        long    mantissa = 0;
+        int     nDigit = 0;
+        int     nFrac = 0;
+        int     nDot = 0;
+        int     runLen = 0;
+        boolean emptyRun = false;   // a digit run other than the leading one is empty
+        for (; i<wordLen; i++) {
+            char c = word[i];
+            if (c >= '0' && c <= '9') {
+                if (nDigit < 18) {
+                    mantissa = mantissa*10 + (c - '0');
+                    if (nDot > 0) {
+                        nFrac++;
+                    }
+                }
+                nDigit++;
+                runLen++;
+            } else if (c == '.') {
+                if (runLen == 0 && i > numStart) {
+                    emptyRun = true;
+                }
+                nDot++;
+                runLen = 0;
+            } else {
+                return EOF;
+            }
+        }
+        if (runLen == 0) {
+            return EOF;
+        }
+        if (emptyRun) {
+            return EOF;
+        }
+        if (nDot == 3 && !negative && word[0] != '.') {
+            return PAPER_ID;
+        }
+        if (nDot == 0) {
+            if (nDigit > 18) {
+                return EOF;
+            }
+            long v = negative? -mantissa: mantissa;
+            intValue = (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, v));
+            floatValue = v;
+            return INT;
+        }
+        if (nDot == 1) {
+            floatValue = decimalToFloat(mantissa, nDigit, nFrac, negative);
+            if (Float.isNaN(floatValue)) {
+                floatValue = Float.parseFloat(text());
+            }
+            return REAL;
+        }
+        return EOF;
+    }
+
+    /**
+     * tests whether a run of <i>word</i> is entirely lower case hex digits
+     */
+    boolean isHex(int start, int end)
+    {
+        for (int i=start; i<end; i++) {
+            char c = word[i];
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * tests whether the given character can be part of a token
+     */
+    static boolean isWordChar(char c)
+    {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || c == '.' || c == '-';
+    }
+
+    /**
+     * refills the input buffer from the reader
+     *
+     * @return false at end of input
+     */
+    boolean fill()
+        throws IOException
+    {
+        bufPos = 0;
+        bufLen = reader.read(buf, 0, buf.length);
+        if (bufLen <= 0) {
+            bufLen = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * converts a decimal number, given as its digits and the number of them after the point, to a
+     * float, the same as Float.parseFloat() would. With no more than MAX_FAST_DIGITS digits the
+     * mantissa is below 2^53, so it and the power of ten are both exact doubles, and the division is
+     * correctly rounded. Narrowing that to a float only differs from Float.parseFloat() if the double
+     * lands exactly on a midpoint between two floats. Longer numbers, and midpoints, are left to the
+     * library.
+     *
+     * @param mantissa the digits, as an integer
+     * @param nDigit the number of digits
+     * @param nFrac the number of digits after the point
+     * @param negative true if the number is negative
+     * @return the float, or NaN if the caller should use Float.parseFloat()
+     */
+    static float decimalToFloat(long mantissa, int nDigit, int nFrac, boolean negative)
+    {
+        if (nDigit > MAX_FAST_DIGITS || nFrac >= POW10.length) {
+            return Float.NaN;
+        }
+        double  v = mantissa / POW10[nFrac];
+        if ((Double.doubleToRawLongBits(v) & 0x1fffffffL) == 0x10000000L) {
+            return Float.NaN;
+        }
+        return (float)(negative? -v: v);
+    }
+
+    /** most digits a real number can have for decimalToFloat() to convert it. 10^15 < 2^53 */
+    static final int    MAX_FAST_DIGITS = 15;
+
+    /** exact powers of ten, for converting the mantissa of a real number */
+    static final double POW10[] = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** the type of the most recently scanned token */
+    public int      tokenType = EOF;
+    /** value of the most recently scanned token, if it is an INT */
+    public int      intValue = 0;
+    /** value of the most recently scanned token, if it is an INT or a REAL */
+    public float    floatValue = 0;
+
+    /** source of log data */
+    Reader          reader;
+    /** buffer of characters read from <i>reader</i> */
+    char            buf[];
+    /** number of valid characters in <i>buf</i> */
+    int             bufLen;
+    /** position of the next unread character in <i>buf</i> */
+    int             bufPos;
+    /** characters of the current word */
+    char            word[];
+    /** number of characters in <i>word</i> */
+    int             wordLen;
+    /** set if the current word didn't fit into <i>word</i> */
+    boolean         wordOverflow;
+}
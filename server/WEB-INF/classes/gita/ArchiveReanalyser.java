@@ -0,0 +1,780 @@
+/*
+ * ArchiveReanalyser.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import zone.HTMLwriter;
+
+/**
+ * Offline batch re-analysis of the logs archived by Gita under its processed/ directory. Every
+ * log-&lt;id&gt;-&lt;seq&gt;.svg (and .ink) file is memory mapped, parsed, and put through the same feature
+ * calculations as an upload to the servlet. The files are shared out over a fork-join pool, and a
+ * tab separated summary of the features of every stroke is written out, in archive order, so that
+ * runs with different tolerances can be compared.
+ *<p>
+ * Usage:
+ *<pre>
+ *   java gita.ArchiveReanalyser [-o results] [-h report.html] [-j threads] [-p] [-r resample-mode] [-s straighten-mode] [-f features] [-k scalar|simd] [-v] [-m matrix] [-c base-results] [-t name=value]... processed-dir
+ *</pre>
+ * <i>-t</i> overrides one of the non-final statics in <i>Tolerance</i>, and may be given more than once.
+ * <i>-p</i> also analyses the strokes of each page in parallel, as the "page-analysis" init parameter does.
+ * <i>-r</i> sets the way <i>StrokeAlysis</i> resamples contours, as the "resample-mode" init parameter does.
+ * <i>-s</i> sets the way it straightens them, as the "straighten-mode" init parameter does.
+ * <i>-f</i> sets the groups of features it works out, as the "stroke-features" init parameter does.
+ * <i>-k simd</i> uses the Vector API forms of the <i>InkFilta</i> geometry primitives, as the "ink-kernels"
+ * init parameter does, if the VM has the jdk.incubator.vector module.
+ * <i>-v</i> also runs every stroke through the stream forms of the filters of <i>StrokeCurveInfo</i>, in
+ * <i>InkStreamFilta</i>, and counts the strokes for which they don't give the same filtered trace as the
+ * batch filters, or the same features as the analysis, so that the two forms can't drift apart unseen.
+ * <i>-m</i> also writes a tab separated <i>FeatureMatrix</i> of every stroke, with all its groups of
+ * columns, for use by a classifier or clustering outside gita.
+ * <i>-c</i> compares the results with those of an earlier run, and prints how far the classification
+ * and the features of the strokes have drifted. For instance, to see what <i>Tolerance.fastTrig</i> costs:
+ *<pre>
+ *   java gita.ArchiveReanalyser -o exact.txt processed
+ *   java gita.ArchiveReanalyser -o fast.txt -t fastTrig=true -c exact.txt processed
+ *</pre>
+ * <i>-h</i> writes an html report holding the diagnostic output and feature displays for every file.
+ *
+ * @see Gita
+ * @see Tolerance
+ * @author dak
+ * @since you asked
+ */
+public class ArchiveReanalyser
+{
+    /** the columns of the summary */
+    static final String[]   SUMMARY_COLUMNS = {
+        "file", "page", "stroke", "samples", "info", "type",
+        "pathLength", "sumTangle", "weightedSumTangle", "meanTangle", "meanAbsTangle", "devTangle"
+    };
+    /** the column of the first numeric feature */
+    static final int        FIRST_FEATURE = 6;
+    /** number of fourier magnitudes in the feature matrix */
+    static final int        MATRIX_FOURIER = 8;
+    /** pattern matching the names of archived log files */
+    static final Pattern    LOG_FILE_PATTERN = Pattern.compile("log-(\\d*)-(\\d*)\\.(svg|ink)");
+
+    /**
+     * create a reanalyser for the archive in the given directory
+     *
+     * @param dir the processed/ directory of a gita installation
+     */
+    public ArchiveReanalyser(File dir)
+    {
+        archiveDirectory = dir;
+        nThread = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Command line entry point
+     *
+     * @param args command line arguments, as described in the class documentation
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        File    results = null;
+        File    report = null;
+        File    base = null;
+        File    matrixFile = null;
+        File    dir = null;
+        int     nThread = 0;
+        boolean verifyStreams = false;
+        LinkedList<String>  tolerances = new LinkedList<>();
+        for (int i=0; i<args.length; i++) {
+            if (args[i].equals("-o") && i+1 < args.length) {
+                results = new File(args[++i]);
+            } else if (args[i].equals("-h") && i+1 < args.length) {
+                report = new File(args[++i]);
+            } else if (args[i].equals("-j") && i+1 < args.length) {
+                nThread = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-p")) {
+                PageData.parallelAnalysis = true;
+            } else if (args[i].equals("-r") && i+1 < args.length) {
+                StrokeAlysis.ResampleMode m = StrokeAlysis.resampleModeOf(args[++i]);
+                if (m == null) {
+                    System.err.println("unknown resample mode "+args[i]);
+                    return;
+                }
+                StrokeAlysis.defaultResampleMode = m;
+            } else if (args[i].equals("-s") && i+1 < args.length) {
+                StrokeAlysis.StraightenMode m = StrokeAlysis.straightenModeOf(args[++i]);
+                if (m == null) {
+                    System.err.println("unknown straighten mode "+args[i]);
+                    return;
+                }
+                StrokeAlysis.defaultStraightenMode = m;
+            } else if (args[i].equals("-f") && i+1 < args.length) {
+                EnumSet<StrokeAlysis.Feature> f = StrokeAlysis.featuresOf(args[++i]);
+                if (f == null) {
+                    System.err.println("unknown stroke features "+args[i]);
+                    return;
+                }
+                StrokeAlysis.defaultFeatures = f;
+            } else if (args[i].equals("-k") && i+1 < args.length) {
+                boolean simd = args[++i].equals("simd");
+                if (InkVecta.Use(simd) != simd) {
+                    System.err.println("simd kernels not available, using scalar");
+                }
+            } else if (args[i].equals("-m") && i+1 < args.length) {
+                matrixFile = new File(args[++i]);
+            } else if (args[i].equals("-v")) {
+                verifyStreams = true;
+            } else if (args[i].equals("-c") && i+1 < args.length) {
+                base = new File(args[++i]);
+            } else if (args[i].equals("-t") && i+1 < args.length) {
+                tolerances.add(args[++i]);
+            } else if (dir == null) {
+                dir = new File(args[i]);
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (dir == null) {
+            usage();
+            return;
+        }
+        for (String t: tolerances) {
+            try {
+                setTolerance(t);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        if (results == null) {
+            results = new File(dir, "reanalysis.txt");
+        }
+
+        ArchiveReanalyser   r = new ArchiveReanalyser(dir);
+        r.verifyStreams = verifyStreams;
+        if (matrixFile != null) {
+            r.matrix = new FeatureMatrix(EnumSet.allOf(FeatureMatrix.Group.class), MATRIX_FOURIER);
+        }
+        if (nThread > 0) {
+            r.nThread = nThread;
+        }
+        long    startTime = System.currentTimeMillis();
+        StrokeCache.ResetStats();
+        r.run();
+        r.writeResults(results);
+        if (report != null) {
+            r.writeReport(report);
+        }
+        if (matrixFile != null) {
+            r.writeMatrix(matrixFile);
+        }
+        System.out.println(r.logFiles.length+" logs, "+r.nStroke+" strokes reanalysed in "+
+                            (System.currentTimeMillis()-startTime)+"ms, results in "+results);
+        System.out.println(StrokeCache.Stats());
+        if (r.verifyStreams) {
+            System.out.println("stream filters: "+r.nStreamChecked+" strokes checked, "+
+                                r.nStreamDiffer+" differ from the batch filters");
+        }
+        if (base != null) {
+            compareResults(base, results, System.out);
+        }
+    }
+
+    /**
+     * compares two summaries written by <i>writeResults</i>, stroke by stroke, and prints the number of
+     * strokes whose info or type has changed, with a count of each change of type, and the greatest
+     * and mean absolute differences in each of the features.
+     *
+     * @param base the earlier results
+     * @param results the later results
+     * @param out where to print the comparison
+     */
+    static void compareResults(File base, File results, PrintStream out)
+        throws IOException
+    {
+        HashMap<String,String[]>    baseRows = readResults(base);
+        HashMap<String,String[]>    rows = readResults(results);
+        int         nFeature = SUMMARY_COLUMNS.length - FIRST_FEATURE;
+        double[]    maxDiff = new double[nFeature];
+        double[]    sumDiff = new double[nFeature];
+        int[]       nDiff = new int[nFeature];
+        int         nCompared = 0;
+        int         nMissing = 0;
+        int         nChanged = 0;
+        TreeMap<String,Integer> changes = new TreeMap<>();
+        for (String key: baseRows.keySet()) {
+            String[]    b = baseRows.get(key);
+            String[]    r = rows.get(key);
+            if (r == null) {
+                nMissing++;
+                continue;
+            }
+            nCompared++;
+            String  bType = b.length > FIRST_FEATURE-1? b[4]+" "+b[FIRST_FEATURE-1]: b[4];
+            String  rType = r.length > FIRST_FEATURE-1? r[4]+" "+r[FIRST_FEATURE-1]: r[4];
+            if (!bType.equals(rType)) {
+                nChanged++;
+                String      c = bType+" -> "+rType;
+                Integer     k = changes.get(c);
+                changes.put(c, k == null? 1: k+1);
+            }
+            for (int j=0; j<nFeature && FIRST_FEATURE+j < Math.min(b.length, r.length); j++) {
+                try {
+                    double  d = Math.abs(Double.parseDouble(b[FIRST_FEATURE+j]) -
+                                         Double.parseDouble(r[FIRST_FEATURE+j]));
+                    if (Double.isNaN(d)) {
+                        continue;
+                    }
+                    if (d > maxDiff[j]) {
+                        maxDiff[j] = d;
+                    }
+                    sumDiff[j] += d;
+                    nDiff[j]++;
+                } catch (NumberFormatException e) {
+                    ;
+                }
+            }
+        }
+        out.println("compared "+nCompared+" strokes with "+base+", "+nMissing+" missing, "+
+                    (rows.size()-nCompared)+" new");
+        out.println(nChanged+" strokes changed classification");
+        for (String c: changes.keySet()) {
+            out.println("    "+changes.get(c)+"\t"+c);
+        }
+        out.println("feature\tmax abs diff\tmean abs diff");
+        for (int j=0; j<nFeature; j++) {
+            out.println(SUMMARY_COLUMNS[FIRST_FEATURE+j]+"\t"+maxDiff[j]+"\t"+
+                        (nDiff[j] > 0? sumDiff[j]/nDiff[j]: 0));
+        }
+    }
+
+    /**
+     * reads the summary lines of a results file, keyed by file, page and stroke
+     */
+    static HashMap<String,String[]> readResults(File results)
+        throws IOException
+    {
+        HashMap<String,String[]>    rows = new HashMap<>();
+        BufferedReader  r = new BufferedReader(new FileReader(results));
+        try {
+            String  line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[]    f = line.split("\t");
+                if (f.length >= 5) {
+                    rows.put(f[0]+"\t"+f[1]+"\t"+f[2], f);
+                }
+            }
+        } finally {
+            r.close();
+        }
+        return rows;
+    }
+
+    /**
+     * print a usage message
+     */
+    static void usage()
+    {
+        System.err.println("usage: java gita.ArchiveReanalyser [-o results] [-h report.html] [-j threads] [-p] [-r resample-mode] [-s straighten-mode] [-f features] [-k scalar|simd] [-v] [-m matrix] [-c base-results] [-t name=value]... processed-dir");
+    }
+
+    /**
+     * sets a Tolerance value from a "name=value" string. Only the non-final statics can be set.
+     *
+     * @param assignment a string of the form name=value
+     * @throws IllegalArgumentException if the name isn't a settable tolerance, or the value doesn't parse
+     */
+    static void setTolerance(String assignment)
+    {
+        int eq = assignment.indexOf('=');
+        if (eq <= 0) {
+            throw new IllegalArgumentException("tolerance should be name=value: "+assignment);
+        }
+        Tolerance.Set(assignment.substring(0, eq), assignment.substring(eq+1));
+    }
+
+    /**
+     * finds all the archived logs, in order of log id and sequence number, and reanalyses them.
+     */
+    public void run()
+    {
+        File[]  all = archiveDirectory.listFiles();
+        ArrayList<File> logs = new ArrayList<>();
+        if (all != null) {
+            for (File f: all) {
+                if (LOG_FILE_PATTERN.matcher(f.getName()).matches()) {
+                    logs.add(f);
+                }
+            }
+        }
+        logFiles = logs.toArray(new File[logs.size()]);
+        Arrays.sort(logFiles, new Comparator<File>() {
+            public int compare(File a, File b)
+            {
+                Matcher ma = LOG_FILE_PATTERN.matcher(a.getName());
+                Matcher mb = LOG_FILE_PATTERN.matcher(b.getName());
+                ma.matches();
+                mb.matches();
+                int c = compareNumber(ma.group(1), mb.group(1));
+                if (c == 0) {
+                    c = compareNumber(ma.group(2), mb.group(2));
+                }
+                return c;
+            }
+        });
+        summaries = new String[logFiles.length];
+        reports = new String[logFiles.length];
+        matrixRows = new String[logFiles.length];
+
+        ForkJoinPool    pool = new ForkJoinPool(nThread);
+        try {
+            pool.invoke(new Reanalysis(0, logFiles.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * compares two strings of digits numerically. an empty string counts as 0.
+     */
+    static int compareNumber(String a, String b)
+    {
+        long    na = a.length() > 0? Long.parseLong(a): 0;
+        long    nb = b.length() > 0? Long.parseLong(b): 0;
+        return na < nb? -1: (na > nb? 1: 0);
+    }
+
+    /**
+     * A fork-join task reanalysing a range of the archived logs. Ranges are split in half until
+     * they are a single file.
+     */
+    class Reanalysis extends RecursiveAction
+    {
+        /**
+         * @param lo index of the first log file in the range
+         * @param hi index past the last log file in the range
+         */
+        Reanalysis(int lo, int hi)
+        {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * reanalyse the range
+         */
+        protected void compute()
+        {
+            if (hi - lo == 1) {
+                reanalyse(lo);
+            } else if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Reanalysis(lo, mid), new Reanalysis(mid, hi));
+            }
+        }
+
+        /** index of the first log file in the range */
+        int lo;
+        /** index past the last log file in the range */
+        int hi;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * reanalyses a single archived log, storing its summary and report
+     *
+     * @param i index into <i>logFiles</i>
+     */
+    void reanalyse(int i)
+    {
+        File            f = logFiles[i];
+        StringWriter    buf = new StringWriter();
+        PrintWriter     w = new PrintWriter(buf);
+        HTMLwriter      http = new HTMLwriter(w);
+        StringBuilder   summary = new StringBuilder();
+        StringBuilder   rows = new StringBuilder();
+
+        http.printbr("<B>"+f.getName()+"</B>");
+        try {
+            LinkedList<PageData>    pages = readLog(f, http);
+            int k = 0;
+            for (PageData page: pages) {
+                analysePage(http, page);
+                if (verifyStreams) {
+                    verifyStreamFilters(http, page);
+                }
+                summarise(summary, f.getName(), k, page);
+                if (matrix != null) {
+                    tabulate(rows, f.getName(), k, page);
+                }
+                k++;
+            }
+        } catch (IOException e) {
+            http.printbr("io exception: "+e.getMessage());
+        } catch (LogParseException e) {
+            http.printbr("Log parsing exception: "+e.getMessage());
+        } catch (Cow e) {
+            String msg = e.getMessage();
+            http.printbr("Analysis throws a cow"+(msg!=null?msg:""));
+        }
+        w.flush();
+        summaries[i] = summary.toString();
+        reports[i] = buf.toString();
+        matrixRows[i] = rows.toString();
+    }
+
+    /**
+     * memory maps a log file, and parses it into pages
+     *
+     * @param f an svg or binary ink log
+     * @param http HTMLwriter for diagnostic output
+     * @return the pages in the log
+     */
+    LinkedList<PageData> readLog(File f, HTMLwriter http)
+        throws IOException, LogParseException
+    {
+        FileInputStream fs = new FileInputStream(f);
+        try {
+            FileChannel         ch = fs.getChannel();
+            MappedByteBuffer    map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            InputStream         in = new MappedInputStream(map);
+            if (f.getName().endsWith("."+Gita.FMT_INK)) {
+                return new BinaryInkParser().parseInkPages(in, http);
+            }
+            LinkedList<PageData>    pages = new LinkedList<>();
+            pages.add(new SvgStrokeParser().parseLogData(in, http));
+            return pages;
+        } finally {
+            fs.close();
+        }
+    }
+
+    /**
+     * runs the full set of feature calculations on a page, as Gita does for an upload
+     *
+     * @param http HTMLwriter for diagnostic output
+     * @param page the page to analyse
+     */
+    void analysePage(HTMLwriter http, PageData page)
+        throws Cow
+    {
+        page.AnalyseStrokes(http);
+        LinkedList<SignatureContainer>   sigs = new LinkedList<>();
+        for (StrokeGroup g: page.groups) {
+            if (g.type == StrokeGroup.Type.SignatureTraining) {
+                sigs.add((SignatureContainer)g.info);
+            }
+        }
+        if (!sigs.isEmpty()) {
+            SignaturEater  cigar = new SignaturEater();
+            cigar.buildSignatureModel(sigs);
+            for (SignatureContainer s: sigs) {
+                s.DisplayFeatures(http);
+            }
+        }
+        for (Stroke s: page.strokes) {
+            if (s.info != null) {
+                s.info.DisplayFeatures(http);
+            }
+        }
+    }
+
+    /**
+     * runs each stroke of an analysed page through the stream forms of the filters of
+     * <i>StrokeCurveInfo</i>, and checks that they give the same artifact filtered trace as the batch
+     * chain, to the bit, and, for a stroke whose <i>StrokeCurveInfo</i> has its curve features, the same
+     * features to within rounding. The strokes that differ are noted in the diagnostic output.
+     *
+     * @param http HTMLwriter for diagnostic output
+     * @param page the page, after <i>analysePage()</i>
+     */
+    void verifyStreamFilters(HTMLwriter http, PageData page)
+    {
+        InkStreamFilta.Collect          collect = new InkStreamFilta.Collect();
+        InkStreamFilta.CurveFeatures    features = new InkStreamFilta.CurveFeatures(collect);
+        InkStreamFilta                  chain = InkStreamFilta.CurveChain((float)1.0, features);
+        int     nChecked = 0;
+        int     nDiffer = 0;
+        int     i = 0;
+        for (Stroke s: page.strokes) {
+            if (s.nSample > 0) {
+                chain.Run(s.trace);
+                InkTrace    batch = s.Derived().Chain((float)1.0).artifactFiltered;
+                boolean     same = sameTrace(collect.Trace(), batch);
+// the features are only comparable if the analysis didn't simplify the filtered trace further
+                if (same && s.info instanceof StrokeCurveInfo && ((StrokeCurveInfo) s.info).curveFeatures &&
+                        Tolerance.curveSimplifyTolerance <= 0) {
+                    StrokeCurveInfo c = (StrokeCurveInfo) s.info;
+                    same = features.nSample == batch.n &&
+                            closeTo(features.pathLength, c.pathLength) &&
+                            closeTo(features.sumTangle, c.sumTangle) &&
+                            closeTo(features.weightedSumTangle, c.weightedSumTangle) &&
+                            closeTo(features.meanTangle, c.meanTangle) &&
+                            closeTo(features.meanAbsTangle, c.meanAbsTangle) &&
+                            closeTo(features.devTangle, c.devTangle);
+                }
+                nChecked++;
+                if (!same) {
+                    nDiffer++;
+                    http.printbr("stream filters differ from the batch filters on stroke "+i);
+                }
+            }
+            i++;
+        }
+        synchronized (this) {
+            nStreamChecked += nChecked;
+            nStreamDiffer += nDiffer;
+        }
+    }
+
+    /**
+     * @return true if two traces have the same samples, times and pressures, to the bit
+     */
+    static boolean sameTrace(InkTrace a, InkTrace b)
+    {
+        if (a.n != b.n) {
+            return false;
+        }
+        for (int i=0; i<a.n; i++) {
+            if (Float.floatToIntBits(a.x[i]) != Float.floatToIntBits(b.x[i]) ||
+                    Float.floatToIntBits(a.y[i]) != Float.floatToIntBits(b.y[i]) ||
+                    (a.time != null? a.time[i]: 0) != (b.time != null? b.time[i]: 0) ||
+                    (a.pressure != null? a.pressure[i]: 0) != (b.pressure != null? b.pressure[i]: 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if two features agree to within rounding, for sums of a few hundred floats
+     */
+    static boolean closeTo(float a, float b)
+    {
+        return Math.abs(a - b) <= 1e-4f*Math.max(1, Math.abs(b)) || (Float.isNaN(a) && Float.isNaN(b));
+    }
+
+    /**
+     * adds a line to the feature matrix for each stroke of a page
+     *
+     * @throws Cow if <i>FeatureMatrix</i> can't make a full row for a stroke
+     */
+    void tabulate(StringBuilder rows, String name, int pageNo, PageData page)
+        throws Cow
+    {
+        float   m[] = matrix.Build(page);
+        int     width = matrix.Width();
+        for (int i=0; i<page.strokes.size(); i++) {
+            rows.append(name).append('\t').append(pageNo).append('\t').append(i);
+            for (int j=0; j<width; j++) {
+                rows.append('\t').append(m[i*width+j]);
+            }
+            rows.append('\n');
+        }
+    }
+
+    /**
+     * adds a line to the summary for each stroke of a page
+     */
+    void summarise(StringBuilder summary, String name, int pageNo, PageData page)
+    {
+        int i = 0;
+        for (Stroke s: page.strokes) {
+            summary.append(name).append('\t').append(pageNo).append('\t').append(i).append('\t').append(s.nSample);
+            if (s.info == null) {
+                summary.append("\t-");
+            } else {
+                summary.append('\t').append(s.info.getClass().getSimpleName());
+                if (s.info instanceof StrokeCurveInfo) {
+                    StrokeCurveInfo c = (StrokeCurveInfo)s.info;
+                    summary.append('\t').append(c.type);
+                    summary.append('\t').append(c.pathLength);
+                    summary.append('\t').append(c.sumTangle);
+                    summary.append('\t').append(c.weightedSumTangle);
+                    summary.append('\t').append(c.meanTangle);
+                    summary.append('\t').append(c.meanAbsTangle);
+                    summary.append('\t').append(c.devTangle);
+                }
+            }
+            summary.append('\n');
+            i++;
+        }
+        synchronized (this) {
+            nStroke += i;
+        }
+    }
+
+    /**
+     * writes the tab separated summary of all strokes. The file starts with a comment line for each
+     * of the settable tolerances, with the value used for this run.
+     *
+     * @param results the file to write
+     */
+    public void writeResults(File results)
+        throws IOException
+    {
+        PrintWriter w = new PrintWriter(new FileOutputStream(results));
+        try {
+            for (Field f: Tolerance.class.getFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) && !Modifier.isFinal(mod)) {
+                    try {
+                        w.println("# "+f.getName()+"="+f.get(null));
+                    } catch (IllegalAccessException e) {
+                        ;
+                    }
+                }
+            }
+            w.print("# "+SUMMARY_COLUMNS[0]);
+            for (int j=1; j<SUMMARY_COLUMNS.length; j++) {
+                w.print("\t"+SUMMARY_COLUMNS[j]);
+            }
+            w.println();
+            for (String s: summaries) {
+                w.print(s);
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * writes the tab separated feature matrix of all strokes, keyed as the summary is, with a comment
+     * line naming the columns
+     *
+     * @param file the file to write
+     */
+    public void writeMatrix(File file)
+        throws IOException
+    {
+        PrintWriter w = new PrintWriter(new FileOutputStream(file));
+        try {
+            w.print("# file\tpage\tstroke");
+            for (String c: matrix.ColumnNames()) {
+                w.print("\t"+c);
+            }
+            w.println();
+            for (String s: matrixRows) {
+                w.print(s);
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * writes an html page with the diagnostic output and feature displays for every log
+     *
+     * @param report the file to write
+     */
+    public void writeReport(File report)
+        throws IOException
+    {
+        PrintWriter w = new PrintWriter(new FileOutputStream(report));
+        HTMLwriter  http = new HTMLwriter(w);
+        http.html();
+        http.head();
+        http.title("Gita: archive reanalysis");
+        http.stylesheet("../style/zone.css");
+        http.closetag(); // head
+        http.body();
+        http.h1("Archive reanalysis");
+        for (String s: reports) {
+            http.print(s);
+        }
+        http.closetag(); // body
+        http.closetag(); // html
+        w.close();
+    }
+
+    /**
+     * An InputStream reading from a memory mapped file. Each parse gets its own view of the buffer.
+     */
+    static class MappedInputStream extends InputStream
+    {
+        /**
+         * @param b the buffer to read
+         */
+        MappedInputStream(ByteBuffer b)
+        {
+            buf = b.duplicate();
+        }
+
+        public int read()
+        {
+            return buf.hasRemaining()? (buf.get() & 0xff): -1;
+        }
+
+        public int read(byte[] b, int off, int len)
+        {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        public int available()
+        {
+            return buf.remaining();
+        }
+
+        /** the mapped data */
+        ByteBuffer  buf;
+    }
+
+    /** the directory holding the archived logs */
+    File        archiveDirectory;
+    /** number of worker threads in the fork-join pool */
+    int         nThread;
+    /** the archived log files, in order of log id and sequence number */
+    File[]      logFiles = null;
+    /** tab separated summary lines for each log file */
+    String[]    summaries = null;
+    /** html diagnostic output for each log file */
+    String[]    reports = null;
+    /** total number of strokes reanalysed */
+    int         nStroke = 0;
+    /** layout of the feature matrix, or null if it isn't wanted */
+    FeatureMatrix   matrix = null;
+    /** tab separated feature matrix lines for each log file */
+    String[]    matrixRows = null;
+    /** true to check the stream filters against the batch filters */
+    boolean     verifyStreams = false;
+    /** number of strokes run through the stream filters */
+    int         nStreamChecked = 0;
+    /** number of those for which the stream filters differ from the batch filters */
+    int         nStreamDiffer = 0;
+}
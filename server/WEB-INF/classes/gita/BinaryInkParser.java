@@ -0,0 +1,295 @@
+/*
+ * BinaryInkParser.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import zone.HTMLwriter;
+
+/**
+ * A processor for gita's compact binary ink format, as written by <i>BinaryInkWriter</i>. Each page
+ * in the data is returned as a seperate PageData, with the same pen id, paper id and pen color fields
+ * as are filled in by the <i>AnotoLogParser</i>.
+ *<p>
+ * No text parsing is done: samples are read straight from the delta encoded varints into
+ * the InkTrace of each stroke.
+ *<p>
+ * The data comes from uploads, so the counts in it are not trusted: nothing is allocated on the
+ * strength of a count alone. The table of stroke counts, and the trace of each stroke, grow as the
+ * data for them actually arrives, and a page may have at most <i>MAX_STROKES</i> strokes.
+ *
+ * @see BinaryInkWriter
+ * @see AnotoLogParser
+ * @see PageData
+ * @author dak
+ * @since you asked
+ */
+public class BinaryInkParser
+{
+    /** upper limit on the number of samples in a stroke, as a guard against garbage data */
+    static final int    MAX_COUNT = 1 << 24;
+    /** upper limit on the number of strokes in a page, far more than a sheet of paper holds */
+    static final int    MAX_STROKES = 1 << 16;
+    /** most samples room is made for in a new stroke, before any arrive */
+    static final int    INITIAL_SAMPLES = 256;
+
+    /**
+     * create an instance of a BinaryInkParser
+     */
+    BinaryInkParser()
+    {
+    }
+
+    /**
+     * Parse binary ink data, returning the first page found.
+     *
+     * @param inkData an InputStream giving the binary ink data. It is read to the end, but not closed.
+     * @param http HTMLwriter for diagnostic output
+     * @return a PageData structure holding all the stroke data for the first page
+     */
+    PageData parseInkData(InputStream inkData, HTMLwriter http)
+    {
+        LinkedList<PageData> pages = parseInkPages(inkData, http);
+        return pages.isEmpty()? new PageData(): pages.getFirst();
+    }
+
+    /**
+     * Parse binary ink data. Diagnostic output is sent to the html page attached to the
+     * given HTMLwriter. If a parse error is found, the pages read so far are returned.
+     *
+     * @param inkData an InputStream giving the binary ink data. It is read to the end, but not closed.
+     * @param http HTMLwriter for diagnostic output
+     * @return a list of PageData structures, one for each page in the data
+     */
+    LinkedList<PageData> parseInkPages(InputStream inkData, HTMLwriter http)
+    {
+        http.printbr("Parsing binary ink data...");
+        LinkedList<PageData> pages = new LinkedList<>();
+        long    startTime = System.nanoTime();
+        nParsedSample = 0;
+        in = inkData;
+        buf = new byte[8192];
+        bufPos = bufLen = 0;
+        try {
+            for (short i=0; i<BinaryInkWriter.MAGIC.length; i++) {
+                if (read() != BinaryInkWriter.MAGIC[i]) {
+                    throw new LogParseException("Not binary ink data");
+                }
+            }
+            int version = read();
+            if (version != BinaryInkWriter.VERSION) {
+                throw new LogParseException("Unknown binary ink version "+version);
+            }
+            int c;
+            while ((c = read()) >= 0) {
+                PageData page = parsePage(c);
+                page.SetupStructures(http);
+                pages.add(page);
+            }
+        } catch (LogParseException lpe) {
+            http.printbr("parse error: "+lpe.getMessage());
+        } catch (IOException e) {
+            http.printbr("io exception: "+e.getMessage());
+        }
+        parseTime = System.nanoTime() - startTime;
+        http.printbr("Parsed "+nParsedSample+" samples on "+pages.size()+" pages in "+(parseTime/1000)+"us");
+        in = null;
+        buf = null;
+        return pages;
+    }
+
+    /**
+     * Parses a single page of binary ink data.
+     *
+     * @param first the first byte of the page, already read to check for the end of the data
+     * @return the page
+     * @throws LogParseException if the page is badly formed or cut short
+     * @throws IOException if the underlying stream does
+     */
+    PageData parsePage(int first)
+        throws LogParseException, IOException
+    {
+        String  penId = readString(readVarint(first));
+        String  paperId = readString(readVarint(read()));
+        int     rgbColor[] = new int[3];
+        for (short i=0; i<3; i++) {
+            rgbColor[i] = readByte();
+        }
+        int     quantum = readVarint(read());
+        if (quantum <= 0) {
+            throw new LogParseException("Bad quantum "+quantum);
+        }
+        float   scale = (float)1.0/quantum;
+
+        int     nStroke = readCount();
+        if (nStroke > MAX_STROKES) {
+            throw new LogParseException("Too many strokes on a page: "+nStroke);
+        }
+        int     nStrokeSample[] = new int[Math.min(nStroke, 64)];
+        for (int i=0; i<nStroke; i++) {
+            if (i == nStrokeSample.length) {
+                int grown[] = new int[2*i];
+                System.arraycopy(nStrokeSample, 0, grown, 0, i);
+                nStrokeSample = grown;
+            }
+            nStrokeSample[i] = readCount();
+        }
+
+        LinkedList<Stroke>  strokes = new LinkedList<>();
+        float   maxX = 0;
+        float   maxY = 0;
+        int     x = 0;
+        int     y = 0;
+        for (int i=0; i<nStroke; i++) {
+            Stroke  s = new Stroke();
+            s.SetTrace(new InkTrace(Math.min(nStrokeSample[i], INITIAL_SAMPLES)));
+            for (int j=0; j<nStrokeSample[i]; j++) {
+                long    nx = (long)x + unZigZag(readVarint(read()));
+                long    ny = (long)y + unZigZag(readVarint(read()));
+                if (nx != (int)nx || ny != (int)ny) {
+                    throw new LogParseException("Co-ordinate out of range in stroke "+i);
+                }
+                x = (int)nx;
+                y = (int)ny;
+                float   px = x*scale;
+                float   py = y*scale;
+                if (px > maxX) {
+                    maxX = px;
+                }
+                if (py > maxY) {
+                    maxY = py;
+                }
+                s.Add(px, py);
+            }
+            s.penColor[0] = rgbColor[0];
+            s.penColor[1] = rgbColor[1];
+            s.penColor[2] = rgbColor[2];
+            strokes.add(s);
+            nParsedSample += s.nSample;
+        }
+
+        PageData    page = new PageData(strokes, new LinkedList<>(), maxX, maxY);
+        page.penId = penId;
+        page.paperId = paperId;
+        page.penColor = rgbColor;
+        page.info = "binary ink, pen "+penId+", paper "+paperId;
+        return page;
+    }
+
+    /**
+     * reads a varint stroke or sample count, checking it is sensible
+     */
+    int readCount()
+        throws LogParseException, IOException
+    {
+        int n = readVarint(read());
+        if (n < 0 || n > MAX_COUNT) {
+            throw new LogParseException("Bad count "+n);
+        }
+        return n;
+    }
+
+    /**
+     * reads an unsigned varint, given its first byte
+     *
+     * @param b the first byte of the varint, or -1 at end of input
+     * @return the value read
+     * @throws LogParseException if the data ends in the middle of the varint, or it is too long
+     */
+    int readVarint(int b)
+        throws LogParseException, IOException
+    {
+        int v = 0;
+        for (int shift=0; shift<35; shift+=7) {
+            if (b < 0) {
+                throw new LogParseException("Unexpected end of ink data");
+            }
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+            b = read();
+        }
+        throw new LogParseException("Bad varint in ink data");
+    }
+
+    /**
+     * reads a single byte, which must be there
+     */
+    int readByte()
+        throws LogParseException, IOException
+    {
+        int b = read();
+        if (b < 0) {
+            throw new LogParseException("Unexpected end of ink data");
+        }
+        return b;
+    }
+
+    /**
+     * reads a string of the given length, a byte to a character. A zero length gives null.
+     */
+    String readString(int len)
+        throws LogParseException, IOException
+    {
+        if (len == 0) {
+            return null;
+        }
+        if (len > MAX_STRING) {
+            throw new LogParseException("Bad string length "+len);
+        }
+        char    c[] = new char[len];
+        for (int i=0; i<len; i++) {
+            c[i] = (char)readByte();
+        }
+        return new String(c);
+    }
+
+    /** longest string the format allows, in bytes, one to a character */
+    static final int MAX_STRING = 256;
+
+    /**
+     * reads the next byte from the input buffer, refilling it as needed. This is done here rather
+     * than with a BufferedInputStream, whose read() is synchronized.
+     *
+     * @return the next byte, or -1 at end of input
+     */
+    int read()
+        throws IOException
+    {
+        if (bufPos >= bufLen) {
+            bufPos = 0;
+            bufLen = in.read(buf, 0, buf.length);
+            if (bufLen <= 0) {
+                bufLen = 0;
+                return -1;
+            }
+        }
+        return buf[bufPos++] & 0xff;
+    }
+
+    /**
+     * undoes BinaryInkWriter.zigZag()
+     */
+    static int unZigZag(int v)
+    {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** stream of binary ink data currently being parsed */
+    InputStream in;
+    /** buffer of bytes read from <i>in</i> */
+    byte        buf[];
+    /** number of valid bytes in <i>buf</i> */
+    int         bufLen;
+    /** position of the next unread byte in <i>buf</i> */
+    int         bufPos;
+    /** time taken by the most recent parse, in nanoseconds */
+    long        parseTime = 0;
+    /** number of samples read in the most recent parse */
+    int         nParsedSample = 0;
+}
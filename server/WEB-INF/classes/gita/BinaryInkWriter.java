@@ -0,0 +1,192 @@
+/*
+ * BinaryInkWriter.java
+ *
+ * Created on 18 October 2026
+ *
+ *   Writes pages of stroke data in gita's compact binary ink format. The layout is:
+ *
+ *      file:   magic "GINK", 1 byte version, then pages until end of file
+ *      page:   pen id (varint length + ascii), paper id (varint length + ascii),
+ *              3 bytes rgb pen color, varint quantum (coordinate units per 1.0),
+ *              varint number of strokes, varint number of samples for each stroke,
+ *              then zig-zag varint dx, dy for every sample of every stroke.
+ *
+ *   Coordinates are rounded to the nearest 1/quantum, and each sample is stored as the
+ *   difference from the one before it, carried across stroke boundaries, starting from (0,0)
+ *   at the top of each page. Differences are taken between the rounded values, so rounding
+ *   errors don't accumulate along a stroke.
+ */
+package gita;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.BufferedOutputStream;
+import java.util.Collection;
+
+/**
+ * Writer for gita's compact binary ink format. This is several times smaller than either the
+ * ascii Anoto log dump or svg path data for the same strokes, and can be read back without any
+ * text parsing by a <i>BinaryInkParser</i>.
+ *<p>
+ * Only the stroke samples and the page header are stored. Stroke groups, and any results of
+ * analysis, are not.
+ *
+ * @see BinaryInkParser
+ * @see PageData
+ * @author dak
+ * @since you asked
+ */
+public class BinaryInkWriter
+{
+    /** magic bytes at the start of a binary ink file */
+    public static final byte    MAGIC[] = { 'G', 'I', 'N', 'K' };
+    /** current version of the binary ink format */
+    public static final int     VERSION = 1;
+    /** default number of coordinate units stored per 1.0 of page co-ordinate */
+    public static final int     DEFAULT_QUANTUM = 1000;
+
+    /**
+     * create a writer for the given stream. The file header is written with the first page.
+     *
+     * @param s the stream to write to
+     */
+    public BinaryInkWriter(OutputStream s)
+    {
+        out = new BufferedOutputStream(s);
+        quantum = DEFAULT_QUANTUM;
+        headerWritten = false;
+    }
+
+    /**
+     * write a list of pages
+     *
+     * @param pages the pages to write
+     * @throws IOException
+     */
+    public void writePages(Collection<PageData> pages)
+        throws IOException
+    {
+        for (PageData page: pages) {
+            writePage(page);
+        }
+    }
+
+    /**
+     * write a single page of stroke data
+     *
+     * @param page the page to write
+     * @throws IOException
+     */
+    public void writePage(PageData page)
+        throws IOException
+    {
+        if (!headerWritten) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            headerWritten = true;
+        }
+        writeString(page.penId);
+        writeString(page.paperId);
+        for (short i=0; i<3; i++) {
+            out.write(page.penColor != null? page.penColor[i]: 0);
+        }
+        writeVarint(quantum);
+
+        writeVarint(page.strokes.size());
+        for (Stroke s: page.strokes) {
+            writeVarint(s.nSample);
+        }
+        int     lastX = 0;
+        int     lastY = 0;
+        for (Stroke s: page.strokes) {
+            for (int i=0; i<s.nSample; i++) {
+                int x = Math.round(s.trace.x[i]*quantum);
+                int y = Math.round(s.trace.y[i]*quantum);
+                writeVarint(zigZag(x - lastX));
+                writeVarint(zigZag(y - lastY));
+                lastX = x;
+                lastY = y;
+            }
+        }
+    }
+
+    /**
+     * flush any buffered data through to the underlying stream
+     *
+     * @throws IOException
+     */
+    public void flush()
+        throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * flush and close the underlying stream
+     *
+     * @throws IOException
+     */
+    public void close()
+        throws IOException
+    {
+        out.close();
+    }
+
+    /**
+     * write a length prefixed string, a byte to a character. A null string is written with length
+     * 0. The string is checked against what BinaryInkParser.readString() will take back, so that a
+     * bad one fails here rather than leaving a file that can't be read.
+     *
+     * @throws IOException if the string is longer than BinaryInkParser.MAX_STRING, or has a
+     *  character that doesn't fit in a byte
+     */
+    void writeString(String s)
+        throws IOException
+    {
+        if (s == null) {
+            writeVarint(0);
+            return;
+        }
+        if (s.length() > BinaryInkParser.MAX_STRING) {
+            throw new IOException("String too long for ink data, "+s.length()+" characters");
+        }
+        for (int i=0; i<s.length(); i++) {
+            if (s.charAt(i) > 0xff) {
+                throw new IOException("String has a character that won't fit in ink data: "+s);
+            }
+        }
+        writeVarint(s.length());
+        for (int i=0; i<s.length(); i++) {
+            out.write(s.charAt(i));
+        }
+    }
+
+    /**
+     * write an int as an unsigned varint: 7 bits a byte, low bits first, with the top bit set
+     * on all but the last byte.
+     */
+    void writeVarint(int v)
+        throws IOException
+    {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /**
+     * maps a signed int onto an unsigned one, so small negative numbers stay small: 0, -1, 1, -2 ... go to 0, 1, 2, 3 ...
+     */
+    static int zigZag(int v)
+    {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    /** the stream being written */
+    OutputStream    out;
+    /** number of coordinate units stored per 1.0 of page co-ordinate */
+    int             quantum;
+    /** set once the file header has been written */
+    boolean         headerWritten;
+}
@@ -29,4 +29,6 @@ public class Cow extends Exception
     {
         super(s);
     }
+
+    private static final long serialVersionUID = 1L;
 }
@@ -61,8 +61,8 @@ public class Demonstrator
         try {
             StrokeCurveInfo inf = (StrokeCurveInfo) s.info;
             if (inf.type == StrokeCurveInfo.Type.Straight) {
-                Point startp = inf.artifactFilteredStroke[0];
-                Point endp = inf.artifactFilteredStroke[inf.artifactFilteredStroke.length-1];
+                Point startp = inf.artifactFilteredStroke.PointAt(0);
+                Point endp = inf.artifactFilteredStroke.PointAt(inf.artifactFilteredStroke.n-1);
                 float len = dist(startp< endp)
             }
         } catch (ClassCastException c) { // not an info structure i can make a decision on
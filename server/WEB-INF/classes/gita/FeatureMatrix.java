@@ -0,0 +1,315 @@
+/*
+ * FeatureMatrix.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+import zone.Rectangle;
+
+/**
+ * Lays out the features of the strokes of a page as one float array, a row for each stroke in the
+ * order of the page's stroke table, and a fixed set of columns, so that a classifier or a distance
+ * measure can run over them in a plain loop. The columns are chosen by groups when the matrix is
+ * made, and <i>ColumnNames()</i> says what each is.
+ *<p>
+ * The moments, densities, and box features are worked out from the stroke itself, from the moments
+ * gathered with its bounds, so they are there for every stroke, whatever its kind of info. If the
+ * stroke hasn't kept its moments, they are gathered again for the row, but the stroke is left as it
+ * is. The densities and box features are as <i>StrokeAlysis</i> has them, but the skewness and
+ * excess kurtosis are the usual normalised ones of <i>Moments</i>, not the <i>skewX</i> and
+ * <i>kurtX</i> of <i>StrokeAlysis</i>, hence the different names. The curve features are read from a
+ * <i>StrokeCurveInfo</i> that has worked them out, so the page should have been through
+ * <i>PageData.AnalyseStrokes()</i>; a <i>SignatureStroke</i> never has them. The fourier magnitudes
+ * are those of the equalised contour for a <i>StrokeAlysis</i>, and otherwise of the tangent angles
+ * of a <i>StrokeCurveInfo</i> with curve features. Anything a stroke doesn't have is NaN.
+ *
+ * @see PageData
+ * @see Moments
+ * @see StrokeCurveInfo
+ * @see StrokeAlysis
+ * @see Furrier
+ * @author dak
+ * @since you asked
+ */
+public class FeatureMatrix
+{
+    /** the groups of columns that can go in a row */
+    public enum Group {
+        /** number of samples, and the mean, deviation, skewness and excess kurtosis of x and y */
+        Moments,
+        /** densities of samples in the bounding box, and in the boxes one and two deviations about the mean */
+        Densities,
+        /** diagonal lengths and angles of those three boxes, and the distance from start to end */
+        Box,
+        /** the features of <i>StrokeCurveInfo</i>, and its Type as a number */
+        Curve,
+        /** the first few fourier magnitudes */
+        Fourier
+    }
+
+    /**
+     * Creates a matrix layout
+     *
+     * @param groups the groups of columns, which are laid out in the order of the Group enum
+     * @param nFourier the number of fourier magnitudes, if the Fourier group is wanted
+     */
+    public FeatureMatrix(EnumSet<Group> groups, int nFourier)
+    {
+        this.groups = groups.clone();
+        this.nFourier = groups.contains(Group.Fourier)? nFourier: 0;
+        ArrayList<String>   c = new ArrayList<>();
+        for (Group g: this.groups) {
+            switch (g) {
+                case Moments:
+                    c.add("samples");
+                    c.add("meanX");
+                    c.add("meanY");
+                    c.add("devX");
+                    c.add("devY");
+                    c.add("skewnessX");
+                    c.add("skewnessY");
+                    c.add("excessKurtosisX");
+                    c.add("excessKurtosisY");
+                    break;
+                case Densities:
+                    c.add("density");
+                    c.add("densitySigma1");
+                    c.add("densitySigma2");
+                    break;
+                case Box:
+                    c.add("rawBoxDiagLen");
+                    c.add("rawBoxDiagAngle");
+                    c.add("sigma1BoxDiagLen");
+                    c.add("sigma1BoxDiagAngle");
+                    c.add("sigma2BoxDiagLen");
+                    c.add("sigma2BoxDiagAngle");
+                    c.add("start2endLen");
+                    c.add("normStart2endLen");
+                    break;
+                case Curve:
+                    c.add("pathLength");
+                    c.add("sumTangle");
+                    c.add("weightedSumTangle");
+                    c.add("meanTangle");
+                    c.add("meanAbsTangle");
+                    c.add("devTangle");
+                    c.add("type");
+                    break;
+                case Fourier:
+                    for (int i=0; i<this.nFourier; i++) {
+                        c.add("mag"+i);
+                    }
+                    break;
+            }
+        }
+        columns = c.toArray(new String[c.size()]);
+    }
+
+    /**
+     * @return the number of columns in a row
+     */
+    public int Width()
+    {
+        return columns.length;
+    }
+
+    /**
+     * @return the names of the columns, in order
+     */
+    public String[] ColumnNames()
+    {
+        return columns.clone();
+    }
+
+    /**
+     * @param name the name of a column
+     * @return its index in a row, or -1 if there isn't one of that name
+     */
+    public int Column(String name)
+    {
+        for (int i=0; i<columns.length; i++) {
+            if (columns[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * lays out the features of all the strokes of a page
+     *
+     * @param page the page, which should have been analysed
+     * @return the rows, one after the other, <i>Width()</i> floats each
+     * @throws Cow if a row doesn't come out <i>Width()</i> columns wide
+     */
+    public float[] Build(PageData page) throws Cow
+    {
+        float   m[] = new float[page.strokes.size()*columns.length];
+        int     off = 0;
+        for (Stroke s: page.strokes) {
+            Row(s, m, off);
+            off += columns.length;
+        }
+        return m;
+    }
+
+    /**
+     * fills in the row of a stroke
+     *
+     * @param s the stroke
+     * @param m the matrix
+     * @param off index in <i>m</i> of the first column of the row
+     * @throws Cow if the row doesn't come out <i>Width()</i> columns wide
+     */
+    public void Row(Stroke s, float m[], int off) throws Cow
+    {
+        Moments     mx = s.xMoments;
+        Moments     my = s.yMoments;
+        if (mx == null || my == null) {
+            mx = Moments.Of(s.trace.x, 0, s.nSample);
+            my = Moments.Of(s.trace.y, 0, s.nSample);
+        }
+        Rectangle   bounds = s.bounds;
+        if (bounds == null) {
+            bounds = s.nSample > 0?
+                        new Rectangle(mx.Min(), my.Min(), mx.Max(), my.Max()):
+                        new Rectangle(0, 0, 0, 0);
+        }
+        float       devX = (float) mx.Deviation();
+        float       devY = (float) my.Deviation();
+        float       meanX = (float) mx.Mean();
+        float       meanY = (float) my.Mean();
+        Rectangle   sigma1bounds = new Rectangle(
+                                    meanX-devX, meanY-devY,
+                                    meanX+devX, meanY+devY);
+        Rectangle   sigma2bounds = new Rectangle(
+                                    meanX-2*devX, meanY-2*devY,
+                                    meanX+2*devX, meanY+2*devY);
+        int         i = off;
+        for (Group g: groups) {
+            switch (g) {
+                case Moments:
+                    m[i++] = s.nSample;
+                    m[i++] = meanX;
+                    m[i++] = meanY;
+                    m[i++] = devX;
+                    m[i++] = devY;
+                    m[i++] = (float) mx.Skew();
+                    m[i++] = (float) my.Skew();
+                    m[i++] = (float) mx.Kurtosis();
+                    m[i++] = (float) my.Kurtosis();
+                    break;
+                case Densities:
+                    m[i++] = StrokeAlysis.pixelDensity(s.nSample, bounds);
+                    m[i++] = StrokeAlysis.pixelDensity(s.nSample, sigma1bounds);
+                    m[i++] = StrokeAlysis.pixelDensity(s.nSample, sigma2bounds);
+                    break;
+                case Box: {
+                    float   diagLen = bounds.diagLen();
+                    float   start2end = Float.NaN;
+                    if (s.nSample > 0) {
+                        start2end = StrokeAlysis.pointLen(
+                                        s.trace.x[0], s.trace.y[0],
+                                        s.trace.x[s.nSample-1], s.trace.y[s.nSample-1]);
+                    }
+                    m[i++] = diagLen;
+                    m[i++] = bounds.diagAngleDeg();
+                    m[i++] = sigma1bounds.diagLen();
+                    m[i++] = sigma1bounds.diagAngleDeg();
+                    m[i++] = sigma2bounds.diagLen();
+                    m[i++] = sigma2bounds.diagAngleDeg();
+                    m[i++] = start2end;
+                    m[i++] = start2end/diagLen;
+                    break;
+                }
+                case Curve:
+                    if (HasCurveFeatures(s)) {
+                        StrokeCurveInfo c = (StrokeCurveInfo) s.info;
+                        m[i++] = c.pathLength;
+                        m[i++] = c.sumTangle;
+                        m[i++] = c.weightedSumTangle;
+                        m[i++] = c.meanTangle;
+                        m[i++] = c.meanAbsTangle;
+                        m[i++] = c.devTangle;
+                        m[i++] = c.type.ordinal();
+                    } else {
+                        for (int k=0; k<CURVE_COLUMNS; k++) {
+                            m[i++] = Float.NaN;
+                        }
+                    }
+                    break;
+                case Fourier: {
+                    float   mag[] = Magnitudes(s);
+                    for (int k=0; k<nFourier; k++) {
+                        m[i++] = mag != null && k < mag.length? mag[k]: Float.NaN;
+                    }
+                    break;
+                }
+            }
+        }
+        if (i - off != columns.length) {
+            throw new Cow("feature row of "+(i - off)+" columns, for "+columns.length+" column names, for a stroke with "+
+                            (s.info != null? s.info.getClass().getSimpleName(): "no info"));
+        }
+    }
+
+    /**
+     * @return true if a stroke has a <i>StrokeCurveInfo</i> that has worked out its curve features
+     */
+    static boolean HasCurveFeatures(Stroke s)
+    {
+        return s.info instanceof StrokeCurveInfo && ((StrokeCurveInfo) s.info).curveFeatures;
+    }
+
+    /**
+     * the fourier magnitudes of a stroke, or null if it hasn't the angles to take them from
+     */
+    static float[] Magnitudes(Stroke s)
+    {
+        if (s.info instanceof StrokeAlysis) {
+            return ((StrokeAlysis) s.info).Require(StrokeAlysis.Feature.Transforms).equalisedSignatureMg;
+        }
+        if (HasCurveFeatures(s)) {
+            float   tangle[] = ((StrokeCurveInfo) s.info).tangle;
+            Furrier f = new Furrier();
+            if (tangle != null && tangle.length > 0 && f.TrancefumRealToMagPhs(null, tangle)) {
+                return f.mag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the squared euclidean distance between two rows
+     *
+     * @param a a matrix
+     * @param i index of the first column of a row of <i>a</i>
+     * @param b a matrix, which may be <i>a</i>
+     * @param j index of the first column of a row of <i>b</i>
+     * @param width number of columns
+     * @return the sum of the squares of the differences of the columns
+     */
+    public static float SquaredDistance(float a[], int i, float b[], int j, int width)
+    {
+        float   d = 0;
+        for (int k=0; k<width; k++) {
+            float   e = a[i+k] - b[j+k];
+            d += e*e;
+        }
+        return d;
+    }
+
+    /** number of columns in the Curve group */
+    static final int    CURVE_COLUMNS = 7;
+
+    /** the groups of columns */
+    EnumSet<Group>  groups;
+    /** number of fourier magnitudes */
+    int             nFourier;
+    /** names of the columns */
+    String[]        columns;
+}
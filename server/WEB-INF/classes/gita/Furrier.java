@@ -83,7 +83,7 @@ public class Furrier {
 	phs[0] = 0;
         for (int i = 1; i < n; i++) {
             mag[i] = 2 * (float) (Math.sqrt(xRe[i]*xRe[i] + xIm[i]*xIm[i]))/n;
-            phs[i] = (float) java.lang.Math.atan2(-xIm[i], xRe[i]);
+            phs[i] = Trigga.Atan2(-xIm[i], xRe[i]);
         }
 
         return true;
@@ -146,7 +146,7 @@ public class Furrier {
 	phs[0] = 0;
         for (int i = 1; i < n; i++) {
             mag[i] = 2 * (float) (Math.sqrt(xRe[i]*xRe[i] + xIm[i]*xIm[i]))/n;
-            phs[i] = (float) java.lang.Math.atan2(-xIm[i], xRe[i]);
+            phs[i] = Trigga.Atan2(-xIm[i], xRe[i]);
         }
 
         return true;
@@ -194,8 +194,8 @@ public class Furrier {
                 for (int i = 1; i <= n2; i++) {
                     p = bitrev (k >> nu1);
                     arg = 2 * (float) Math.PI * p / n;
-                    c = (float) Math.cos (arg);
-                    s = (float) Math.sin (arg);
+                    c = Trigga.Cos(arg);
+                    s = Trigga.Sin(arg);
                     tr = xRe[k+n2]*c + xIm[k+n2]*s;
                     ti = xIm[k+n2]*c - xRe[k+n2]*s;
                     xRe[k+n2] = xRe[k] - tr;
@@ -270,8 +270,8 @@ public class Furrier {
             float delta = (float)sign*3.141592654f/(float)mmax;
             for (int m=0; m<mmax; ++m) {
 	            float w = (float)m*delta;
-	            float wr = (float)Math.cos(w);
-	            float wi = (float)Math.sin(w);
+	            float wr = Trigga.Cos(w);
+	            float wi = Trigga.Sin(w);
 	            for (i=m; i<n; i+=istep) {
 	                j = i+mmax;
 	                float tr = wr*ar[j]-wi*ai[j];
@@ -8,6 +8,11 @@ package gita;
  
 import java.io.IOException;
 import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.PrintWriter;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
@@ -18,6 +23,15 @@ import java.util.Enumeration;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.LinkedList;
+import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.lang.*;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -73,6 +87,18 @@ public class Gita extends HttpServlet
         super.init(config);
         String  projectBase = config.getInitParameter("project-base");
         String  gitaMode = config.getInitParameter("gita-mode");
+        String  logScanner = config.getInitParameter("log-scanner");
+        String  pageThreads = config.getInitParameter("page-threads");
+        String  archiveFormat = config.getInitParameter("archive-fmt");
+        String  saxPoolSize = config.getInitParameter("sax-pool-size");
+        String  strokeAnalysis = config.getInitParameter("stroke-analysis");
+        String  regionsFile = config.getInitParameter("paper-regions");
+        String  resampleMode = config.getInitParameter("resample-mode");
+        String  straightenMode = config.getInitParameter("straighten-mode");
+        String  inkKernels = config.getInitParameter("ink-kernels");
+        String  trigMode = config.getInitParameter("trig-mode");
+        String  strokeFeatures = config.getInitParameter("stroke-features");
+        String  pageAnalysis = config.getInitParameter("page-analysis");
         if (projectBase == null) {
             projectBase = "d:\\dak/java/projects/anoto/Gita-build/build/web/";
 // for netbeans 3.6
@@ -84,9 +110,112 @@ public class Gita extends HttpServlet
                 demoMode = true;
             }
         }
+        if (logScanner != null) {
+            if (logScanner.equals("regex")) {
+                regexLogScanner = true;
+            }
+        }
+        if (archiveFormat != null) {
+            if (archiveFormat.equals(FMT_INK)) {
+                archiveFmt = FMT_INK;
+            }
+        }
+        if (resampleMode != null) {
+            StrokeAlysis.ResampleMode m = StrokeAlysis.resampleModeOf(resampleMode);
+            if (m != null) {
+                StrokeAlysis.defaultResampleMode = m;
+            } else {
+                log("unknown resample-mode "+resampleMode);
+            }
+        }
+        if (straightenMode != null) {
+            StrokeAlysis.StraightenMode m = StrokeAlysis.straightenModeOf(straightenMode);
+            if (m != null) {
+                StrokeAlysis.defaultStraightenMode = m;
+            } else {
+                log("unknown straighten-mode "+straightenMode);
+            }
+        }
+        if (strokeFeatures != null) {
+            EnumSet<StrokeAlysis.Feature> f = StrokeAlysis.featuresOf(strokeFeatures);
+            if (f != null) {
+                StrokeAlysis.defaultFeatures = f;
+            } else {
+                log("unknown stroke-features "+strokeFeatures);
+            }
+        }
+        if (inkKernels != null && inkKernels.equals("simd")) {
+            if (!InkVecta.Use(true)) {
+                log("simd ink-kernels not available, using scalar");
+            }
+        }
+        if (trigMode != null) {
+            if (trigMode.equals("fast")) {
+                Tolerance.Set("fastTrig", "true");
+            } else if (!trigMode.equals("exact")) {
+                log("unknown trig-mode "+trigMode);
+            }
+        }
+        
+        int     nPageThread = Runtime.getRuntime().availableProcessors();
+        if (pageThreads != null) {
+            try {
+                nPageThread = Integer.parseInt(pageThreads);
+            } catch (NumberFormatException e) {
+                ;
+            }
+        }
+        if (nPageThread < 1) {
+            nPageThread = 1;
+        }
+        pagePool = Executors.newFixedThreadPool(nPageThread);
+        if (strokeAnalysis != null) {
+            if (strokeAnalysis.equals("batch")) {
+                streamAnalysis = false;
+            }
+        }
+        if (pageAnalysis != null) {
+            if (pageAnalysis.equals("parallel")) {
+                PageData.parallelAnalysis = true;
+            } else if (!pageAnalysis.equals("serial")) {
+                log("unknown page-analysis "+pageAnalysis);
+            }
+        }
+// a bounded queue, and when that's full the parsing thread does the work itself
+        strokePool = new ThreadPoolExecutor(
+                            nPageThread, nPageThread,
+                            60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(4*nPageThread),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+        if (saxPoolSize != null) {
+            try {
+                SaxParserPool.setMaxSize(Integer.parseInt(saxPoolSize));
+            } catch (NumberFormatException e) {
+                ;
+            }
+        }
         
         logDirectory = new File(projectBase+"processed/");
         tmpDirectory = new File(projectBase+"tmp/");
+        
+        if (regionsFile == null) {
+            regionsFile = "paper/regions.xml";
+        }
+        File    regions = new File(projectBase+regionsFile);
+        if (regions.exists()) {
+            StringWriter    buf = new StringWriter();
+            paperRegions = new PaperRegionRegistry();
+            try {
+                paperRegions.parseRegionsFile(new HTMLwriter(new PrintWriter(buf)), regions);
+            } catch (FileNotFoundException e) {
+                paperRegions = PaperRegionRegistry.defaultRegistry();
+            }
+            if (buf.getBuffer().length() > 0) {
+                log("problems reading paper regions from "+regions+": "+buf);
+            }
+        } else {
+            paperRegions = PaperRegionRegistry.defaultRegistry();
+        }
     }
     
     /**
@@ -94,7 +223,14 @@ public class Gita extends HttpServlet
      */
     public void destroy()
     {
-        
+        if (pagePool != null) {
+            pagePool.shutdown();
+            pagePool = null;
+        }
+        if (strokePool != null) {
+            strokePool.shutdown();
+            strokePool = null;
+        }
     }
     
     
@@ -136,9 +272,21 @@ public class Gita extends HttpServlet
      * @param newLogSeqNo   The sequence number of this log file
      */
     String logName(int logId, int newLogSeqNo)
+    {
+        return logName(logId, newLogSeqNo, FMT_SVG);
+    }
+    
+    /**
+     * Generates a file name for an archived log file in the given format
+     *
+     * @param logId Arbitrary number tagging particular sequences of archived logs
+     * @param newLogSeqNo   The sequence number of this log file
+     * @param fmt   The format of the archived log, FMT_SVG or FMT_INK, which is also used as the file extension
+     */
+    String logName(int logId, int newLogSeqNo, String fmt)
     {
         return "log-"+Integer.toString(logId)+
-                "-"+Integer.toString(newLogSeqNo)+".svg";
+                "-"+Integer.toString(newLogSeqNo)+"."+fmt;
     }
     
     /**
@@ -163,7 +311,7 @@ public class Gita extends HttpServlet
         
         response.setContentType("text/html");
 
-        List        uploadedFiles=null;
+        List<?>     uploadedFiles=null;
         int         fileCount = 0;
         if (posted) {
             fileCount = 0;
@@ -180,11 +328,10 @@ public class Gita extends HttpServlet
             fileCount = 0;
         }
 
-        String    logData;
+        LinkedList<LogUpload>   uploads = new LinkedList<>();
         String    inputMode;
         String    inputFmt;
         
-        logData = null;
         inputMode = MODE_NORMAL;
         inputFmt = FMT_LOG;
         
@@ -222,7 +369,7 @@ public class Gita extends HttpServlet
             if (!demoMode) {
                 http.printbr("uploaded file log data");
             }
-            Iterator iter = uploadedFiles.iterator();
+            Iterator<?> iter = uploadedFiles.iterator();
             while (iter.hasNext()) {
                 FileItem item = (FileItem) iter.next();
 
@@ -257,11 +404,15 @@ public class Gita extends HttpServlet
                     }
                     processFile(fileName);
                     
+                    String  fileFmt = null;
                     if (contentType.equals("image/svg+xml")) {
-                        inputFmt = FMT_SVG;
+                        fileFmt = FMT_SVG;
+                    } else if (contentType.equals(INK_CONTENT_TYPE)) {
+                        fileFmt = FMT_INK;
                     }
 
-                    logData = item.getString();
+// hang on to the item, and stream it straight into the parser, rather than copying the lot into a String
+                    uploads.add(new LogUpload(item, fileFmt));
                 }
             }
         } else {
@@ -269,7 +420,7 @@ public class Gita extends HttpServlet
                 http.printbr("form log data");
             }
             
-            Enumeration paramNames = request.getParameterNames();
+            Enumeration<?> paramNames = request.getParameterNames();
             while(paramNames.hasMoreElements()) {
                 String paramName = (String)paramNames.nextElement();
                 String paramValue = "";
@@ -281,7 +432,7 @@ public class Gita extends HttpServlet
                     if (paramValues.length >= 1) {
                         paramValue = paramValues[0];
                         if (paramValue.length() > 0){
-                            logData = paramValue;
+                            uploads.add(new LogUpload(paramValue, null));
                         }
                     }
                 } else if (paramName.equals("input_fmt")) {
@@ -311,7 +462,7 @@ public class Gita extends HttpServlet
        }
 
        File[]   logList = logDirectory.listFiles();
-       Pattern  logFilePattern = Pattern.compile("log-(\\d*)-(\\d*).svg");
+       Pattern  logFilePattern = Pattern.compile("log-(\\d*)-(\\d*)\\.(svg|ink)");
        
        int      highestLogSeqNo = 0;
        int      newLogSeqNo = 1;
@@ -337,166 +488,456 @@ public class Gita extends HttpServlet
            http.printbr("Generating log "+ Integer.toString(newLogSeqNo));
        }
        
-       String  currentLogName = logName(logId, newLogSeqNo);
-       File    logPage = new File(logDirectory, currentLogName);
-      
-    /** a page of stroke data received for processing */
-        PageData        page = null;
-       if (logData != null && logData.length() > 0) {
-           if (inputFmt.equals(FMT_SVG)) {
-               try { 
-                   SvgStrokeParser   logParse = new SvgStrokeParser();
-                   page = logParse.parseLogData(logData, http);
-               } catch (LogParseException e) {
-                   http.printbr("Log parsing exception while parsing svg log data");
+// files whose content type didn't give a format take the one from the form
+       for (LogUpload u: uploads) {
+           if (u.fmt == null) {
+               u.fmt = inputFmt;
+           }
+       }
+
+       boolean  parsed = parseUploads(http, uploads);
+
+// archive in upload order, so each file's pages get consecutive sequence numbers. if the parse was
+// interrupted, parses that were cancelled may still be filling in their uploads, so none are touched
+       LinkedList<PageData>    pages = new LinkedList<>();
+       LinkedList<String>      labels = new LinkedList<>();
+       int      k = 1;
+       if (!parsed) {
+           http.printbr("Interrupted while parsing the uploads: nothing has been archived or analysed");
+       } else {
+           for (LogUpload u: uploads) {
+               if (uploads.size() > 1 && !demoMode) {
+                   http.printbr("");
+                   http.printbr("<B>File "+k+": "+u.name+"</B>");
+               }
+               http.print(u.output);
+               if (u.fmt.equals(FMT_LOG)) {
+                   newLogSeqNo = archivePages(http, u.pages, logId, newLogSeqNo);
                }
-           } else if (inputFmt.equals(FMT_LOG)) {
-               try {
-    // process strokes from current hit of log data
-                   AnotoLogParser   logParse = new AnotoLogParser();
-                   page = logParse.parseLogData(logData, http);
+               int  j = 1;
+               for (PageData page: u.pages) {
+                   pages.add(page);
+                   labels.add(uploads.size() > 1? "File "+k+", page "+j: "Page "+j);
+                   j++;
+               }
+               k++;
+           }
+       }
+
+       if (!pages.isEmpty()) {
+           analysePages(http, pages, labels);
+       } else if (uploads.isEmpty()) {
+           http.printbr("Empty log received");
+       }
+        http.closetag(); // body
+        http.closetag(); // html
+        
+        
+        writer.flush();
+        writer.close();
+        writer = null;
+//        httpPageStream.flush();
+//        httpPageStream.close(); 
+        httpPageStream = null;
+        
+        if (generateTemporaryPage) {
+// send name of the temporary web page we've constructed back up the line     
+            response.getWriter().print("http://localhost:8084/gita/tmp/"+httpfile.getName());
+        }
+// do some cleanup. delete temporary web page older than 60 mins
+        purgePastUseby(tmpDirectory, 60);
+    }
+    
+    /**
+     * Parses a list of uploaded logs into pages of stroke data. A single upload is done directly.
+     * Otherwise, each upload is handed to <i>pagePool</i> as a seperate job, and this waits for them
+     * all to finish. The diagnostic output of each is left in its <i>output</i> buffer, for the caller
+     * to copy to the response in upload order.
+     *<p>
+     * If the thread is interrupted while it waits, the parses not yet finished are cancelled, the
+     * interrupt is left set, and false is returned. The cancelled parses may still be running for a
+     * while, so the caller must not then touch any of the uploads.
+     *
+     * @param http a HTMLwriter to write data to.
+     * @param uploads the logs received
+     * @return true if every upload has been parsed, false if the wait was interrupted
+     */
+    boolean parseUploads(HTMLwriter http, LinkedList<LogUpload> uploads)
+    {
+        if (uploads.size() == 1) {
+            parseUpload(uploads.getFirst());
+            return true;
+        }
+        LinkedList<Future<LogUpload>>  results = new LinkedList<>();
+        for (final LogUpload u: uploads) {
+            results.add(pagePool.submit(new Callable<LogUpload>() {
+                public LogUpload call()
+                {
+                    parseUpload(u);
+                    return u;
+                }
+            }));
+        }
+        int     k = 1;
+        for (Future<LogUpload> r: results) {
+            try {
+                r.get();
+            } catch (InterruptedException e) {
+                http.printbr("Interrupted while waiting for parse of file "+k);
+                for (Future<LogUpload> c: results) {
+                    c.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                Throwable   cause = e.getCause();
+                http.printbr("Parse of file "+k+" failed: "+(cause!=null?cause.toString():""));
+            }
+            k++;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a single uploaded log into pages of stroke data, according to its format. Anoto log
+     * data may hold many pages, svg data is a single page. The pages are left in <i>u.pages</i>, and
+     * diagnostics in <i>u.output</i>.
+     *
+     * @param u the log to parse
+     */
+    void parseUpload(LogUpload u)
+    {
+        StringWriter    buf = new StringWriter();
+        PrintWriter     w = new PrintWriter(buf);
+        HTMLwriter      http = new HTMLwriter(w);
+
+        if (u.length <= 0) {
+            http.printbr("No log data received");
+        } else if (u.fmt.equals(FMT_SVG)) {
+            try { 
+                SvgStrokeParser   logParse = new SvgStrokeParser();
+                PageData          page = null;
+// handing strokes between threads costs more than it saves on small uploads
+                if (streamAnalysis && !demoMode && u.length >= streamAnalysisThreshold) {
+                    logParse.pipeline = new StrokePipeline(strokePool);
+                }
+                if (u.item != null) {
+                    InputStream  in = u.item.getInputStream();
+                    try {
+                        page = logParse.parseLogData(in, http);
+                    } finally {
+                        in.close();
+                    }
+                } else {
+                    page = logParse.parseLogData(new StringReader(u.data), http);
+                }
+                if (page != null) {
+                    u.pages.add(page);
+                }
+            } catch (LogParseException e) {
+                http.printbr("Log parsing exception while parsing svg log data: "+e.getMessage());
+            } catch (IOException e) {
+                http.printbr("IO exception while reading svg log data");
+            }
+        } else if (u.fmt.equals(FMT_INK)) {
+            try {
+                if (u.item != null) {
+                    BinaryInkParser  inkParse = new BinaryInkParser();
+                    InputStream  in = u.item.getInputStream();
+                    try {
+                        u.pages = inkParse.parseInkPages(in, http);
+                    } finally {
+                        in.close();
+                    }
+                } else {
+                    http.printbr("Binary ink data has to be uploaded as a file");
+                }
+            } catch (IOException e) {
+                http.printbr("IO exception while reading binary ink data");
+            }
+        } else if (u.fmt.equals(FMT_LOG)) {
+            try {
+// process strokes from current hit of log data, one PageData for each pen/paper block
+                AnotoLogParser   logParse = new AnotoLogParser();
+                logParse.regexScanner = regexLogScanner;
+                logParse.regions = paperRegions;
+                if (u.item != null) {
+                    Reader   in = new InputStreamReader(u.item.getInputStream(), "ISO-8859-1");
+                    try {
+                        u.pages = logParse.parseLogPages(in, http);
+                    } finally {
+                        in.close();
+                    }
+                } else {
+                    u.pages = logParse.parseLogPages(new StringReader(u.data), http);
+                }
+            } catch (IOException e) {
+                http.printbr("IO exception while reading log data");
+            } catch (SecurityException e) {
+                http.printbr("Security exception while parsing log data");
+            } catch (LogParseException e) {
+                http.printbr("Log parsing exception");
+            }
+        } else {
+            http.printbr("Gita error: unknown format in uploaded data ("+u.fmt+")"); 
+        }
+        w.flush();
+        u.output = buf.toString();
+    }
 
-                   PrintWriter  file = new PrintWriter(
-                                            new FileOutputStream(logPage));
-                   SVGwriter    svg = new SVGwriter(file); 
+    /**
+     * Archives pages of stroke data received as anoto log data under the processed directory,
+     * each page getting its own log file, with consecutive sequence numbers.
+     *
+     * @param http a HTMLwriter to write data to.
+     * @param pages the pages to archive
+     * @param logId the id of the log sequence
+     * @param seqNo the sequence number for the first page
+     * @return the sequence number following the last page archived
+     */
+    int archivePages(HTMLwriter http, LinkedList<PageData> pages, int logId, int seqNo)
+    {
+        int  nLogPage = 0;
+        try {
+            for (PageData page: pages) {
+                File    logPage = new File(logDirectory, logName(logId, seqNo+nLogPage, archiveFmt));
+                if (archiveFmt.equals(FMT_INK)) {
+                    writeInkPage(logPage, page);
+                } else {
+                    writeLogPage(logPage, page);
+                }
+                nLogPage++;
+            }
+        } catch (FileNotFoundException e) {
+            http.printbr("File not found exception while archiving log data");
+        } catch (IOException e) {
+            http.printbr("IO exception while archiving log data");
+        } catch (SecurityException e) {
+            http.printbr("Security exception while archiving log data");
+        }
+        for (int k=0; k<nLogPage; k++) {
+            if (archiveFmt.equals(FMT_INK)) {
+                http.printbr("Archived "+logName(logId, seqNo+k, archiveFmt));
+            } else {
+                http.embedSVG("temp", "../processed/"+logName(logId, seqNo+k), 400, 600);
+                http.printbr("");
+            }
+        }
+        return seqNo + nLogPage;
+    }
 
-                   svg.xmldecl();
+    /**
+     * Writes a page of stroke data received as anoto log data out as an svg log file, in the form
+     * read back by SvgStrokeParser.
+     *
+     * @param logPage the file to write
+     * @param page the page of stroke data
+     * @throws FileNotFoundException
+     */
+    void writeLogPage(File logPage, PageData page)
+        throws FileNotFoundException
+    {
+        PrintWriter  file = new PrintWriter(
+                                new FileOutputStream(logPage));
+        SVGwriter    svg = new SVGwriter(file); 
+
+        svg.xmldecl();
 // quick fix... reading the dtd causes xerce to make a connection when parsing
 // ?? maybe downloading the external dtd and hanging at rmit firewall
 //    ... an unnecessary niecty for us at moment
 //            svg.doctype();
-                    svg.svg(
-                        page.bounds.right,
-                        page.bounds.bottom,
-                        gitaSvgXmlnsAtts);
-                    svg.title(page.info);
-
-// generate paths from immediately predecessing svg log data
-                    if (highestLogSeqNo > 0) {
-                        String lastLogName = logName(logId, highestLogSeqNo);
-                    }
+        svg.svg(
+            page.bounds.right,
+            page.bounds.bottom,
+            gitaSvgXmlnsAtts);
+        svg.title(page.info);
 
 // generate paths from current page                
-                    svg.g();
-                    int i = 0;
-                    for (Stroke s: page.strokes) {
-                        PathDataAttribute    p = s.PathData();
-                        svg.path("stroke_"+i,
-                            svg.styleValueStr(null, s.penColor, 1),
-                            p);
-                        i++;
-                    }
+        svg.g();
+        int i = 0;
+        for (Stroke s: page.strokes) {
+            PathDataAttribute    p = s.PathData();
+            svg.path("stroke_"+i,
+                svg.styleValueStr(null, s.penColor, 1),
+                p);
+            i++;
+        }
+
+        svg.closetag(); // g
+
+        svg.closetag(); // svg
+
+        file.close();
+    }
 
-                    svg.closetag(); // g
+    /**
+     * Writes a page of stroke data out as a binary ink log file.
+     *
+     * @param logPage the file to write
+     * @param page the page of stroke data
+     * @throws IOException
+     * @see BinaryInkWriter
+     */
+    void writeInkPage(File logPage, PageData page)
+        throws IOException
+    {
+        BinaryInkWriter ink = new BinaryInkWriter(new FileOutputStream(logPage));
+        try {
+            ink.writePage(page);
+        } finally {
+            ink.close();
+        }
+    }
 
-                    svg.closetag(); // svg
+    /**
+     * Analyses and displays a list of pages. A single page is done directly. Otherwise, each page is
+     * handed to <i>pagePool</i> as a seperate job, with diagnostic output going to its own buffer.
+     * The buffers are copied to <i>http</i> in page order as the jobs finish, so the response reads
+     * the same as if the pages had been done one after another.
+     *<p>
+     * Files generated for each page get a "-p<i>n</i>" suffix, so that concurrent pages don't
+     * write over each other.
+     *
+     * @param http a HTMLwriter to write data to.
+     * @param pages the pages to analyse
+     */
+    void analysePages(HTMLwriter http, LinkedList<PageData> pages)
+    {
+        LinkedList<String>  labels = new LinkedList<>();
+        for (int k=1; k<=pages.size(); k++) {
+            labels.add("Page "+k);
+        }
+        analysePages(http, pages, labels);
+    }
 
-                    file.close();
-                } catch (FileNotFoundException e) {
-                    http.printbr("File not found exception while parsing log data");
-                } catch (SecurityException e) {
-                    http.printbr("Security exception while parsing log data");
-                } catch (LogParseException e) {
-                    http.printbr("Log parsing exception");
+    /**
+     * Analyses and displays a list of pages, as above, with a heading for each page.
+     *
+     * @param http a HTMLwriter to write data to.
+     * @param pages the pages to analyse
+     * @param labels a heading for each page, in the same order as <i>pages</i>
+     */
+    void analysePages(HTMLwriter http, LinkedList<PageData> pages, LinkedList<String> labels)
+    {
+        if (pages.size() == 1) {
+            analysePage(http, pages.getFirst(), "");
+            return;
+        }
+        LinkedList<Future<String>>  results = new LinkedList<>();
+        int     k = 1;
+        for (final PageData page: pages) {
+            final String    tag = "-p"+k;
+            results.add(pagePool.submit(new Callable<String>() {
+                public String call()
+                {
+                    StringWriter    buf = new StringWriter();
+                    PrintWriter     w = new PrintWriter(buf);
+                    analysePage(new HTMLwriter(w), page, tag);
+                    w.flush();
+                    return buf.toString();
                 }
-                http.embedSVG("temp", "../processed/"+currentLogName, 400, 600);
+            }));
+            k++;
+        }
+        k = 1;
+        Iterator<String>    label = labels.iterator();
+        for (Future<String> r: results) {
+            String  heading = label.hasNext()? label.next(): "Page "+k;
+            if (!demoMode) {
                 http.printbr("");
+                http.printbr("<B>"+heading+"</B>");
+            }
+            try {
+                http.print(r.get());
+            } catch (InterruptedException e) {
+                http.printbr("Interrupted while waiting for analysis of page "+k);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable   cause = e.getCause();
+                http.printbr("Analysis of page "+k+" failed: "+(cause!=null?cause.toString():""));
+            }
+            k++;
+        }
+    }
+
+    /**
+     * Analyses and displays a single page of stroke data. This is either a demonstration run,
+     * or a full display of signature, stroke, and transform data, according to the global
+     * control variables.
+     *
+     * @param http a HTMLwriter to write data to.
+     * @param page the page to analyse
+     * @param tag a suffix for the names of files generated for this page
+     */
+    void analysePage(HTMLwriter http, PageData page, String tag)
+    {
+       try { 
+           if (demoMode) {
+                String demoName = "demonstration"+tag+".svg";
+                File splitPage = new File(
+                        logDirectory, demoName);
+                PrintWriter  file = new PrintWriter(
+                                        new FileOutputStream(splitPage));
+                SVGwriter    svg = new SVGwriter(file);
+                
+               Demonstrator d = new Demonstrator();
+               SymbolList   symbols = d.processPageData(page);
+               d.generateInterpretedPage(http, svg, page, symbols); 
+               
+               file.close();
+               http.print("<center>");
+               http.embedSVG(
+                    "temp",
+                    "../processed/"+demoName,
+                    (int)svg.width, (int)svg.height);
+               http.print("</center>");
+               
            } else {
-              http.printbr("Gita error: unknown format in uploaded data ("+inputFmt+")"); 
-           }
-           if (page != null) {
-               try { 
-                   if (demoMode) {
-                        File splitPage = new File(
-                                logDirectory, "demonstration.svg");
-                        PrintWriter  file = new PrintWriter(
-                                                new FileOutputStream(splitPage));
-                        SVGwriter    svg = new SVGwriter(file);
-                        
-                       Demonstrator d = new Demonstrator();
-                       SymbolList   symbols = d.processPageData(page);
-                       d.generateInterpretedPage(http, svg, page, symbols); 
-                       
-                       file.close();
-                       http.print("<center>");
-                       http.embedSVG(
-                            "temp",
-                            "../processed/demonstration.svg",
-                            (int)svg.width, (int)svg.height);
-                       http.print("</center>");
-                       
-                   } else {
-                       boolean hasSignatureTrainingData = false;
-                        for (StrokeGroup g: page.groups) {
-                            if (g.type == StrokeGroup.Type.SignatureTraining) {
-                                hasSignatureTrainingData = true;
+               boolean hasSignatureTrainingData = false;
+                for (StrokeGroup g: page.groups) {
+                    if (g.type == StrokeGroup.Type.SignatureTraining) {
+                        hasSignatureTrainingData = true;
+                        break;
+                    }
+                }
+               page.AnalyseStrokes(http);
+               if (hasSignatureTrainingData) {
+                    LinkedList<SignatureContainer>   sigs = new LinkedList<>();
+                    for (StrokeGroup g: page.groups) {
+                        switch (g.type) {
+                            case SignatureTraining: {
+                                sigs.add((SignatureContainer)g.info);
                                 break;
                             }
                         }
-                       page.AnalyseStrokes(http);
-                       if (hasSignatureTrainingData) {
-                            LinkedList<SignatureContainer>   sigs = new LinkedList();
-                            for (StrokeGroup g: page.groups) {
-                                switch (g.type) {
-                                    case SignatureTraining: {
-                                        sigs.add((SignatureContainer)g.info);
-                                        break;
-                                    }
-                                }
-                            }
-                            SignaturEater  cigar = new SignaturEater();
+                    }
+                    SignaturEater  cigar = new SignaturEater();
 
-                            cigar.buildSignatureModel(sigs);
-                            if (mapSignatures) {
-                               displaySignatureAnalysis(http, sigs);
-                            } 
-                       }
+                    cigar.buildSignatureModel(sigs);
+                    if (mapSignatures) {
+                       displaySignatureAnalysis(http, sigs, tag);
+                    } 
+               }
 
-                       if (mapFiltered) {
-                           displayStrokeData(http, page);
-                       }
+               if (mapFiltered) {
+                   displayStrokeData(http, page, tag);
+               }
 
-                       if (mapTransforms) {
-                           displayTransformData(http, page);
-                       }
-                   }
-                   
-               } catch (FileNotFoundException e) {
-                   String msg = e.getMessage();
-                   http.printbr("File not found exception while parsing svg log data"+(msg!=null?msg:""));
-               } catch (SecurityException e) {
-                   String msg = e.getMessage();
-                   http.printbr("Security exception while parsing svg log data"+(msg!=null?msg:""));
-               } catch (Cow e) {
-                   String msg = e.getMessage();
-                   http.printbr("Analysis throws a cow"+(msg!=null?msg:""));
+               if (mapTransforms) {
+                   displayTransformData(http, page, tag);
                }
-           } else {
-           }
-        } else {
-           if (logData != null) {
-               http.printbr("No log data received");
-           } else {
-               http.printbr("Empty log received");
            }
-        }
-        http.closetag(); // body
-        http.closetag(); // html
-        
-        
-        writer.flush();
-        writer.close();
-        writer = null;
-//        httpPageStream.flush();
-//        httpPageStream.close(); 
-        httpPageStream = null;
-        
-        if (generateTemporaryPage) {
-// send name of the temporary web page we've constructed back up the line     
-            response.getWriter().print("http://localhost:8084/gita/tmp/"+httpfile.getName());
-        }
-// do some cleanup. delete temporary web page older than 60 mins
-        purgePastUseby(tmpDirectory, 60);
+           
+       } catch (FileNotFoundException e) {
+           String msg = e.getMessage();
+           http.printbr("File not found exception while parsing svg log data"+(msg!=null?msg:""));
+       } catch (SecurityException e) {
+           String msg = e.getMessage();
+           http.printbr("Security exception while parsing svg log data"+(msg!=null?msg:""));
+       } catch (Cow e) {
+           String msg = e.getMessage();
+           http.printbr("Analysis throws a cow"+(msg!=null?msg:""));
+       }
     }
     
     /**
@@ -544,9 +985,10 @@ public class Gita extends HttpServlet
      *
      * @param http a HTMLwriter to write data to.
      * @param sigs LinkedList of all the signature data
+     * @param tag a suffix for the names of generated files
      * @throws FileNotFoundException
      */
-    public void displaySignatureAnalysis(HTMLwriter http, LinkedList<SignatureContainer> sigs)
+    public void displaySignatureAnalysis(HTMLwriter http, LinkedList<SignatureContainer> sigs, String tag)
         throws FileNotFoundException
     {
         if (!sigs.isEmpty()) {
@@ -559,7 +1001,7 @@ public class Gita extends HttpServlet
            int nse = sigs.getFirst().group.size();
            http.printbr(nse + " signature components");
 
-           File splitPage = new File(logDirectory, "signature-graphs.svg");
+           File splitPage = new File(logDirectory, "signature-graphs"+tag+".svg");
            PrintWriter  file = new PrintWriter(
                                     new FileOutputStream(splitPage));
            SVGwriter    svg = new SVGwriter(file); 
@@ -586,10 +1028,10 @@ public class Gita extends HttpServlet
                    svg.g();
                    for (short j=1; j<np; j++) {
 //                       p[j] = new Point(baseX + stf.normL[j]*700, baseY + 50*stf.dTheta[j]);
-                       float px = baseX + s.uberSig[j].arklen*700;
+                       float px = baseX + s.uberArklen[j]*700;
                        float py = baseY + s.sigdTangledL[j]/10;
 
-                       if (s.uberSig[j].keypoint > 0) {
+                       if (s.uberKeypoint[j] > 0) {
                            svg.circle(px, py, 4, "#000000", null, (float)1);
                        }
                        p[j] = new Point(px, py);
@@ -683,13 +1125,13 @@ public class Gita extends HttpServlet
             http.printbr("");
             http.embedSVG(
                 "temp",
-                "../processed/signature-graphs.svg",
+                "../processed/signature-graphs"+tag+".svg",
                 700, 1000);
 
         /*
         * draw signature bits
         */
-           splitPage = new File(logDirectory, "signature-pix.svg");
+           splitPage = new File(logDirectory, "signature-pix"+tag+".svg");
            file = new PrintWriter(new FileOutputStream(splitPage));
            svg = new SVGwriter(file); 
            svg.xmldecl();
@@ -704,7 +1146,7 @@ public class Gita extends HttpServlet
                int np = s.nSigSample;
                Point[]  p = new Point[np];
                for (int i=0; i<np; i++) {
-                   p[i] = new Point(s.uberSig[i]);
+                   p[i] = s.uberTrace.PointAt(i);
                }
                PathDataAttribute pa = new PathDataAttribute(p);
                svg.path("resampld_plein",
@@ -719,10 +1161,10 @@ public class Gita extends HttpServlet
                    if (stroak != null && stroak.info.getClass() == SignatureStroke.class) {
                        SignatureStroke stf = (SignatureStroke) stroak.info;
                        if (stf != null && stf.lfData != null) {
-                           np = stf.lfData.length;
+                           np = stf.lfData.n;
                            http.printbr("mapping component for this stroke. np="+np);
 
-                           pa = new PathDataAttribute(stf.lfData);
+                           pa = new PathDataAttribute(stf.lfData.ToSamples());
                            svg.path("resampld_plein",
                                 stylez[(stind++)%stylez.length],
                                 pa);
@@ -744,7 +1186,7 @@ public class Gita extends HttpServlet
             http.printbr("");
             http.embedSVG(
                 "temp",
-                "../processed/signature-pix.svg",
+                "../processed/signature-pix"+tag+".svg",
                 700, 1000);
         }
     }
@@ -754,13 +1196,14 @@ public class Gita extends HttpServlet
      *
      * @param http a HTMLwriter to write data to.
      * @param page the input page to display
+     * @param tag a suffix for the names of generated files
      * @throws FileNotFoundException
      */
-    public void displayStrokeData(HTMLwriter http, PageData page)
+    public void displayStrokeData(HTMLwriter http, PageData page, String tag)
         throws FileNotFoundException
     {
         File splitPage = new File(
-                logDirectory, "filtered-overlayed.svg");
+                logDirectory, "filtered-overlayed"+tag+".svg");
         PrintWriter  file = new PrintWriter(
                                 new FileOutputStream(splitPage));
         SVGwriter    svg = new SVGwriter(file); 
@@ -775,34 +1218,36 @@ public class Gita extends HttpServlet
             if (s.info != null) {
                 if (s.info.getClass() == StrokeAlysis.class) {
                     StrokeAlysis        sally = (StrokeAlysis) s.info;
+                    sally.Require(StrokeAlysis.Feature.LengthFiltered);
                     if (sally.lengthendStroke != null) {
-                        http.printbr("resampled length "+ sally.lengthendStroke.length);
+                        http.printbr("resampled length "+ sally.lengthendStroke.n);
                         PathDataAttribute    p = s.PathData();
                         svg.path("stroke_"+i,
                             "fill:none;stroke:#338888;stroke-width:3;", p);
-                        p = Stroke.PathData(
-                                sally.lengthendStroke.length,
-                                sally.lengthendStroke
-                            );
+                        p = new PathDataAttribute(sally.lengthendStroke.ToSamples());
                         svg.path("filtered_"+i,
                             "fill:none;stroke:#aa2222;stroke-width:1;", p);
                         SVGpointNumbers(svg, sally.lengthendStroke);
                     }
+                    if (drawResampledComparison) {
+                        sally.Require(StrokeAlysis.Feature.Equalised);
+                    }
                     if (drawResampledComparison && sally.equalisedStroke != null) {
                         Point   osp[] = null;
+                        InkSample   raw[] = s.Samples();
                         osp = Stroke.OffsetScaledSamples(
-                                s.sample.length,
-                                s.sample,
-                                s.sample[0].x, s.sample[0].y+30,
+                                raw.length,
+                                raw,
+                                raw[0].x, raw[0].y+30,
                                 1, 1);
                         svg.path("org_plein"+i,
                                 "fill:none;stroke:#aa2222;stroke-width:1;",
                                 new PathDataAttribute(osp));
                         osp = Stroke.OffsetScaledSamples(
-                                sally.equalisedStroke.length,
-                                sally.equalisedStroke,
-                                s.sample[0].x,
-                                s.sample[0].y+70,
+                                sally.equalisedStroke.n,
+                                sally.equalisedStroke.ToSamples(),
+                                raw[0].x,
+                                raw[0].y+70,
                                 1, 1);
                         svg.path("resampld_plein"+i,
                                "fill:none;stroke:#aa2222;stroke-width:1;",
@@ -810,9 +1255,9 @@ public class Gita extends HttpServlet
                     }
                 }  else if (s.info.getClass() == VanillaStrokeInfo.class) {
                     VanillaStrokeInfo   sinf = (VanillaStrokeInfo)s.info;
-                    PathDataAttribute    p = new PathDataAttribute(sinf.lengthFilteredStroke);
+                    PathDataAttribute    p = new PathDataAttribute(sinf.lengthFilteredStroke.ToSamples());
                     svg.path("stroke_"+i, "fill:none;stroke:#338888;stroke-width:3;", p);
-                    p = new PathDataAttribute(sinf.artifactFilteredStroke);
+                    p = new PathDataAttribute(sinf.artifactFilteredStroke.ToSamples());
                     svg.path("stroke_"+i, "fill:none;stroke:#883333;stroke-width:1;", p);
                     SVGpointNumbers(svg, sinf.artifactFilteredStroke);
                     sinf.DisplayFeatures(http);
@@ -835,7 +1280,7 @@ public class Gita extends HttpServlet
         http.printbr("");
         http.embedSVG(
             "temp",
-            "../processed/filtered-overlayed.svg",
+            "../processed/filtered-overlayed"+tag+".svg",
             (int)svg.width, (int)svg.height);
     }
     
@@ -845,17 +1290,23 @@ public class Gita extends HttpServlet
      *
      * @param http a HTMLwriter to write data to.
      * @param page the input page to display
+     * @param tag a suffix for the names of generated files
      * @throws FileNotFoundException
      */
-    public void displayTransformData(HTMLwriter http, PageData page)
+    public void displayTransformData(HTMLwriter http, PageData page, String tag)
         throws FileNotFoundException
     {
         int     i = 0;
         for (Stroke s: page.strokes) {
            if (s.info != null && s.info.getClass() == StrokeAlysis.class) {
                StrokeAlysis    sally = (StrokeAlysis) s.info;
+               sally.Require(StrokeAlysis.Feature.Straightened);
+               sally.Require(StrokeAlysis.Feature.Equalised);
+               if (displayTransformGraphs) {
+                   sally.Require(StrokeAlysis.Feature.Transforms);
+               }
                File splitPage = new File(
-                        logDirectory, "transform-graph-"+i+".svg");
+                        logDirectory, "transform-graph"+tag+"-"+i+".svg");
                PrintWriter  file = new PrintWriter(
                                         new FileOutputStream(splitPage));
                SVGwriter    svg = new SVGwriter(file); 
@@ -912,11 +1363,11 @@ public class Gita extends HttpServlet
                    SVGraphit(svg, "straightend d2Theta/dL2", sally.straightenD2thetaDl2, "#222277", 2, scaleW, 30, 0, graphY += graphIte);
                }
 
-               if (s.sample != null) {
+               if (s.nSample > 0) {
                    Point        p[] = 
                             Stroke.OffsetScaledSamples(
-                                s.sample.length,
-                                s.sample,
+                                s.nSample,
+                                s.Samples(),
                                 0, 0, 3, 3);
                   SVGpathit(
                            svg,
@@ -934,8 +1385,8 @@ public class Gita extends HttpServlet
                    }
                    Point    p[] =
                            Stroke.OffsetScaledSamples(
-                                sally.lengthendStroke.length,
-                                sally.lengthendStroke,
+                                sally.lengthendStroke.n,
+                                sally.lengthendStroke.ToSamples(),
                                 0, 0, 3, 3);
                    SVGpathit(
                            svg,
@@ -953,8 +1404,8 @@ public class Gita extends HttpServlet
                    }
                    Point    p[] =
                             Stroke.OffsetScaledSamples(
-                                sally.straightendStroke.length,
-                                sally.straightendStroke,
+                                sally.straightendStroke.n,
+                                sally.straightendStroke.ToSamples(),
                                 0, 0, 3, 3);
                    SVGpathit(
                            svg,
@@ -968,8 +1419,8 @@ public class Gita extends HttpServlet
                if (sally.equalisedStroke != null) {
                    Point    p[] =
                            Stroke.OffsetScaledSamples(
-                                sally.equalisedStroke.length,
-                                sally.equalisedStroke,
+                                sally.equalisedStroke.n,
+                                sally.equalisedStroke.ToSamples(),
                                 0, 0, 3, 3);
                    SVGpathit(
                            svg,
@@ -988,8 +1439,8 @@ public class Gita extends HttpServlet
                file.close();
                http.embedSVG(
                     "temp",
-                    "../processed/transform-graph-"+i+".svg",
-                    (int)page.bounds.right*2, (int)800);
+                    "../processed/transform-graph"+tag+"-"+i+".svg",
+                    (int)page.bounds.right*2, 800);
             }
             i++;
         }
@@ -1032,7 +1483,7 @@ public class Gita extends HttpServlet
                         pts[j].x, 
                         pts[j].y, 
                         Float.toString(floatTags[j+tagOff]),
-                        "Verdana", (float)fontSize, "#000000"
+                        "Verdana", fontSize, "#000000"
                      );
                 }
             }
@@ -1059,6 +1510,26 @@ public class Gita extends HttpServlet
         }
     }
     
+    /**
+     * Adds numeric text labels to the points of the given trace
+     *
+     * @param svg SVGwriter to which to generate output
+     * @param t trace to annotate
+     */
+    public void SVGpointNumbers(
+            SVGwriter svg,
+            InkTrace t)
+    {
+        for (int j=0; j<t.n; j++) {
+            svg.text(
+                t.x[j], 
+                t.y[j], 
+                Integer.toString(j),
+                "Verdana", (float)1.5, "#000000"
+             );
+        }
+    }
+    
     /**
      * Generates a graph from floating point y values
      *
@@ -1204,6 +1675,10 @@ public class Gita extends HttpServlet
     public static final String FMT_LOG = "log";
     /** String value for format parameter, for svg data passed to gita*/
     public static final String FMT_SVG = "svg";
+    /** String value for format parameter, for binary ink data passed to gita*/
+    public static final String FMT_INK = "ink";
+    /** content type for uploaded binary ink files */
+    public static final String INK_CONTENT_TYPE = "application/x-gita-ink";
     
     /** global control variable, true if we want to display the graphic results of contour filtering and resampling */
     boolean mapFiltered = true;
@@ -1216,6 +1691,27 @@ public class Gita extends HttpServlet
     /** global control variable, true if we want to display the graphic results of transforms of contour data */
     boolean  displayTransformGraphs = false;
     
+    /** parse anoto log data with the original regex scanner rather than the AnotoLogScanner. set by the "log-scanner" init parameter */
+    boolean regexLogScanner = false;
+    
+    /** format used for archiving received logs under the processed directory, FMT_SVG or FMT_INK. set by the "archive-fmt" init parameter */
+    String  archiveFmt = FMT_SVG;
+    
+    /** the active regions of each paper, used to filter the transmit box from anoto log data. loaded from the file given by the "paper-regions" init parameter, relative to the project base */
+    PaperRegionRegistry paperRegions = null;
+    
+    /** thread pool used to analyse the pages of a multi-page log concurrently. sized by the "page-threads" init parameter, defaulting to the number of processors */
+    ExecutorService pagePool = null;
+    
+    /** thread pool used for feature calculation on strokes while svg data is still being parsed */
+    ExecutorService strokePool = null;
+    
+    /** start feature calculations on strokes as they are parsed from svg data, rather than once the whole page is read. cleared by setting the "stroke-analysis" init parameter to "batch" */
+    boolean streamAnalysis = true;
+    
+    /** size, in bytes, of the smallest svg upload for which stroke analysis is started during the parse */
+    long    streamAnalysisThreshold = 64*1024;
+    
     /** puts gita into demo mode... runs with minimal diagnositics, a different style sheet, and processes through the Demonstrator class */
     boolean demoMode = false;
     
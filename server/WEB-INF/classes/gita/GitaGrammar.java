@@ -22,7 +22,6 @@ import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
-import org.apache.xerces.parsers.SAXParser;
 import org.xml.sax.SAXException;
 
 /**
@@ -41,8 +40,8 @@ public class GitaGrammar extends DefaultHandler
      */
     public GitaGrammar()
     {
-        rules = new LinkedList();
-        relations = new Stack();
+        rules = new LinkedList<>();
+        relations = new Stack<>();
     }
     
     /**
@@ -83,16 +82,7 @@ public class GitaGrammar extends DefaultHandler
     {
         http = h;
         
-        XMLReader   xr = new SAXParser();
-//	MySAXApp handler = new MySAXApp();
-	xr.setContentHandler(this);
-	xr.setErrorHandler(this);
-        try {
-            xr.setFeature("http://xml.org/sax/features/validation", false); 
-            xr.setFeature("http://xml.org/sax/features/external-parameter-entities", false); 
-        } catch (SAXException e) {
-            ;
-        }
+        XMLReader   xr = SaxParserPool.acquire(this, this);
         
         InputSource is = new InputSource(r);
         
@@ -102,6 +92,8 @@ public class GitaGrammar extends DefaultHandler
             http.printbr("io exception: "+e.getMessage());
         } catch (SAXException e) {
             http.printbr("sax exception: "+e.getMessage());
+        } finally {
+            SaxParserPool.release(xr);
         }
     }
 
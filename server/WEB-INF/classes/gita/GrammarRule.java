@@ -119,7 +119,7 @@ public class GrammarRule {
         Relationship(Type t)
         {
             super(t);
-            params = new ArrayList();
+            params = new ArrayList<>();
         }
         
         public boolean add(Entity e)
@@ -325,8 +325,8 @@ public class GrammarRule {
     {
         id = nm;
         target = tgt;
-        body = new ArrayList();
-        soul = new ArrayList();
+        body = new ArrayList<>();
+        soul = new ArrayList<>();
     }
     
     public boolean add(Entity e)
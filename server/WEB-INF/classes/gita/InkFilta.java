@@ -16,8 +16,12 @@ import static java.lang.Math.*;
 /**
  * This class is a collection of useful static methods for manipulating InkSample and related data.
  * There's no point instantiating it.
+ *<p>
+ * The filters work on the packed <i>InkTrace</i> form of a stroke. The versions taking arrays of
+ * InkSample are adapters for older callers, and copy their input into a trace and back.
  *
  * @see InkSample
+ * @see InkTrace
  */
 public class InkFilta {
     
@@ -48,26 +52,42 @@ public class InkFilta {
     /**
      * removes short strokes from the input sample array, returning the filtered results.
      *
+     * @param threshold the shortest length of path kept between samples
      * @param n the number of samples of input data
      * @param d the input InkSample data
+     * @param dL array of segment lengths of the input data
      * @return a more compact array of sample data
      * @see InkSample
      */
     static public InkSample[] ShortStrokeFilter(float threshold, int n, InkSample[] d, float[] dL)
     {
-        InkSample[]     nd = new InkSample[n];
-        int             nFltSample = 0;
+        return ShortStrokeFilter(threshold, new InkTrace(n, d), dL).ToSamples();
+    }
+    
+    /**
+     * removes short strokes from the input trace, returning the filtered results.
+     *
+     * @param threshold the shortest length of path kept between samples
+     * @param d the input trace
+     * @param dL array of segment lengths of the input data
+     * @return a new, shorter, trace
+     * @see InkTrace
+     */
+    static public InkTrace ShortStrokeFilter(float threshold, InkTrace d, float[] dL)
+    {
+        int             n = d.n;
+        InkTrace        nd = new InkTrace(n);
         float           lenTrav = 0;
         
-        nd[nFltSample++] = d[0];
+        nd.Add(d, 0);
         for (int i=1; i<n; i++) {
             lenTrav += dL[i];
-            if (lenTrav >= threshold && d[i] != null) {
+            if (lenTrav >= threshold) {
                 lenTrav = 0;
-                nd[nFltSample++] = d[i];
+                nd.Add(d, i);
             }
         }
-        return CompactStrokeData(nFltSample, nd);
+        return nd;
     }
     
     /**
@@ -100,8 +120,24 @@ public class InkFilta {
         if (n < Tolerance.penArtifactFiltaPointThresh) {
             return CompactStrokeData(n, d);
         }
-        InkSample[]     nd = new InkSample[n];
-        int             nFltSample = 0;
+        return PenArtifactFilter(new InkTrace(n, d), dL, tangle).ToSamples();
+    }
+
+    /**
+     * attempts to remove pen artifacts from the ends of a stroke, as above, working on a trace.
+     *
+     * @param d the input trace
+     * @param dL array of segment length components
+     * @param tangle array of tangent angles (radian)
+     * @return a maybe shorter and less noisy trace. If nothing could be removed, this may be <i>d</i> itself
+     * @see InkTrace
+     */
+    static public InkTrace PenArtifactFilter(InkTrace d, float[] dL, float[] tangle)
+    {
+        int             n = d.n;
+        if (n < Tolerance.penArtifactFiltaPointThresh) {
+            return d;
+        }
         float           lenTrav = 0;
         
         int             firstValid = 0;
@@ -132,10 +168,11 @@ public class InkFilta {
             np++;
         }
         
+        InkTrace        nd = new InkTrace(lastValid-firstValid+1);
         for (int i=firstValid; i<=lastValid; i++) {
-            nd[nFltSample++] = d[i];
+            nd.Add(d, i);
         }
-        return CompactStrokeData(nFltSample, nd);
+        return nd;
     }
 
     
@@ -161,27 +198,370 @@ public class InkFilta {
             InkSample[] d,
             float[] theta)
     {
-        InkSample[]     nd = new InkSample[n];
-        int             nFltSample = 0;
+        return LineStraighteningFilter(filterAbs, filterCum, threshold, new InkTrace(n, d), theta).ToSamples();
+    }
+    
+    /**
+     * Resamples a trace, removing any points that subtend an angle below a certain threshold, as above.
+     *
+     * @param filterAbs The filtering process is based on the absolute angle subtended by the segments to and from a point
+     * @param filterCum The filtering process is based on the cumulative angle subtended by consecutive segments 
+     * @param threshold the threshold value for resampling the input data
+     * @param d the input trace
+     * @param theta array of tangent angles (radian)
+     * @return a straightened trace
+     * @see InkTrace
+     */
+    static public InkTrace LineStraighteningFilter(
+            boolean filterAbs,
+            boolean filterCum,
+            float threshold,
+            InkTrace d,
+            float[] theta)
+    {
+        int             n = d.n;
+        InkTrace        nd = new InkTrace(n);
         float           cumAngle = 0;
            
-        nd[nFltSample++] = d[0];
+        nd.Add(d, 0);
         for (int i=2; i<n; i++) {
             cumAngle += theta[i];
             if (filterAbs && Math.abs(theta[i]) < threshold) {
             } else if (filterCum && Math.abs(cumAngle) < threshold) {
-            } else if (d[i-1] != null) {
-                nd[nFltSample++] = d[i-1];
+            } else {
+                nd.Add(d, i-1);
                 cumAngle = 0;
             }
         }
         
         if (n > 1) {
-            nd[nFltSample++] = d[n-1];
+            nd.Add(d, n-1);
         }
-        return CompactStrokeData(nFltSample, nd);
+        return nd;
     }
        
+    /**
+     * Simplifies a trace by the Douglas-Peucker method: the samples furthest from the chord between
+     * two kept samples are kept, recursively, until every sample dropped lies within <i>tolerance</i> of
+     * the chord it is dropped from. Unlike <i>LineStraighteningFilter</i> it doesn't need the tangent
+     * angles, and the result depends on distance from the path rather than on the density of samples.
+     * The recursion is done with an explicit stack, so long strokes can't overflow the thread's stack.
+     * The first and last samples are always kept.
+     *
+     * @param tolerance greatest distance from the simplified path of any sample dropped
+     * @param d the input trace
+     * @return the simplified trace
+     * @see InkTrace
+     */
+    static public InkTrace DouglasPeuckerFilter(float tolerance, InkTrace d)
+    {
+        int         n = d.n;
+        if (n <= 2) {
+            return d.Copy(0, n);
+        }
+        float[]     xs = d.x;
+        float[]     ys = d.y;
+        boolean[]   keep = new boolean[n];
+        int[]       stack = new int[64];
+        int         sp = 0;
+        int         nKeep = 2;
+        float       tolSq = tolerance*tolerance;
+        
+        keep[0] = keep[n-1] = true;
+        stack[sp++] = 0;
+        stack[sp++] = n-1;
+        while (sp > 0) {
+            int     hi = stack[--sp];
+            int     lo = stack[--sp];
+            int     worst = -1;
+            float   worstSq = tolSq;
+            for (int i=lo+1; i<hi; i++) {
+                float   dSq = SegmentDistanceSq(xs[i], ys[i], xs[lo], ys[lo], xs[hi], ys[hi]);
+                if (dSq > worstSq) {
+                    worstSq = dSq;
+                    worst = i;
+                }
+            }
+            if (worst >= 0) {
+                keep[worst] = true;
+                nKeep++;
+                if (sp + 4 > stack.length) {
+                    int[]   ns = new int[2*stack.length];
+                    System.arraycopy(stack, 0, ns, 0, sp);
+                    stack = ns;
+                }
+                stack[sp++] = lo;
+                stack[sp++] = worst;
+                stack[sp++] = worst;
+                stack[sp++] = hi;
+            }
+        }
+        
+        InkTrace    nd = new InkTrace(nKeep);
+        for (int i=0; i<n; i++) {
+            if (keep[i]) {
+                nd.Add(d, i);
+            }
+        }
+        return nd;
+    }
+    
+    /**
+     * Simplifies a trace by the Visvalingam-Whyatt method: the sample making the triangle of least
+     * area with its neighbours is dropped, and the areas of its neighbours worked out again, until
+     * every triangle left has an area of at least <i>minArea</i>. The triangles are kept in a heap,
+     * so this takes O(n log n). As usual, the area of a triangle is not allowed to be less than that
+     * of one dropped before it, so that a sample is never dropped before one that is less significant.
+     * The first and last samples are always kept.
+     *
+     * @param minArea least area of the triangle made by a sample kept and its neighbours
+     * @param d the input trace
+     * @return the simplified trace
+     * @see InkTrace
+     */
+    static public InkTrace VisvalingamFilter(float minArea, InkTrace d)
+    {
+        int         n = d.n;
+        if (n <= 2) {
+            return d.Copy(0, n);
+        }
+        float[]     xs = d.x;
+        float[]     ys = d.y;
+        int[]       prev = new int[n];
+        int[]       next = new int[n];
+        float[]     area = new float[n];
+        int[]       heap = new int[n];      // indices of interior samples, least area first
+        int[]       pos = new int[n];       // position of each sample in the heap, or -1
+        int         nHeap = 0;
+        
+        for (int i=0; i<n; i++) {
+            prev[i] = i-1;
+            next[i] = i+1;
+            pos[i] = -1;
+        }
+        for (int i=1; i<n-1; i++) {
+            area[i] = TriangleArea(xs, ys, i-1, i, i+1);
+            heap[nHeap] = i;
+            pos[i] = nHeap++;
+        }
+        for (int i=nHeap/2-1; i>=0; i--) {
+            HeapDown(heap, pos, area, nHeap, i);
+        }
+        
+        int     nKeep = n;
+        float   lastArea = 0;
+        while (nHeap > 0 && area[heap[0]] < minArea) {
+            int     i = heap[0];
+            if (area[i] > lastArea) {
+                lastArea = area[i];
+            }
+            nHeap--;
+            pos[i] = -1;
+            if (nHeap > 0) {
+                heap[0] = heap[nHeap];
+                pos[heap[0]] = 0;
+                HeapDown(heap, pos, area, nHeap, 0);
+            }
+            int     p = prev[i];
+            int     q = next[i];
+            next[p] = q;
+            prev[q] = p;
+            nKeep--;
+            if (pos[p] >= 0) {
+                area[p] = Math.max(lastArea, TriangleArea(xs, ys, prev[p], p, q));
+                HeapFix(heap, pos, area, nHeap, pos[p]);
+            }
+            if (pos[q] >= 0) {
+                area[q] = Math.max(lastArea, TriangleArea(xs, ys, p, q, next[q]));
+                HeapFix(heap, pos, area, nHeap, pos[q]);
+            }
+        }
+        
+        InkTrace    nd = new InkTrace(nKeep);
+        for (int i=0; i<n; i=next[i]) {
+            nd.Add(d, i);
+        }
+        return nd;
+    }
+    
+    /**
+     * @return the square of the distance from (px,py) to the segment from (ax,ay) to (bx,by)
+     */
+    static float SegmentDistanceSq(float px, float py, float ax, float ay, float bx, float by)
+    {
+        float   dx = bx - ax;
+        float   dy = by - ay;
+        float   lenSq = dx*dx + dy*dy;
+        float   t = lenSq > 0? ((px-ax)*dx + (py-ay)*dy)/lenSq: 0;
+        if (t < 0) {
+            t = 0;
+        } else if (t > 1) {
+            t = 1;
+        }
+        float   ex = px - (ax + t*dx);
+        float   ey = py - (ay + t*dy);
+        return ex*ex + ey*ey;
+    }
+    
+    /**
+     * @return the area of the triangle made by three samples
+     */
+    static float TriangleArea(float[] xs, float[] ys, int a, int b, int c)
+    {
+        return Math.abs((xs[b]-xs[a])*(ys[c]-ys[a]) - (xs[c]-xs[a])*(ys[b]-ys[a]))/2;
+    }
+    
+    /**
+     * true if heap entry i should come before j: less area, or the same area and earlier in the trace
+     */
+    static boolean HeapLess(float[] area, int i, int j)
+    {
+        return area[i] < area[j] || (area[i] == area[j] && i < j);
+    }
+    
+    /**
+     * moves a heap entry down to its place
+     */
+    static void HeapDown(int[] heap, int[] pos, float[] area, int nHeap, int k)
+    {
+        int     i = heap[k];
+        while (2*k+1 < nHeap) {
+            int     c = 2*k+1;
+            if (c+1 < nHeap && HeapLess(area, heap[c+1], heap[c])) {
+                c++;
+            }
+            if (!HeapLess(area, heap[c], i)) {
+                break;
+            }
+            heap[k] = heap[c];
+            pos[heap[k]] = k;
+            k = c;
+        }
+        heap[k] = i;
+        pos[i] = k;
+    }
+    
+    /**
+     * moves a heap entry whose area has changed to its place, up or down
+     */
+    static void HeapFix(int[] heap, int[] pos, float[] area, int nHeap, int k)
+    {
+        int     i = heap[k];
+        while (k > 0 && HeapLess(area, i, heap[(k-1)/2])) {
+            heap[k] = heap[(k-1)/2];
+            pos[heap[k]] = k;
+            k = (k-1)/2;
+        }
+        heap[k] = i;
+        pos[i] = k;
+        HeapDown(heap, pos, area, nHeap, k);
+    }
+    
+    /**
+     * Resamples a trace at points spaced evenly along its arc length, by walking the segments once
+     * and interpolating linearly between the samples either side of each new point. Unlike
+     * <i>DaEqualizaFilta</i>, the spacing is measured along the path rather than as the chord between
+     * consecutive new points, and there are no degenerate cases. The first sample is kept, and the last
+     * is added if the path doesn't finish on a whole number of segments.
+     *
+     * @param d the input trace
+     * @param resampLen the length of path between consecutive points of the resampled trace
+     * @return the resampled trace
+     * @see InkTrace
+     */
+    static public InkTrace ArcLengthResample(InkTrace d, float resampLen)
+    {
+        double  pathLen = PathLength(d);
+        if (d.n <= 1 || resampLen <= 0 || pathLen == 0) {
+            return d.Copy(0, Math.min(d.n, 1));
+        }
+        int     count = (int)(pathLen/resampLen) + 1;
+        boolean endOnPoint = pathLen - (count-1)*(double)resampLen > resampLen*.01;
+        return ArcLengthResample(d, resampLen, count, endOnPoint);
+    }
+    
+    /**
+     * Resamples a trace to a given number of points, spaced evenly along its arc length, as above.
+     * The first and last samples are always kept.
+     *
+     * @param d the input trace
+     * @param nPoint the number of points in the resampled trace
+     * @return the resampled trace
+     * @see InkTrace
+     */
+    static public InkTrace ArcLengthResampleCount(InkTrace d, int nPoint)
+    {
+        double  pathLen = PathLength(d);
+        if (d.n <= 1 || nPoint <= 1 || pathLen == 0) {
+            return d.Copy(0, Math.min(d.n, 1));
+        }
+        return ArcLengthResample(d, pathLen/(nPoint-1), nPoint-1, true);
+    }
+    
+    /**
+     * the walk along the arc length for the two resamplers above
+     *
+     * @param d the input trace, of at least 2 samples
+     * @param step the length of path between new points
+     * @param count the number of new points spaced by <i>step</i>, starting at the first sample
+     * @param endOnPoint true to finish with the last sample of <i>d</i>
+     */
+    static InkTrace ArcLengthResample(InkTrace d, double step, int count, boolean endOnPoint)
+    {
+        int         n = d.n;
+        float[]     xs = d.x;
+        float[]     ys = d.y;
+        InkTrace    nd = new InkTrace(count + (endOnPoint? 1: 0));
+        
+        int     j = 0;          // current segment, from sample j to j+1
+        double  segStart = 0;   // arc length at sample j
+        double  segLen = segmentLength(xs[1]-xs[0], ys[1]-ys[0]);
+        for (int k=0; k<count; k++) {
+            double  s = k*step;
+            while (j < n-2 && segStart + segLen < s) {
+                segStart += segLen;
+                j++;
+                segLen = segmentLength(xs[j+1]-xs[j], ys[j+1]-ys[j]);
+            }
+            double  t = segLen > 0? (s - segStart)/segLen: 0;
+            if (t > 1) {
+                t = 1;
+            }
+            nd.Add((float)(xs[j] + t*(xs[j+1]-xs[j])), (float)(ys[j] + t*(ys[j+1]-ys[j])));
+            if (d.time != null) {
+                nd.SetTime(nd.n-1, d.time[j] + Math.round(t*(d.time[j+1]-d.time[j])));
+            }
+            if (d.pressure != null) {
+                nd.SetPressure(nd.n-1, d.pressure[t < .5? j: j+1]);
+            }
+        }
+        if (endOnPoint) {
+            nd.Add(d, n-1);
+        }
+        return nd;
+    }
+    
+    /**
+     * @return the length of a segment, in double precision
+     */
+    static double segmentLength(double dX, double dY)
+    {
+        return Math.sqrt(dX*dX + dY*dY);
+    }
+    
+    /**
+     * @param d a trace
+     * @return the length of the path along the trace
+     */
+    static public double PathLength(InkTrace d)
+    {
+        double  len = 0;
+        for (int i=1; i<d.n; i++) {
+            len += segmentLength(d.x[i]-d.x[i-1], d.y[i]-d.y[i-1]);
+        }
+        return len;
+    }
+    
     /**
      * Resamples a stroke s.t. it is composed of equal length segments
      *
@@ -222,7 +602,7 @@ public class InkFilta {
         float   lSq = resampLen * resampLen;
         float   rangeTolerance = (float)(resampLen*.01);
         
-        LinkedList  points = new LinkedList();
+        LinkedList<InkSample>   points = new LinkedList<>();
         int         nResampledPoints = 0;
         
         Point   p1 = d[0];
@@ -472,7 +852,7 @@ public class InkFilta {
             }
         }
         InkSample[] resampledPts = new InkSample[nResampledPoints];
-        resampledPts = (InkSample[])(points.toArray(resampledPts));
+        resampledPts = points.toArray(resampledPts);
         
         return CompactStrokeData(nResampledPoints, resampledPts);
     }
@@ -525,21 +905,21 @@ public class InkFilta {
      */
     static public float[] SegmentLengths(int n, InkSample[] s)
     {
-        float[] la = new float[n];
-        float   lX = s[0].x;
-        float   lY = s[0].y;
-        la[0] = 0;
-
-        for (int i=1; i<n; i++) {
-            float   x = s[i].x;
-            float   y = s[i].y;
-            float   dX = x - lX;
-            float   dY = y - lY;
-
-            la[i] = (float)Math.sqrt(dX*dX + dY*dY);
-            lX = x;
-            lY = y;
-        }
+        return SegmentLengths(new InkTrace(n, s));
+    }
+    
+    /**
+     * returns an array of segment lengths for a trace
+     *
+     * @param t the trace
+     * @return an array of segment lengths
+     * @see InkTrace
+     * @see InkVecta
+     */
+    static public float[] SegmentLengths(InkTrace t)
+    {
+        float[] la = new float[t.n];
+        InkVecta.kernels.SegmentLengths(t.x, t.y, t.n, la);
         return la;
     }
     
@@ -564,12 +944,33 @@ public class InkFilta {
             InkSample d[],
             boolean forceClosed) throws Cow
     {
+        return DelTheta(new InkTrace(n, d), forceClosed);
+    }
+    
+    /**
+     * returns an array of tangent angles for a trace, as above. Angles are measured in radians
+     *
+     *<p>
+     * The InkSample version compared the first and last samples as objects, so a path was only
+     * ever taken as closed when forced, and that is kept here.
+     *
+     * @param d the trace
+     * @param forceClosed forces the assumption that the path is a closed one.
+     * @return an array of tangent angles
+     * @see InkTrace
+     */
+    static public float [] DelTheta(
+            InkTrace d,
+            boolean forceClosed) throws Cow
+    {
+        int         n = d.n;
+        float[]     xs = d.x;
+        float[]     ys = d.y;
         if (n < 1) {
             throw new Cow("no point");
         }
         
         float[]     theta;
-        float       tanThetaDiff;
         
         theta = new float[n];
  
@@ -581,66 +982,60 @@ public class InkFilta {
         theta[0] = Float.NaN;
         theta[1] = Float.NaN;
 
-        float   lX = d[0].x;
-        float   lY = d[0].y;
         float   ldX = 0;
         float   ldY = 0;
         
         boolean closedPath = false;
         
-        if (forceClosed || d[n-1].equals(d[0])) {
+        if (forceClosed) {
             closedPath = true;
 
-            ldX = d[n-1].x - d[n-2].x;
-            ldY = d[n-1].y - d[n-2].y;
+            ldX = xs[n-1] - xs[n-2];
+            ldY = ys[n-1] - ys[n-2];
         }
         
-        for (int i=1; i<n; i++) {
-            float   x = d[i].x;
-            float   y = d[i].y;
-            float   dX = x - lX;
-            float   dY = y - lY;
-
-            if (dX == 0) {
-                if (dY == 0) {
-                    tanThetaDiff = 0;
-                    theta[i] = 0;
-                } else {
-                }
+        InkVecta.kernels.Tangles(xs, ys, n, ldX, ldY, theta);
+        return theta;
+    }
+    
+    /**
+     * returns the tangent angle between two consecutive segments, in the range (-pi, pi]
+     *
+     * @param dX x component of the segment
+     * @param dY y component of the segment
+     * @param ldX x component of the segment before it
+     * @param ldY y component of the segment before it
+     * @return the angle turned from the direction of the segment before to the direction of the segment
+     */
+    static float Tangle(float dX, float dY, float ldX, float ldY)
+    {
+        float   tanThetaDiff;
+        float   theta;
+        float   tanumerator = dY*ldX - ldY*dX;
+        float   tanominator = dX*ldX + dY*ldY;
+        if (Tolerance.fastTrig) {
+            return Trigga.Tangle(tanumerator, tanominator);
+        }
+        if (tanominator == 0) {
+            if (tanumerator < 0) {
+                theta = - (float) Math.PI/2;
+            } else if (tanumerator > 0) {
+                theta = (float) Math.PI/2;
             } else {
+                theta = 0;
             }
-
-            float   tanumerator = dY*ldX - ldY*dX;
-            float   tanominator = dX*ldX + dY*ldY;
-            if (tanominator == 0) {
-                if (tanumerator < 0) {
-                    tanThetaDiff = Float.NEGATIVE_INFINITY;
-                    theta[i] = - (float) Math.PI/2;
-                } else if (tanumerator > 0) {
-                    tanThetaDiff = Float.POSITIVE_INFINITY;
-                    theta[i] = (float) Math.PI/2;
-                } else {
-                    tanThetaDiff = 0;
-                    theta[i] = 0;
+        } else {
+            tanThetaDiff = tanumerator / tanominator;
+            theta = (float)Math.atan(tanThetaDiff);
+            if (tanThetaDiff < 0) {
+                if (tanumerator > 0) {
+                    theta += Math.PI;
                 }
             } else {
-                tanThetaDiff = tanumerator / tanominator;
-                theta[i] = (float)Math.atan(tanThetaDiff);
-                if (tanThetaDiff < 0) {
-                    if (tanumerator > 0) {
-                        theta[i] += Math.PI;
-                    }
-                } else {
-                    if (tanumerator < 0) {
-                        theta[i] -= Math.PI;
-                    }
+                if (tanumerator < 0) {
+                    theta -= Math.PI;
                 }
             }
-
-            ldX = dX;
-            ldY = dY;
-            lX = x;
-            lY = y;
         }
         return theta;
     }
@@ -659,22 +1054,9 @@ public class InkFilta {
         if (dy.length != dx.length || dy.length == 0) {
             return null;
         }
-        int     i;
         float[] dYdX = new float[dy.length];
         
-        for (i=0; i<dy.length; i++) {
-            if (dy[i] == Float.NaN || dx[i] == Float.NaN) {
-                dYdX[i] = Float.NaN;
-            } else if (dx[i] == 0) {
-                if (dy[i] < 0) {
-                    dYdX[i] = Float.NEGATIVE_INFINITY;
-                } else {
-                    dYdX[i] = Float.POSITIVE_INFINITY;
-                }
-            } else {
-                dYdX[i] = dy[i]/dx[i];
-            }
-        }
+        InkVecta.kernels.DyDx(dy, dx, dy.length, dYdX);
         return dYdX;
     }
     
@@ -687,15 +1069,9 @@ public class InkFilta {
     static public float[] NormalizeLengthVector(float []dL)
     {
         float[]     nudl = null;
-        float       len = 0;
                 
         nudl = new float[dL.length];
-        for (int i=0; i<dL.length; i++) {
-            len += dL[i];
-        }
-        for (int i=0; i<dL.length; i++) {
-            nudl[i] = dL[i]/len;
-        }
+        InkVecta.kernels.Normalize(dL, dL.length, nudl);
         return nudl;
     }
 }
@@ -0,0 +1,344 @@
+/*
+ * InkFiltaChain.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import static java.lang.Math.*;
+
+/**
+ * The usual run of <i>InkFilta</i> filters over a stroke, fused together and working in scratch
+ * buffers that are kept from one stroke to the next. It gives the same results, to the bit, as
+ *<pre>
+ *   dL = InkFilta.SegmentLengths(trace);
+ *   lf = InkFilta.ShortStrokeFilter(threshold, trace, dL);
+ *   dL = InkFilta.SegmentLengths(lf);
+ *   tangle = InkFilta.DelTheta(lf, false);
+ *   af = InkFilta.PenArtifactFilter(lf, dL, tangle);
+ *   dL = InkFilta.SegmentLengths(af);
+ *   tangle = InkFilta.DelTheta(af, false);
+ *</pre>
+ * but in a single pass over the stroke. The short stroke filter works out the segment lengths as
+ * it goes, and the segment lengths and tangent angles of the filtered trace are worked out as each
+ * point is kept. The pen artifact filter only trims the ends of the filtered trace, so its output is
+ * a run of the filtered trace, and all but the first two of its lengths and angles are the same as
+ * those already worked out. Only the angles at the first two points have to be filled in again.
+ *<p>
+ * Results are left in the buffers of the chain, and are overwritten by the next <i>Run()</i>. Once
+ * the buffers have grown to fit the longest stroke seen, a run allocates nothing. The <i>Copy</i>
+ * methods make arrays of exactly the right size, for results that are to be kept.
+ *<p>
+ * A chain is not thread safe. <i>Local()</i> gives each thread a chain of its own.
+ *
+ * @see InkFilta
+ * @see StrokeCurveInfo
+ * @author dak
+ * @since you asked
+ */
+public class InkFiltaChain
+{
+    /**
+     * Creates a chain with buffers for strokes of the given length. They grow if need be.
+     *
+     * @param capacity number of samples to allow for
+     */
+    public InkFiltaChain(int capacity)
+    {
+        lengthFiltered = new InkTrace(capacity);
+        lfLength = new float[max(capacity, 1)];
+        lfTangle = new float[max(capacity, 1)];
+        afLength = new float[max(capacity, 1)];
+        afTangle = new float[max(capacity, 1)];
+    }
+
+    /**
+     * @return the chain belonging to the calling thread
+     */
+    public static InkFiltaChain Local()
+    {
+        return local.get();
+    }
+
+    /**
+     * Runs the filters over a trace, leaving the results in the chain
+     *
+     * @param threshold the shortest length of path kept between samples by the short stroke filter
+     * @param d the trace of the stroke
+     */
+    public void Run(float threshold, InkTrace d)
+    {
+        int         n = d.n;
+        float[]     xs = d.x;
+        float[]     ys = d.y;
+
+        Reserve(n);
+        InkTrace    lf = lengthFiltered;
+        float[]     lx = lf.x;
+        float[]     ly = lf.y;
+        float[]     la = lfLength;
+        float[]     lt = lfTangle;
+        lf.n = 0;
+        lf.time = d.time != null? lfTime: null;
+        lf.pressure = d.pressure != null? lfPressure: null;
+
+// short stroke filter, with the lengths and angles of the filtered trace made as points are kept
+        int     m = 0;
+        float   lenTrav = 0;
+        float   pX = xs[0];
+        float   pY = ys[0];
+        float   kX = pX;
+        float   kY = pY;
+        float   kdX = 0;
+        float   kdY = 0;
+        keep(d, 0, m++);
+        la[0] = 0;
+        for (int i=1; i<n; i++) {
+            float   x = xs[i];
+            float   y = ys[i];
+            float   dX = x - pX;
+            float   dY = y - pY;
+            lenTrav += (float)Math.sqrt(dX*dX + dY*dY);
+            pX = x;
+            pY = y;
+            if (lenTrav >= threshold) {
+                lenTrav = 0;
+                float   ddX = x - kX;
+                float   ddY = y - kY;
+                la[m] = (float)Math.sqrt(ddX*ddX + ddY*ddY);
+                if (m >= 2) {
+                    lt[m] = InkFilta.Tangle(ddX, ddY, kdX, kdY);
+                }
+                keep(d, i, m++);
+                kdX = ddX;
+                kdY = ddY;
+                kX = x;
+                kY = y;
+            }
+        }
+        lf.n = m;
+        lfN = m;
+        endAngles(lx, ly, 0, m, lt);
+
+// pen artifact filter, which only trims the ends
+        afFirst = 0;
+        afN = m;
+        if (m >= Tolerance.penArtifactFiltaPointThresh) {
+            int     firstValid = 0;
+            int     lastValid = m-1;
+            int     ind = 0;
+            lenTrav = 0;
+            while (ind <= Tolerance.penArtifactFiltaPointThresh && ind < m-1 &&
+                   lenTrav <= Tolerance.penArtifactFiltaLengthThresh) {
+                if (abs(lt[ind+1]) >= Tolerance.penArtifactFiltaTangleThresh) {
+                    firstValid = ind;
+                }
+                lenTrav += la[ind];
+                ind++;
+            }
+            ind = m - 1;
+            lenTrav = la[m-1];
+            int np = 0;
+            while (    np <= Tolerance.penArtifactFiltaPointThresh
+                    && lenTrav <= Tolerance.penArtifactFiltaLengthThresh
+                    && ind > firstValid+1) {
+                if (abs(lt[ind]) >= Tolerance.penArtifactFiltaTangleThresh) {
+                    lastValid = ind-1;
+                }
+                lenTrav += la[ind-1];
+                ind--;
+                np++;
+            }
+            afFirst = firstValid;
+            afN = lastValid-firstValid+1;
+        }
+
+// lengths and angles of the run kept by the artifact filter
+        float[]     aa = afLength;
+        float[]     at = afTangle;
+        System.arraycopy(la, afFirst, aa, 0, afN);
+        System.arraycopy(lt, afFirst, at, 0, afN);
+        aa[0] = 0;
+        endAngles(lx, ly, afFirst, afN, at);
+    }
+
+    /**
+     * @return the number of samples in the length filtered trace
+     */
+    public int LengthFilteredCount()
+    {
+        return lfN;
+    }
+
+    /**
+     * @return the number of samples in the artifact filtered trace
+     */
+    public int ArtifactFilteredCount()
+    {
+        return afN;
+    }
+
+    /**
+     * @return a new trace holding the length filtered samples
+     */
+    public InkTrace CopyLengthFiltered()
+    {
+        return lengthFiltered.Copy(0, lfN);
+    }
+
+    /**
+     * @param lf the trace returned by <i>CopyLengthFiltered()</i>, which is returned again if the artifact
+     *          filter kept all of it, as <i>InkFilta.PenArtifactFilter</i> does
+     * @return a new trace holding the artifact filtered samples
+     */
+    public InkTrace CopyArtifactFiltered(InkTrace lf)
+    {
+        if (afFirst == 0 && afN == lfN && lf != null) {
+            return lf;
+        }
+        return lengthFiltered.Copy(afFirst, afN);
+    }
+
+    /**
+     * @return a new array of the segment lengths of the length filtered trace
+     */
+    public float[] CopyLengthFilteredLengths()
+    {
+        float[] a = new float[lfN];
+        System.arraycopy(lfLength, 0, a, 0, lfN);
+        return a;
+    }
+
+    /**
+     * @return a new array of the tangent angles of the length filtered trace
+     */
+    public float[] CopyLengthFilteredTangles()
+    {
+        float[] a = new float[lfN];
+        System.arraycopy(lfTangle, 0, a, 0, lfN);
+        return a;
+    }
+
+    /**
+     * @return a new array of the tangent angles of the artifact filtered trace
+     */
+    public float[] CopyTangles()
+    {
+        float[] a = new float[afN];
+        System.arraycopy(afTangle, 0, a, 0, afN);
+        return a;
+    }
+
+    /**
+     * @return the segment lengths of the artifact filtered trace, in the scratch buffer of the chain.
+     *          Only the first <i>ArtifactFilteredCount()</i> are valid.
+     */
+    public float[] Lengths()
+    {
+        return afLength;
+    }
+
+    /**
+     * @return the tangent angles of the artifact filtered trace, in the scratch buffer of the chain.
+     *          Only the first <i>ArtifactFilteredCount()</i> are valid.
+     */
+    public float[] Tangles()
+    {
+        return afTangle;
+    }
+
+    /**
+     * fills in the angles at the first two points of a run of the filtered trace, as DelTheta does:
+     * all zero for a single point, otherwise NaN at the first, and at the second the angle for a
+     * path that is not forced closed.
+     *
+     * @param x x co-ordinates of the filtered trace
+     * @param y y co-ordinates of the filtered trace
+     * @param first index of the first sample of the run
+     * @param m number of samples in the run
+     * @param t tangent angles of the run, from 0
+     */
+    static void endAngles(float[] x, float[] y, int first, int m, float[] t)
+    {
+        if (m < 2) {
+            if (m == 1) {
+                t[0] = 0;
+            }
+            return;
+        }
+        t[0] = Float.NaN;
+        t[1] = InkFilta.Tangle(x[first+1] - x[first], y[first+1] - y[first], 0, 0);
+    }
+
+    /**
+     * appends sample <i>i</i> of the input to the length filtered trace, at <i>j</i>
+     */
+    void keep(InkTrace d, int i, int j)
+    {
+        InkTrace    lf = lengthFiltered;
+        lf.x[j] = d.x[i];
+        lf.y[j] = d.y[i];
+        if (lf.time != null) {
+            lf.time[j] = d.time[i];
+        }
+        if (lf.pressure != null) {
+            lf.pressure[j] = d.pressure[i];
+        }
+    }
+
+    /**
+     * grows the buffers to hold a stroke of <i>n</i> samples, if they don't already
+     */
+    void Reserve(int n)
+    {
+        if (n < 1) {
+            n = 1;
+        }
+        if (lfLength.length < n) {
+            int     len = max(n, 2*lfLength.length);
+            lengthFiltered = new InkTrace(len);
+            lfLength = new float[len];
+            lfTangle = new float[len];
+            afLength = new float[len];
+            afTangle = new float[len];
+            lfTime = null;
+            lfPressure = null;
+        }
+        int     len = lfLength.length;
+        if (lfTime == null || lfTime.length < len) {
+            lfTime = new long[len];
+        }
+        if (lfPressure == null || lfPressure.length < len) {
+            lfPressure = new short[len];
+        }
+    }
+
+    /** the chain of each thread */
+    static final ThreadLocal<InkFiltaChain> local = new ThreadLocal<InkFiltaChain>() {
+        protected InkFiltaChain initialValue()
+        {
+            return new InkFiltaChain(256);
+        }
+    };
+
+    /** the length filtered trace */
+    InkTrace    lengthFiltered;
+    /** the time lane of the length filtered trace, used if the input has times */
+    long        lfTime[];
+    /** the pressure lane of the length filtered trace, used if the input has pressures */
+    short       lfPressure[];
+    /** segment lengths of the length filtered trace */
+    float       lfLength[];
+    /** tangent angles of the length filtered trace */
+    float       lfTangle[];
+    /** number of samples in the length filtered trace */
+    int         lfN;
+    /** index in the length filtered trace of the first sample kept by the artifact filter */
+    int         afFirst;
+    /** number of samples kept by the artifact filter */
+    int         afN;
+    /** segment lengths of the artifact filtered trace */
+    float       afLength[];
+    /** tangent angles of the artifact filtered trace */
+    float       afTangle[];
+}
@@ -0,0 +1,693 @@
+/*
+ * InkStreamFilta.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import static java.lang.Math.*;
+
+/**
+ * Push based forms of the <i>InkFilta</i> filters, for pen data that arrives a sample at a time.
+ * Each stage takes samples by <i>Push()</i>, passes what it keeps on to the next stage as soon as it
+ * can, and flushes whatever it is still holding when <i>End()</i> is called at pen up. Stages are
+ * chained by giving each the one that follows it, and the last is usually a <i>Collect</i>, which
+ * gathers the output into a trace, or a <i>CurveFeatures</i>, which works out the features of
+ * <i>StrokeCurveInfo</i> as the samples go by, so that they are ready as soon as the stroke ends.
+ *<p>
+ * Every stage keeps a fixed amount of state, however long the stroke, and holds back a bounded
+ * number of samples:
+ *<ul>
+ *  <li><i>ShortStroke</i> holds back nothing.
+ *  <li><i>LineStraightening</i> holds back one sample, as whether a sample is kept depends on the
+ *      angle at the next.
+ *  <li><i>PenArtifact</i> holds back the first 2P+5 samples, until it can decide where the stroke
+ *      really starts, and thereafter the last P+2, which may turn out to be an artifact at the end.
+ *      P is <i>Tolerance.penArtifactFiltaPointThresh</i>.
+ *  <li><i>ArcLength</i> holds back nothing, but the last point may only be known at the end.
+ *  <li><i>Measure</i> holds back nothing.
+ *</ul>
+ * The filtered samples are the same, to the bit, as the batch filters give for the whole stroke.
+ * The features of <i>CurveFeatures</i> are summed in a slightly different order from those of
+ * <i>StrokeCurveInfo</i>, since the angle at the second sample is only known at the end, so they
+ * agree to within rounding.
+ *<p>
+ * A sample is a position, with a time and a pressure which are 0 if there aren't any, as in
+ * <i>InkSample</i>. After <i>End()</i> a chain is ready for the next stroke. Stages are not
+ * thread safe.
+ *
+ * @see InkFilta
+ * @see InkFiltaChain
+ * @author dak
+ * @since you asked
+ */
+public abstract class InkStreamFilta
+{
+    /**
+     * @param next the stage that takes the output of this one, or null
+     */
+    protected InkStreamFilta(InkStreamFilta next)
+    {
+        this.next = next;
+    }
+
+    /**
+     * Takes the next sample of the stroke
+     *
+     * @param x x co-ordinate
+     * @param y y co-ordinate
+     * @param time time of the sample, or 0
+     * @param pressure pressure of the sample, or 0
+     */
+    public abstract void Push(float x, float y, long time, short pressure);
+
+    /**
+     * Takes a sample of a trace
+     *
+     * @param t the trace
+     * @param i index of the sample
+     */
+    public void Push(InkTrace t, int i)
+    {
+        Push(t.x[i], t.y[i], t.time != null? t.time[i]: 0, t.pressure != null? t.pressure[i]: 0);
+    }
+
+    /**
+     * Takes an InkSample
+     *
+     * @param s the sample
+     */
+    public void Push(InkSample s)
+    {
+        Push(s.x, s.y, s.timestamp, (short)s.pressure);
+    }
+
+    /**
+     * Takes every sample of a trace, and ends the stroke
+     *
+     * @param t the trace
+     */
+    public void Run(InkTrace t)
+    {
+        for (int i=0; i<t.n; i++) {
+            Push(t, i);
+        }
+        End();
+    }
+
+    /**
+     * Ends the stroke, flushing anything held back, and readies the stage for the next one
+     */
+    public void End()
+    {
+        if (next != null) {
+            next.End();
+        }
+    }
+
+    /**
+     * passes a sample on to the next stage
+     */
+    void Emit(float x, float y, long time, short pressure)
+    {
+        if (next != null) {
+            next.Push(x, y, time, pressure);
+        }
+    }
+
+    /**
+     * Makes the chain of <i>StrokeCurveInfo</i>: a short stroke filter, the pen artifact filter, and
+     * the feature calculations.
+     *
+     * @param threshold the shortest length of path kept between samples
+     * @param features the stage that works out the features, at the end of the chain
+     * @return the first stage of the chain
+     */
+    public static InkStreamFilta CurveChain(float threshold, CurveFeatures features)
+    {
+        return new ShortStroke(threshold, new PenArtifact(features));
+    }
+
+    /**
+     * The short stroke filter: keeps the first sample, and then each sample that is at least a
+     * given length of path from the last one kept, as <i>InkFilta.ShortStrokeFilter</i>.
+     */
+    public static class ShortStroke extends InkStreamFilta
+    {
+        /**
+         * @param threshold the shortest length of path kept between samples
+         * @param next the following stage
+         */
+        public ShortStroke(float threshold, InkStreamFilta next)
+        {
+            super(next);
+            this.threshold = threshold;
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            if (n++ == 0) {
+                Emit(x, y, time, pressure);
+            } else {
+                float   dX = x - lX;
+                float   dY = y - lY;
+                lenTrav += (float)Math.sqrt(dX*dX + dY*dY);
+                if (lenTrav >= threshold) {
+                    lenTrav = 0;
+                    Emit(x, y, time, pressure);
+                }
+            }
+            lX = x;
+            lY = y;
+        }
+
+        public void End()
+        {
+            n = 0;
+            lenTrav = 0;
+            super.End();
+        }
+
+        float   threshold;
+        int     n = 0;
+        float   lenTrav = 0;
+        float   lX;
+        float   lY;
+    }
+
+    /**
+     * The pen artifact filter: trims short sharply turning bits off the ends of the stroke, as
+     * <i>InkFilta.PenArtifactFilter</i> does with the lengths and tangent angles of its input.
+     */
+    public static class PenArtifact extends InkStreamFilta
+    {
+        /**
+         * @param next the following stage
+         */
+        public PenArtifact(InkStreamFilta next)
+        {
+            super(next);
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            int     k = n % WINDOW;
+            float   dX = x - lX;
+            float   dY = y - lY;
+            bx[k] = x;
+            by[k] = y;
+            bt[k] = time;
+            bp[k] = pressure;
+            bl[k] = n > 0? (float)Math.sqrt(dX*dX + dY*dY): 0;
+            ba[k] = n > 1? InkFilta.Tangle(dX, dY, ldX, ldY): 0;
+            ldX = dX;
+            ldY = dY;
+            lX = x;
+            lY = y;
+            n++;
+            if (firstValid < 0 && n == WINDOW) {
+                firstValid = FirstValid(n);
+                emitted = firstValid;
+            }
+            if (firstValid >= 0) {
+                while (emitted < n - HOLD) {
+                    EmitHeld(emitted++);
+                }
+            }
+        }
+
+        public void End()
+        {
+            if (n > 0) {
+                int     lastValid = n-1;
+                if (firstValid < 0) {
+                    if (n < P) {
+                        firstValid = 0;
+                    } else {
+                        firstValid = FirstValid(n);
+                        lastValid = LastValid(n, firstValid);
+                    }
+                    emitted = firstValid;
+                } else {
+                    lastValid = LastValid(n, firstValid);
+                }
+                while (emitted <= lastValid) {
+                    EmitHeld(emitted++);
+                }
+            }
+            n = 0;
+            firstValid = -1;
+            emitted = 0;
+            lX = lY = ldX = ldY = 0;
+            super.End();
+        }
+
+        /**
+         * the start of the stroke, past any artifact, as worked out by the first loop of
+         * <i>InkFilta.PenArtifactFilter</i>. Only the first P+2 samples are looked at.
+         * The angle at the second sample is that of a path not forced closed, so it can only set the
+         * start to 0, where it is anyway.
+         *
+         * @param m the number of samples so far
+         */
+        int FirstValid(int m)
+        {
+            int     first = 0;
+            int     ind = 0;
+            float   lenTrav = 0;
+            while (ind <= P && ind < m-1 && lenTrav <= Tolerance.penArtifactFiltaLengthThresh) {
+                if (abs(ba[(ind+1) % WINDOW]) >= Tolerance.penArtifactFiltaTangleThresh) {
+                    first = ind;
+                }
+                lenTrav += bl[ind % WINDOW];
+                ind++;
+            }
+            return first;
+        }
+
+        /**
+         * the end of the stroke, short of any artifact, as worked out by the second loop of
+         * <i>InkFilta.PenArtifactFilter</i>. Only the last P+2 samples are looked at.
+         *
+         * @param m the number of samples in the stroke
+         * @param first the start of the stroke
+         */
+        int LastValid(int m, int first)
+        {
+            int     last = m-1;
+            int     ind = m-1;
+            float   lenTrav = bl[ind % WINDOW];
+            int     np = 0;
+            while (    np <= P
+                    && lenTrav <= Tolerance.penArtifactFiltaLengthThresh
+                    && ind > first+1) {
+                if (abs(ba[ind % WINDOW]) >= Tolerance.penArtifactFiltaTangleThresh) {
+                    last = ind-1;
+                }
+                lenTrav += bl[(ind-1) % WINDOW];
+                ind--;
+                np++;
+            }
+            return last;
+        }
+
+        /**
+         * passes on a held sample
+         */
+        void EmitHeld(int i)
+        {
+            int     k = i % WINDOW;
+            Emit(bx[k], by[k], bt[k], bp[k]);
+        }
+
+        /** P, the most points the filter trims from an end */
+        static final int    P = Tolerance.penArtifactFiltaPointThresh;
+        /** number of samples held back at the end */
+        static final int    HOLD = P + 2;
+        /** number of samples held back at the start, and the size of the window */
+        static final int    WINDOW = 2*P + 5;
+
+        /** the samples held, by index modulo WINDOW, with their lengths and angles */
+        float   bx[] = new float[WINDOW];
+        float   by[] = new float[WINDOW];
+        long    bt[] = new long[WINDOW];
+        short   bp[] = new short[WINDOW];
+        float   bl[] = new float[WINDOW];
+        float   ba[] = new float[WINDOW];
+        /** number of samples so far */
+        int     n = 0;
+        /** index of the first sample kept, or -1 if it isn't known yet */
+        int     firstValid = -1;
+        /** index of the next sample to pass on */
+        int     emitted = 0;
+        float   lX, lY, ldX, ldY;
+    }
+
+    /**
+     * The line straightening filter: drops samples where the stroke turns by less than a threshold,
+     * as <i>InkFilta.LineStraighteningFilter</i> does with the tangent angles of its input.
+     */
+    public static class LineStraightening extends InkStreamFilta
+    {
+        /**
+         * @param filterAbs drop samples on the absolute angle turned at each
+         * @param filterCum drop samples on the angle turned since the last sample kept
+         * @param threshold the angle below which samples are dropped
+         * @param next the following stage
+         */
+        public LineStraightening(boolean filterAbs, boolean filterCum, float threshold, InkStreamFilta next)
+        {
+            super(next);
+            this.filterAbs = filterAbs;
+            this.filterCum = filterCum;
+            this.threshold = threshold;
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            float   dX = x - lX;
+            float   dY = y - lY;
+            if (n == 0) {
+                Emit(x, y, time, pressure);
+            } else if (n >= 2) {
+                float   theta = InkFilta.Tangle(dX, dY, ldX, ldY);
+                cumAngle += theta;
+                if (filterAbs && Math.abs(theta) < threshold) {
+                } else if (filterCum && Math.abs(cumAngle) < threshold) {
+                } else {
+                    Emit(lX, lY, lT, lP);
+                    cumAngle = 0;
+                }
+            }
+            ldX = dX;
+            ldY = dY;
+            lX = x;
+            lY = y;
+            lT = time;
+            lP = pressure;
+            n++;
+        }
+
+        public void End()
+        {
+            if (n > 1) {
+                Emit(lX, lY, lT, lP);
+            }
+            n = 0;
+            cumAngle = 0;
+            lX = lY = ldX = ldY = 0;
+            super.End();
+        }
+
+        boolean filterAbs;
+        boolean filterCum;
+        float   threshold;
+        int     n = 0;
+        float   cumAngle = 0;
+        /** the last sample, which is held back */
+        float   lX, lY;
+        long    lT;
+        short   lP;
+        float   ldX, ldY;
+    }
+
+    /**
+     * The equal length resampler: points spaced evenly along the path, as
+     * <i>InkFilta.ArcLengthResample</i>. The last sample is added at the end if the path doesn't finish
+     * on a whole number of steps.
+     */
+    public static class ArcLength extends InkStreamFilta
+    {
+        /**
+         * @param resampLen the length of path between consecutive points
+         * @param next the following stage
+         */
+        public ArcLength(float resampLen, InkStreamFilta next)
+        {
+            super(next);
+            step = resampLen;
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            if (n++ == 0) {
+                if (step <= 0) {
+                    Emit(x, y, time, pressure);
+                }
+            } else {
+                segStart += segLen;
+                segLen = InkFilta.segmentLength(x - lX, y - lY);
+                sX = lX;
+                sY = lY;
+                sT = lT;
+                sP = lP;
+                if (step > 0) {
+                    double  s;
+                    while ((s = k*step) <= segStart + segLen) {
+                        EmitOnSegment(s, x, y, time, pressure);
+                        k++;
+                    }
+                }
+            }
+            lX = x;
+            lY = y;
+            lT = time;
+            lP = pressure;
+        }
+
+        public void End()
+        {
+            double  pathLen = segStart + segLen;
+            if (n == 1) {
+                if (step > 0) {
+                    Emit(lX, lY, lT, lP);
+                }
+            } else if (n > 1 && step > 0 && pathLen > 0) {
+                int     count = (int)(pathLen/step) + 1;
+                for (; k<count; k++) {
+                    EmitOnSegment(k*step, lX, lY, lT, lP);
+                }
+                if (pathLen - (count-1)*step > step*.01) {
+                    Emit(lX, lY, lT, lP);
+                }
+            }
+            n = 0;
+            k = 0;
+            segStart = 0;
+            segLen = 0;
+            super.End();
+        }
+
+        /**
+         * passes on the point at arc length <i>s</i>, on the segment from the sample before the last
+         * to the given one
+         */
+        void EmitOnSegment(double s, float x, float y, long time, short pressure)
+        {
+            double  t = segLen > 0? (s - segStart)/segLen: 0;
+            if (t > 1) {
+                t = 1;
+            }
+            Emit((float)(sX + t*(x-sX)), (float)(sY + t*(y-sY)),
+                 sT + Math.round(t*(time-sT)), t < .5? sP: pressure);
+        }
+
+        /** the length of path between points */
+        double  step;
+        int     n = 0;
+        /** the number of the next point */
+        int     k = 0;
+        /** arc length at the start of the last segment */
+        double  segStart = 0;
+        /** length of the last segment */
+        double  segLen = 0;
+        /** the sample at the start of the last segment */
+        float   sX, sY;
+        long    sT;
+        short   sP;
+        /** the last sample */
+        float   lX, lY;
+        long    lT;
+        short   lP;
+    }
+
+    /**
+     * Passes samples on unchanged, keeping the segment length and the tangent angle at the last one,
+     * as <i>InkFilta.SegmentLengths</i> and <i>InkFilta.DelTheta</i> work them out. The angle at the
+     * second sample is left at 0, as DelTheta gives it for a path not forced closed.
+     */
+    public static class Measure extends InkStreamFilta
+    {
+        /**
+         * @param next the following stage, or null
+         */
+        public Measure(InkStreamFilta next)
+        {
+            super(next);
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            float   dX = x - lX;
+            float   dY = y - lY;
+            if (n == 0) {
+                length = 0;
+                tangle = 0;
+            } else {
+                length = (float)Math.sqrt(dX*dX + dY*dY);
+                tangle = n > 1? InkFilta.Tangle(dX, dY, ldX, ldY): 0;
+                ldX = dX;
+                ldY = dY;
+            }
+            lX = x;
+            lY = y;
+            n++;
+            Emit(x, y, time, pressure);
+        }
+
+        public void End()
+        {
+            n = 0;
+            lX = lY = ldX = ldY = 0;
+            super.End();
+        }
+
+        /** number of samples so far */
+        public int      n = 0;
+        /** length of the segment to the last sample */
+        public float    length;
+        /** angle turned at the last sample */
+        public float    tangle;
+        float   lX, lY, ldX, ldY;
+    }
+
+    /**
+     * Gathers the samples into a trace
+     */
+    public static class Collect extends InkStreamFilta
+    {
+        /**
+         * Creates a collector, at the end of a chain
+         */
+        public Collect()
+        {
+            super(null);
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            if (trace == null) {
+                trace = new InkTrace(64);
+            }
+            trace.Add(x, y);
+            if (time != 0) {
+                trace.SetTime(trace.n-1, time);
+            }
+            if (pressure != 0) {
+                trace.SetPressure(trace.n-1, pressure);
+            }
+        }
+
+        public void End()
+        {
+            done = trace != null? trace: new InkTrace(1);
+            trace = null;
+        }
+
+        /**
+         * @return the samples of the last stroke ended
+         */
+        public InkTrace Trace()
+        {
+            return done;
+        }
+
+        /** the samples of the stroke in progress */
+        InkTrace    trace = null;
+        /** the samples of the last stroke ended */
+        InkTrace    done = null;
+    }
+
+    /**
+     * Works out the features that <i>StrokeCurveInfo</i> does from its filtered stroke, as the samples
+     * go by. The sums are kept in pixel lengths, and only scaled by the length of the path at the end.
+     * Samples are passed on to the next stage, if there is one.
+     */
+    public static class CurveFeatures extends InkStreamFilta
+    {
+        /**
+         * @param next the following stage, or null
+         */
+        public CurveFeatures(InkStreamFilta next)
+        {
+            super(next);
+        }
+
+        public void Push(float x, float y, long time, short pressure)
+        {
+            float   dX = x - lX;
+            float   dY = y - lY;
+            if (n == 0) {
+                length = 0;
+                tangles.Add(0);
+            } else {
+                float   len = (float)Math.sqrt(dX*dX + dY*dY);
+                pathLen += len;
+                if (n == 1) {
+                    f1dX = dX;
+                    f1dY = dY;
+                    len1 = len;
+                } else {
+                    float   t = InkFilta.Tangle(dX, dY, ldX, ldY);
+                    sumAbs += abs(t);
+                    sum += t;
+                    weighted += t*(length+len)/2;
+                    tangles.Add(t);
+                }
+                length = len;
+                ldX = dX;
+                ldY = dY;
+            }
+            lX = x;
+            lY = y;
+            n++;
+            Emit(x, y, time, pressure);
+        }
+
+        public void End()
+        {
+// the angle at the second sample, as DelTheta gives it for a path not forced closed
+            if (n > 1) {
+                float   t = InkFilta.Tangle(f1dX, f1dY, 0, 0);
+                sumAbs += abs(t);
+                sum += t;
+                weighted += t*len1/2;
+                tangles.Add(t);
+            }
+            nSample = n;
+            pathLength = pathLen;
+            sumTangle = sum;
+            weightedSumTangle = n > 1? weighted/pathLen: 0;
+            meanTangle = n > 0? (float)tangles.Mean(): 0;
+            meanAbsTangle = n > 0? sumAbs/n: 0;
+            devTangle = n > 0? (float)tangles.Deviation(): 0;
+
+            n = 0;
+            pathLen = sum = sumAbs = weighted = 0;
+            tangles.Clear();
+            lX = lY = ldX = ldY = 0;
+            super.End();
+        }
+
+        /** number of samples in the last stroke ended */
+        public int      nSample;
+        /** length of the path of the last stroke ended, in pixels */
+        public float    pathLength;
+        /** sum of the tangent angles */
+        public float    sumTangle;
+        /** sum of the tangent angles, each weighted by half the normalised lengths either side */
+        public float    weightedSumTangle;
+        /** mean tangent angle */
+        public float    meanTangle;
+        /** mean absolute tangent angle */
+        public float    meanAbsTangle;
+        /** standard deviation of the tangent angles */
+        public float    devTangle;
+
+        int     n = 0;
+        float   pathLen = 0;
+        float   sum = 0;
+        float   sumAbs = 0;
+        float   weighted = 0;
+        /** moments of the tangent angles, with 0 for the first sample as in <i>StrokeCurveInfo</i> */
+        Moments tangles = new Moments();
+        /** length of the segment to the last sample */
+        float   length;
+        /** the first segment, and its length */
+        float   f1dX, f1dY, len1;
+        float   lX, lY, ldX, ldY;
+    }
+
+    /** the stage that takes the output of this one */
+    InkStreamFilta  next;
+}
@@ -0,0 +1,264 @@
+/*
+ * InkTrace.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import zone.Point;
+
+/**
+ * Packed storage for the samples of a stroke, or of some filtered form of one. Co-ordinates are kept
+ * in parallel float arrays rather than as an array of <i>InkSample</i> objects, so a sample costs 8
+ * bytes instead of a header, two floats and two longs, and the loops in <i>InkFilta</i> run straight
+ * down the arrays.
+ *<p>
+ * Time and pressure are optional lanes, and are only allocated once something is put in them. None
+ * of the current sources of ink data supply either.
+ *<p>
+ * The arrays may be longer than the trace. Only the first <i>n</i> entries are samples.
+ *
+ * @see Stroke
+ * @see InkFilta
+ * @see InkSample
+ * @author dak
+ * @since you asked
+ */
+public class InkTrace
+{
+    /**
+     * Creates an empty trace with room for the given number of samples
+     *
+     * @param capacity initial length of the co-ordinate arrays
+     */
+    public InkTrace(int capacity)
+    {
+        if (capacity < 1) {
+            capacity = 1;
+        }
+        x = new float[capacity];
+        y = new float[capacity];
+        n = 0;
+    }
+
+    /**
+     * Creates a trace holding the given co-ordinates. The arrays are used as they are, not copied.
+     *
+     * @param n the number of samples
+     * @param x the x co-ordinates
+     * @param y the y co-ordinates
+     */
+    public InkTrace(int n, float x[], float y[])
+    {
+        this.x = x;
+        this.y = y;
+        this.n = n;
+    }
+
+    /**
+     * Creates a trace from an array of InkSample, as an adapter for code that still deals in those.
+     * Null elements are skipped.
+     *
+     * @param n the number of samples of input data
+     * @param d the input InkSample data
+     */
+    public InkTrace(int n, InkSample d[])
+    {
+        this(n);
+        for (int i=0; i<n; i++) {
+            if (d[i] != null) {
+                Add(d[i]);
+            }
+        }
+    }
+
+    /**
+     * Appends a sample, growing the arrays if need be
+     *
+     * @param px x co-ordinate
+     * @param py y co-ordinate
+     */
+    public void Add(float px, float py)
+    {
+        if (n == x.length) {
+            Grow(Math.max(2*n, 8));
+        }
+        x[n] = px;
+        y[n] = py;
+        n++;
+    }
+
+    /**
+     * Appends an InkSample, along with its time and pressure, if it has any
+     *
+     * @param s the sample
+     */
+    public void Add(InkSample s)
+    {
+        Add(s.x, s.y);
+        if (s.timestamp != 0) {
+            SetTime(n-1, s.timestamp);
+        }
+        if (s.pressure != 0) {
+            SetPressure(n-1, (short)s.pressure);
+        }
+    }
+
+    /**
+     * Appends sample <i>i</i> of another trace, along with any time and pressure
+     *
+     * @param t the source trace
+     * @param i index of the sample in <i>t</i>
+     */
+    public void Add(InkTrace t, int i)
+    {
+        Add(t.x[i], t.y[i]);
+        if (t.time != null) {
+            SetTime(n-1, t.time[i]);
+        }
+        if (t.pressure != null) {
+            SetPressure(n-1, t.pressure[i]);
+        }
+    }
+
+    /**
+     * Sets the time of a sample, allocating the time lane if there isn't one
+     *
+     * @param i index of the sample
+     * @param t the time
+     */
+    public void SetTime(int i, long t)
+    {
+        if (time == null) {
+            time = new long[x.length];
+        }
+        time[i] = t;
+    }
+
+    /**
+     * Sets the pressure of a sample, allocating the pressure lane if there isn't one
+     *
+     * @param i index of the sample
+     * @param p the pressure
+     */
+    public void SetPressure(int i, short p)
+    {
+        if (pressure == null) {
+            pressure = new short[x.length];
+        }
+        pressure[i] = p;
+    }
+
+    /**
+     * Gets a sample as an InkSample, as an adapter for code that still deals in those
+     *
+     * @param i index of the sample
+     * @return a new InkSample for the sample
+     */
+    public InkSample Sample(int i)
+    {
+        InkSample s = new InkSample(x[i], y[i]);
+        if (time != null) {
+            s.timestamp = time[i];
+        }
+        if (pressure != null) {
+            s.pressure = pressure[i];
+        }
+        return s;
+    }
+
+    /**
+     * Gets the whole trace as an array of InkSample, as an adapter for code that still deals in
+     * those, such as the svg display routines.
+     *
+     * @return a new array of exactly <i>n</i> InkSample
+     */
+    public InkSample[] ToSamples()
+    {
+        InkSample[] s = new InkSample[n];
+        for (int i=0; i<n; i++) {
+            s[i] = Sample(i);
+        }
+        return s;
+    }
+
+    /**
+     * Gets a sample as a Point
+     *
+     * @param i index of the sample
+     * @return a new Point at the sample
+     */
+    public Point PointAt(int i)
+    {
+        return new Point(x[i], y[i]);
+    }
+
+    /**
+     * Copies a run of samples into a new trace, with arrays of exactly the right length
+     *
+     * @param first index of the first sample copied
+     * @param count number of samples copied
+     * @return the new trace
+     */
+    public InkTrace Copy(int first, int count)
+    {
+        float   nx[] = new float[Math.max(count, 1)];
+        float   ny[] = new float[Math.max(count, 1)];
+        System.arraycopy(x, first, nx, 0, count);
+        System.arraycopy(y, first, ny, 0, count);
+        InkTrace    t = new InkTrace(count, nx, ny);
+        if (time != null) {
+            t.time = new long[nx.length];
+            System.arraycopy(time, first, t.time, 0, count);
+        }
+        if (pressure != null) {
+            t.pressure = new short[nx.length];
+            System.arraycopy(pressure, first, t.pressure, 0, count);
+        }
+        return t;
+    }
+
+    /**
+     * Trims the arrays to the length of the trace
+     */
+    public void Compact()
+    {
+        if (x.length != n && n > 0) {
+            Grow(n);
+        }
+    }
+
+    /**
+     * Reallocates the arrays, and any lanes, at a new length
+     */
+    void Grow(int len)
+    {
+        float   nx[] = new float[len];
+        float   ny[] = new float[len];
+        System.arraycopy(x, 0, nx, 0, n);
+        System.arraycopy(y, 0, ny, 0, n);
+        x = nx;
+        y = ny;
+        if (time != null) {
+            long    nt[] = new long[len];
+            System.arraycopy(time, 0, nt, 0, n);
+            time = nt;
+        }
+        if (pressure != null) {
+            short   np[] = new short[len];
+            System.arraycopy(pressure, 0, np, 0, n);
+            pressure = np;
+        }
+    }
+
+    /** x co-ordinates of the samples */
+    public float    x[];
+    /** y co-ordinates of the samples */
+    public float    y[];
+    /** time of each sample, or null if there are no times */
+    public long     time[] = null;
+    /** pen pressure at each sample, or null if there are no pressures */
+    public short    pressure[] = null;
+    /** number of samples in the trace */
+    public int      n;
+}
@@ -0,0 +1,185 @@
+/*
+ * InkVecta.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+/**
+ * The inner loops of the <i>InkFilta</i> geometry primitives, over the packed co-ordinate arrays of
+ * an <i>InkTrace</i> and plain float arrays. This class holds the scalar forms, which are the
+ * reference. <i>InkVectaSimd</i> overrides them with forms that use the incubating Vector API, and
+ * is used instead if it is asked for by <i>Use()</i>, and the jdk.incubator.vector module is present
+ * (i.e. the VM was started with --add-modules jdk.incubator.vector). If it isn't, <i>Use()</i>
+ * quietly keeps to the scalar forms.
+ *<p>
+ * <i>InkVectaSimd</i> is not in this source tree, but in WEB-INF/simd, so that the package builds
+ * without the module. To have it, compile it after the rest, from WEB-INF, with
+ *<pre>
+ *  javac --add-modules jdk.incubator.vector -cp classes -d classes simd/gita/InkVectaSimd.java
+ *</pre>
+ *<p>
+ * The SIMD forms of <i>SegmentLengths</i> and <i>DyDx</i> give the same results as the scalar
+ * ones, to the bit. Those of <i>Tangles</i> and <i>Normalize</i> may differ in the last places:
+ * the vector arc tangent is only good to 1 ULP, and adding or taking pi is done in float, rather
+ * than double, so a tangent angle may be up to 2 ULP away from the scalar one. The total length
+ * used by <i>Normalize</i> is summed in a different order, so a normalised length may be out by
+ * a relative amount of up to n times the float epsilon for n lengths. For strokes of a few hundred
+ * samples that comes to some tens of ULP at worst, and is usually much less.
+ *
+ * @see InkFilta
+ * @see InkVectaSimd
+ * @author dak
+ * @since you asked
+ */
+public class InkVecta
+{
+    /**
+     * Creates the scalar kernels
+     */
+    public InkVecta()
+    {
+    }
+
+    /**
+     * @return the kernels in use
+     */
+    public static InkVecta Kernels()
+    {
+        return kernels;
+    }
+
+    /**
+     * Selects the SIMD or the scalar kernels. If the SIMD kernels are asked for but can't be loaded,
+     * the scalar ones are used.
+     *
+     * @param simd true to ask for the SIMD kernels
+     * @return true if the SIMD kernels are now in use
+     */
+    public static boolean Use(boolean simd)
+    {
+        InkVecta    k = scalar;
+        if (simd) {
+            try {
+                k = (InkVecta) Class.forName("gita.InkVectaSimd").getDeclaredConstructor().newInstance();
+            } catch (Throwable t) {   // typically NoClassDefFoundError, if the vector module isn't there
+                k = scalar;
+            }
+        }
+        kernels = k;
+        return k != scalar;
+    }
+
+    /**
+     * @return the name of these kernels
+     */
+    public String Name()
+    {
+        return "scalar";
+    }
+
+    /**
+     * fills in the segment lengths of a trace
+     *
+     * @param xs x co-ordinates
+     * @param ys y co-ordinates
+     * @param n number of samples
+     * @param la the lengths, at least <i>n</i> long. The first is 0.
+     */
+    public void SegmentLengths(float xs[], float ys[], int n, float la[])
+    {
+        float   lX = xs[0];
+        float   lY = ys[0];
+        la[0] = 0;
+
+        for (int i=1; i<n; i++) {
+            float   x = xs[i];
+            float   y = ys[i];
+            float   dX = x - lX;
+            float   dY = y - lY;
+
+            la[i] = (float)Math.sqrt(dX*dX + dY*dY);
+            lX = x;
+            lY = y;
+        }
+    }
+
+    /**
+     * fills in the tangent angles of a trace from the second sample on, as <i>InkFilta.Tangle</i>
+     *
+     * @param xs x co-ordinates
+     * @param ys y co-ordinates
+     * @param n number of samples, at least 2
+     * @param ldX x component of the segment taken to come before the first
+     * @param ldY y component of the segment taken to come before the first
+     * @param theta the angles, at least <i>n</i> long. The first is left as it is.
+     */
+    public void Tangles(float xs[], float ys[], int n, float ldX, float ldY, float theta[])
+    {
+        float   lX = xs[0];
+        float   lY = ys[0];
+
+        for (int i=1; i<n; i++) {
+            float   x = xs[i];
+            float   y = ys[i];
+            float   dX = x - lX;
+            float   dY = y - lY;
+
+            theta[i] = InkFilta.Tangle(dX, dY, ldX, ldY);
+
+            ldX = dX;
+            ldY = dY;
+            lX = x;
+            lY = y;
+        }
+    }
+
+    /**
+     * fills in the gradients dy/dx, as <i>InkFilta.DyDx</i>
+     *
+     * @param dy lengths along the y axis
+     * @param dx lengths along the x axis
+     * @param n number of lengths
+     * @param dYdX the gradients, at least <i>n</i> long
+     */
+    public void DyDx(float dy[], float dx[], int n, float dYdX[])
+    {
+        for (int i=0; i<n; i++) {
+            if (dy[i] == Float.NaN || dx[i] == Float.NaN) {
+                dYdX[i] = Float.NaN;
+            } else if (dx[i] == 0) {
+                if (dy[i] < 0) {
+                    dYdX[i] = Float.NEGATIVE_INFINITY;
+                } else {
+                    dYdX[i] = Float.POSITIVE_INFINITY;
+                }
+            } else {
+                dYdX[i] = dy[i]/dx[i];
+            }
+        }
+    }
+
+    /**
+     * fills in lengths scaled to a total of 1
+     *
+     * @param dL the lengths
+     * @param n number of lengths
+     * @param nudl the normalised lengths, at least <i>n</i> long
+     */
+    public void Normalize(float dL[], int n, float nudl[])
+    {
+        float       len = 0;
+
+        for (int i=0; i<n; i++) {
+            len += dL[i];
+        }
+        for (int i=0; i<n; i++) {
+            nudl[i] = dL[i]/len;
+        }
+    }
+
+    /** the scalar kernels */
+    static final InkVecta   scalar = new InkVecta();
+    /** the kernels used by InkFilta. set by Use() */
+    static InkVecta         kernels = scalar;
+}
@@ -18,4 +18,6 @@ public class LogParseException extends Exception
     {
         super(s);
     }
+
+    private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+/*
+ * LogUpload.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.LinkedList;
+
+import org.apache.commons.fileupload.FileItem;
+
+/**
+ * A single log received in a request to Gita, either an uploaded file, or the text of a form
+ * parameter, along with the pages of stroke data parsed from it. A POST may carry any number of
+ * these, and each is parsed as a seperate job.
+ *
+ * @see Gita
+ * @see PageData
+ * @author dak
+ * @since you asked
+ */
+public class LogUpload
+{
+    /**
+     * create an upload for a file item
+     *
+     * @param item the uploaded file
+     * @param fmt the format of the data, or null if it's to be taken from the form
+     */
+    public LogUpload(FileItem item, String fmt)
+    {
+        this.item = item;
+        this.data = null;
+        this.name = item.getName();
+        this.length = item.getSize();
+        this.fmt = fmt;
+        pages = new LinkedList<>();
+    }
+
+    /**
+     * create an upload for log data posted as a form parameter
+     *
+     * @param data the log data
+     * @param fmt the format of the data, or null if it's to be taken from the form
+     */
+    public LogUpload(String data, String fmt)
+    {
+        this.item = null;
+        this.data = data;
+        this.name = "form data";
+        this.length = data.length();
+        this.fmt = fmt;
+        pages = new LinkedList<>();
+    }
+
+    /** the uploaded file, or null if the data came in a form parameter */
+    FileItem                item;
+    /** the log data, if it came in a form parameter */
+    String                  data;
+    /** name of the uploaded file, for diagnostics */
+    String                  name;
+    /** size of the log data, in bytes for a file, or in characters for a form parameter */
+    long                    length;
+    /** format of the log data, FMT_LOG, FMT_SVG or FMT_INK */
+    String                  fmt;
+    /** the pages of stroke data parsed from this upload */
+    LinkedList<PageData>    pages;
+    /** diagnostic output from parsing and archiving this upload */
+    String                  output = "";
+}
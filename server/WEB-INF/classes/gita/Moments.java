@@ -0,0 +1,289 @@
+/*
+ * Moments.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bounds, mean, variance, skew and kurtosis of a run of values, gathered in one pass. The central
+ * sums of squares, cubes and fourth powers are updated as each value is added, by Welford's method
+ * as extended to the higher moments by Pebay, rather than got from the raw sums of powers, so there
+ * is no cancellation when the values are far from 0 compared to their spread, as co-ordinates on a
+ * page are. Everything is kept in double.
+ *<p>
+ * Two sets of moments over separate runs of values can be merged into the moments of both, so a
+ * long run can be split into chunks, each done on its own thread, and the results merged.
+ * <i>Of()</i> does that for a run longer than <i>CHUNK</i>, on a fork-join pool.
+ *<p>
+ * An empty set has a count of 0, and NaN for everything else.
+ *
+ * @see Stroke#CalculateBounds()
+ * @see PathDataDecoder
+ * @author dak
+ * @since you asked
+ */
+public class Moments
+{
+    /**
+     * Creates an empty set of moments
+     */
+    public Moments()
+    {
+        Clear();
+    }
+
+    /**
+     * @param a values
+     * @param from index of the first value
+     * @param to index past the last value
+     * @return the moments of <i>a[from]</i> to <i>a[to-1]</i>. A run longer than <i>CHUNK</i> is
+     *  split into chunks, done on the pool of the calling thread, or the common pool, and merged
+     */
+    public static Moments Of(float a[], int from, int to)
+    {
+        if (to - from > CHUNK) {
+            return new Chunk(a, from, to).invoke();
+        }
+        Moments     m = new Moments();
+        for (int i=from; i<to; i++) {
+            m.Add(a[i]);
+        }
+        return m;
+    }
+
+    /**
+     * @param a values
+     * @return the moments of all of <i>a</i>
+     */
+    public static Moments Of(float a[])
+    {
+        return Of(a, 0, a.length);
+    }
+
+    /**
+     * Empties the set
+     */
+    public void Clear()
+    {
+        n = 0;
+        mean = m2 = m3 = m4 = 0;
+        min = Float.POSITIVE_INFINITY;
+        max = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param x the value
+     */
+    public void Add(float x)
+    {
+        long    n1 = n++;
+        double  delta = x - mean;
+        double  deltaN = delta/n;
+        double  deltaN2 = deltaN*deltaN;
+        double  term1 = delta*deltaN*n1;
+
+        mean += deltaN;
+        m4 += term1*deltaN2*((double)n*n - 3*n + 3) + 6*deltaN2*m2 - 4*deltaN*m3;
+        m3 += term1*deltaN*(n - 2) - 3*deltaN*m2;
+        m2 += term1;
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * Merges the moments of another run of values into these, so that these become the moments of
+     * both runs
+     *
+     * @param o the other moments, which are left as they are
+     */
+    public void Merge(Moments o)
+    {
+        if (o.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = o.n;
+            mean = o.mean;
+            m2 = o.m2;
+            m3 = o.m3;
+            m4 = o.m4;
+            min = o.min;
+            max = o.max;
+            return;
+        }
+        double  na = n;
+        double  nb = o.n;
+        double  nn = na + nb;
+        double  delta = o.mean - mean;
+        double  delta2 = delta*delta;
+
+        double  m2n = m2 + o.m2 + delta2*na*nb/nn;
+        double  m3n = m3 + o.m3 + delta2*delta*na*nb*(na - nb)/(nn*nn)
+                        + 3*delta*(na*o.m2 - nb*m2)/nn;
+        double  m4n = m4 + o.m4 + delta2*delta2*na*nb*(na*na - na*nb + nb*nb)/(nn*nn*nn)
+                        + 6*delta2*(na*na*o.m2 + nb*nb*m2)/(nn*nn)
+                        + 4*delta*(na*o.m3 - nb*m3)/nn;
+        mean += delta*nb/nn;
+        m2 = m2n;
+        m3 = m3n;
+        m4 = m4n;
+        n += o.n;
+        if (o.min < min) min = o.min;
+        if (o.max > max) max = o.max;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long Count()
+    {
+        return n;
+    }
+
+    /**
+     * @return the smallest value
+     */
+    public float Min()
+    {
+        return n > 0? min: Float.NaN;
+    }
+
+    /**
+     * @return the largest value
+     */
+    public float Max()
+    {
+        return n > 0? max: Float.NaN;
+    }
+
+    /**
+     * @return the mean
+     */
+    public double Mean()
+    {
+        return n > 0? mean: Double.NaN;
+    }
+
+    /**
+     * @return the sum of the values, as the mean times the count
+     */
+    public double Sum()
+    {
+        return mean*n;
+    }
+
+    /**
+     * @return the population variance, E((x-mean)^2)
+     */
+    public double Variance()
+    {
+        return n > 0? m2/n: Double.NaN;
+    }
+
+    /**
+     * @return the population standard deviation
+     */
+    public double Deviation()
+    {
+        return Math.sqrt(Variance());
+    }
+
+    /**
+     * @return the skewness, E((x-mean)^3)/dev^3
+     */
+    public double Skew()
+    {
+        return n > 0? Math.sqrt((double)n)*m3/Math.pow(m2, 1.5): Double.NaN;
+    }
+
+    /**
+     * @return the excess kurtosis, E((x-mean)^4)/dev^4 - 3, which is 0 for a normal distribution
+     */
+    public double Kurtosis()
+    {
+        return n > 0? n*m4/(m2*m2) - 3: Double.NaN;
+    }
+
+    /**
+     * @return the sum of the squares of the differences from the mean
+     */
+    public double M2()
+    {
+        return m2;
+    }
+
+    /**
+     * @return the sum of the cubes of the differences from the mean
+     */
+    public double M3()
+    {
+        return m3;
+    }
+
+    /**
+     * @return the sum of the fourth powers of the differences from the mean
+     */
+    public double M4()
+    {
+        return m4;
+    }
+
+    /**
+     * A fork-join task gathering the moments of a range of an array, split in half until the
+     * pieces are no longer than <i>CHUNK</i>, and merged on the way back
+     */
+    static class Chunk extends RecursiveTask<Moments>
+    {
+        /**
+         * @param a values
+         * @param from index of the first value
+         * @param to index past the last value
+         */
+        Chunk(float a[], int from, int to)
+        {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Moments compute()
+        {
+            if (to - from <= CHUNK) {
+                return Of(a, from, to);
+            }
+            int     mid = (from + to) >>> 1;
+            Chunk   lo = new Chunk(a, from, mid);
+            lo.fork();
+            Moments hi = new Chunk(a, mid, to).compute();
+            Moments m = lo.join();
+            m.Merge(hi);
+            return m;
+        }
+
+        /** the values */
+        float   a[];
+        /** index of the first value */
+        int     from;
+        /** index past the last value */
+        int     to;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** longest run of values that <i>Of()</i> gathers in one go, rather than in chunks */
+    static final int    CHUNK = 16*1024;
+
+    /** number of values */
+    long    n;
+    /** the mean so far */
+    double  mean;
+    /** sums of the second, third and fourth powers of the differences from the mean */
+    double  m2, m3, m4;
+    float   min;
+    float   max;
+}
@@ -8,12 +8,16 @@ package gita;
 import zone.HTMLwriter;
 import zone.Rectangle;
 import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.Collection;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Primary internal form of a page of raw stroke data. This is basically a LinkedList of Stroke structures
+ * Primary internal form of a page of raw stroke data. This is basically a StrokeTable of Stroke structures
  * a linked list of StrokeGroup structures, plus a few fields holding the additional page based data
  * that the Anoto system generates e.g. pen color, page id, pen id.
  * <p>
@@ -31,6 +35,8 @@ import java.util.Collection;
  * @see SymbolList
  * @see SymbolValue
  * @see StrokeGroup
+ * @see StrokeIndex
+ * @see StrokeTable
  * @see LinkedList
  * @see ArrayList
  *
@@ -46,38 +52,226 @@ public class PageData {
     {
         bounds = new Rectangle(0,0,100,100);
         nStroke = 0;
-        strokes = new LinkedList();
-        groups = new LinkedList();
+        strokes = new StrokeTable();
+        groups = new LinkedList<>();
+        penColor = new int[3];
     }
     
     /**
-     * creates a new instance of a PageData structure
+     * creates a new instance of a PageData structure. The strokes are numbered in the order given, and
+     * the membership of the groups is renumbered to match.
      */
-    public PageData(LinkedList<Stroke> s, LinkedList<StrokeGroup> g, float maxX, float maxY)
+    public PageData(Collection<Stroke> s, LinkedList<StrokeGroup> g, float maxX, float maxY)
     {
         bounds = new Rectangle(0,0,maxX,maxY);
         nStroke = s.size();
-        strokes = s;
+        strokes = new StrokeTable(s);
         groups = g;
+        for (StrokeGroup sg: groups) {
+            sg.Renumber();
+        }
+        penColor = new int[3];
     }
     
+    /**
+     * Calculates features for all the groups and strokes in the page. Groups and strokes whose
+     * features have already been calculated, eg. by a StrokePipeline while the page was being
+     * parsed, are skipped.
+     *
+     *<p>
+     * If <i>parallelAnalysis</i> is set, the work is shared out over a fork-join pool, by
+     * <i>AnalyseStrokesParallel()</i>. Either way the read lock of <i>Tolerance</i> is held throughout.
+     *
+     * @param http HTMLwriter for diagnostic output
+     * @throws Cow
+     * @see StrokePipeline
+     */
     public void AnalyseStrokes(HTMLwriter http) throws Cow
     {
+        if (parallelAnalysis) {
+            AnalyseStrokesParallel(http);
+            return;
+        }
+        Tolerance.lock.readLock().lock();
+        try {
  /*
   * calculate features for grouped strokes
   * the procedure is potentially different for strokes in different groups
   */
-        for (StrokeGroup g: groups) {
-            g.CalculateFeatures(http);
-        }
+            for (StrokeGroup g: groups) {
+                if (g.info == null || !g.info.calculated) {
+                    g.CalculateFeatures(http);
+                }
+            }
 /*
  * calculate features for all the ungrouped strokes
  */
+            for (Stroke s: strokes) {
+                if (s.group == null && (s.info == null || !s.info.calculated)) {
+                    s.CalculateFeatures(http);
+                }
+            }
+        } finally {
+            Tolerance.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Calculates features for all the groups and strokes in the page, as <i>AnalyseStrokes()</i>, but
+     * with the groups, and then the ungrouped strokes, each done as a separate task on a fork-join
+     * pool: the pool of the calling thread if it is a worker of one, otherwise the common pool.
+     *<p>
+     * The groups are all done before any of the strokes, as a group sets up the <i>info</i> of the
+     * strokes in it, which are then skipped. A group that shares strokes with an earlier one is held
+     * back, and done on its own once the others are finished. Each task writes its diagnostic output
+     * to its own buffer, and the buffers are copied to <i>http</i> in the order the serial form
+     * would have written them, up to the first task to throw, whose exception is then thrown on.
+     * When <i>http</i> is null, the output is written to a buffer that is then dropped, as the
+     * analysers all expect somewhere to write.
+     *<p>
+     * The read lock of <i>Tolerance</i> is held throughout, so that every task sees the same
+     * tolerances.
+     *
+     * @param http HTMLwriter for diagnostic output, or null
+     * @throws Cow
+     */
+    public void AnalyseStrokesParallel(HTMLwriter http) throws Cow
+    {
+        if (http == null) {
+            http = new HTMLwriter(new PrintWriter(new StringWriter()));
+        }
+        Tolerance.lock.readLock().lock();
+        try {
+            AnalyseInParallel(http);
+        } finally {
+            Tolerance.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * the work of <i>AnalyseStrokesParallel()</i>, with the tolerances locked
+     */
+    void AnalyseInParallel(HTMLwriter http) throws Cow
+    {
+        ArrayList<Analysable>   free = new ArrayList<>();
+        ArrayList<StrokeGroup>  shared = new ArrayList<>();
+        BitSet              taken = new BitSet();
+        for (StrokeGroup g: groups) {
+            if (g.info != null && !g.info.calculated) {
+                if (g.indexed && !g.members.intersects(taken)) {
+                    free.add(g);
+                } else {
+                    shared.add(g);
+                }
+                taken.or(g.members);
+            }
+        }
+        Analyse(free, http);
+        for (StrokeGroup g: shared) {
+            g.CalculateFeatures(http);
+        }
+        
+        ArrayList<Analysable>   ungrouped = new ArrayList<>();
         for (Stroke s: strokes) {
-            if (s.group == null) {
-                s.CalculateFeatures(http);
+            if (s.group == null && (s.info == null || !s.info.calculated)) {
+                ungrouped.add(s);
             }
         }
+        Analyse(ungrouped, http);
+    }
+    
+    /**
+     * calculates the features of a list of groups and strokes in parallel, and copies out their
+     * diagnostic output in order
+     */
+    static void Analyse(ArrayList<Analysable> items, HTMLwriter http) throws Cow
+    {
+        if (items.isEmpty()) {
+            return;
+        }
+        Analysis    a = new Analysis(items);
+        a.invoke();
+        for (int i=0; i<items.size(); i++) {
+            http.print(a.out[i]);
+            Throwable   t = a.err[i];
+            if (t instanceof Cow) {
+                throw (Cow) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+    }
+    
+    /**
+     * The feature calculations for a range of a list of groups and strokes, split in two until each
+     * is done on its own
+     */
+    static class Analysis extends RecursiveAction
+    {
+        /**
+         * @param items the groups and strokes
+         */
+        Analysis(ArrayList<Analysable> items)
+        {
+            this.items = items;
+            this.out = new String[items.size()];
+            this.err = new Throwable[items.size()];
+            this.lo = 0;
+            this.hi = items.size();
+        }
+        
+        /**
+         * a sub range of a parent task, sharing its results
+         */
+        Analysis(Analysis parent, int lo, int hi)
+        {
+            this.items = parent.items;
+            this.out = parent.out;
+            this.err = parent.err;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        protected void compute()
+        {
+            if (hi - lo == 1) {
+                analyse(lo);
+            } else if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Analysis(this, lo, mid), new Analysis(this, mid, hi));
+            }
+        }
+        
+        /**
+         * calculates the features of one group or stroke
+         */
+        void analyse(int i)
+        {
+            StringWriter    buf = new StringWriter();
+            PrintWriter     w = new PrintWriter(buf);
+            try {
+                items.get(i).CalculateFeatures(new HTMLwriter(w));
+            } catch (Throwable t) {
+                err[i] = t;
+            }
+            w.flush();
+            out[i] = buf.toString();
+        }
+        
+        /** the groups and strokes */
+        ArrayList<Analysable>   items;
+        /** diagnostic output of each */
+        String[]            out;
+        /** what each threw, if anything */
+        Throwable[]         err;
+        /** index of the first in the range */
+        int                 lo;
+        /** index past the last in the range */
+        int                 hi;
+
+        private static final long serialVersionUID = 1L;
     }
     
     /**
@@ -89,6 +283,7 @@ public class PageData {
     {
         if (strokes.add(s)) {
             nStroke++;
+            indexAdd(s);
             return true;
         }
         return false;
@@ -104,12 +299,43 @@ public class PageData {
         boolean aded=false;
         for (Stroke s: sl) {
             if (strokes.add(s)) {
+                indexAdd(s);
                 aded = true;
             }
         }
         return aded;
     }
     
+    /**
+     * Returns the spatial index over the bounds of the strokes of this page, building it if there
+     * isn't one. All the strokes must have their bounds calculated.
+     *
+     * @return the index
+     * @see StrokeIndex
+     */
+    public StrokeIndex Index()
+    {
+        if (index == null) {
+            index = new StrokeIndex(strokes);
+        }
+        return index;
+    }
+    
+    /**
+     * keeps the index, if there is one, up to date with a stroke added to the page. If the stroke has
+     * no bounds yet the index is dropped, to be built again when next asked for.
+     */
+    void indexAdd(Stroke s)
+    {
+        if (index != null) {
+            if (s.bounds != null) {
+                index.add(s);
+            } else {
+                index = null;
+            }
+        }
+    }
+    
     /**
      * Sets up basic structures for the page, once all the Strokes and StrokeGroups have been
      * assigned and allocated.
@@ -127,6 +353,7 @@ public class PageData {
                 s.CalculateBounds();
             }
         }
+        index = new StrokeIndex(strokes);
 
 /* 
  * populate any uncompleted group structures
@@ -135,11 +362,11 @@ public class PageData {
             if (s.group != null) { // gather together training data
                 switch (s.group.type) {
                     case SignatureTraining: {
-                        s.group.AppendEnclosedStrokes(s, strokes);
+                        s.group.AppendEnclosedStrokes(s, index);
                         break;
                     }
                     case Signature: {
-                        s.group.AppendEnclosedStrokes(s, strokes);
+                        s.group.AppendEnclosedStrokes(s, index);
                         break;
                     }
                 }
@@ -147,14 +374,25 @@ public class PageData {
         }
     }
 
+    /** analyse the strokes of pages in parallel. set by the "page-analysis" init parameter */
+    static boolean          parallelAnalysis = false;
+    
     /** number of raw strokes within the page. Hopefully this is the same as strokes.length */
     int                      nStroke = 0;
-    /** list of strokes that are on this page */
-    LinkedList<Stroke>       strokes = null;
+    /** table of strokes that are on this page, by number */
+    StrokeTable              strokes = null;
     /** string of basic info about this page */
     String                   info = null;
     /** the bounds of the page i.e. the smallest and largest stroke co-ordinates in the x and y directions */
     Rectangle                bounds = null;
     /** a list of all the groupings and subgroupings of strokes within a page */
     LinkedList<StrokeGroup>  groups = null;
+    /** spatial index over the bounds of <i>strokes</i>, or null if it hasn't been built */
+    StrokeIndex              index = null;
+    /** the id of the pen that wrote this page, if known */
+    String                   penId = null;
+    /** the id of the paper for this page, if known, eg 44.0.3.8 */
+    String                   paperId = null;
+    /** rgb color of the pen that wrote this page */
+    int                      penColor[] = null;
 }
@@ -0,0 +1,523 @@
+/*
+ * PageStore.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.LinkedList;
+
+import zone.Point;
+import zone.Rectangle;
+
+/**
+ * Off heap storage for a large resident set of pages. The co-ordinates of every stroke, and a fixed
+ * size record of the metadata of each stroke (sample range, bounds, centroid, mean, group, pen), are
+ * kept in direct byte buffers, so they neither count against the heap nor get scanned by the
+ * collector. Only a small record per page, holding its strings and its groups, stays on the heap.
+ *<p>
+ * Pages are added with <i>Store()</i>, and are read back either as views, which answer questions
+ * about a stroke straight from the buffers, or with <i>Load()</i>, which rebuilds a PageData that the
+ * analysis code can be run over. Strokes are numbered across the whole store; <i>FirstStroke()</i>
+ * gives the number of the first stroke of a page.
+ *<p>
+ * The results of analyses, ie. the <i>info</i> of strokes and groups, are not stored. Storing is
+ * synchronized, and any number of threads can read while it goes on, without taking the lock: the
+ * buffers and the table of pages are only ever replaced by larger copies, and a page's records are
+ * complete before the count of pages, which is volatile, is raised to publish it.
+ *
+ * @see PageData
+ * @see InkTrace
+ * @author dak
+ * @since you asked
+ */
+public class PageStore
+{
+    /** bytes in the record of a stroke */
+    static final int    RECORD_SIZE = 64;
+
+    /** offsets of the fields of a stroke record */
+    static final int    R_OFFSET = 0,       // index of the first co-ordinate, in floats
+                        R_N = 4,            // number of samples
+                        R_MINX = 8,
+                        R_MINY = 12,
+                        R_MAXX = 16,
+                        R_MAXY = 20,
+                        R_CENTROIDX = 24,
+                        R_CENTROIDY = 28,
+                        R_MEANX = 32,
+                        R_MEANY = 36,
+                        R_GROUP = 40,       // index in the page of the group this stroke contains, or -1
+                        R_COLOR = 44,       // pen color, as 0xrrggbb
+                        R_WIDTH = 48,       // pen width
+                        R_TYPE = 52,        // ordinal of the stroke type
+                        R_FLAGS = 56;
+
+    /** flag set in a record if the stroke was part of a signature, with a SignatureStroke info */
+    static final int    F_SIGNATURE = 1;
+
+    /**
+     * Creates an empty store
+     */
+    public PageStore()
+    {
+        this(1024, 64*1024);
+    }
+
+    /**
+     * Creates an empty store with the given initial capacity. The buffers grow as needed.
+     *
+     * @param strokeCapacity number of strokes to allow for
+     * @param sampleCapacity number of samples to allow for
+     */
+    public PageStore(int strokeCapacity, int sampleCapacity)
+    {
+        records = allocate(Math.max(strokeCapacity, 1)*RECORD_SIZE);
+        coords = allocate(Math.max(sampleCapacity, 1)*8).asFloatBuffer();
+        pages = new StoredPage[16];
+        nStroke = 0;
+        nCoord = 0;
+    }
+
+    /**
+     * Adds a page to the store. Strokes whose bounds have not been calculated yet have them
+     * calculated now.
+     *
+     * @param page the page
+     * @return the number of the page in the store
+     * @throws Cow if the store is full
+     */
+    public synchronized int Store(PageData page) throws Cow
+    {
+        int     nSample = 0;
+        for (Stroke s: page.strokes) {
+            nSample += s.nSample;
+        }
+        Reserve(page.strokes.size(), nSample);
+
+        StoredPage  p = new StoredPage();
+        p.firstStroke = nStroke;
+        p.nStroke = page.strokes.size();
+        p.penId = page.penId;
+        p.paperId = page.paperId;
+        p.info = page.info;
+        p.bounds = page.bounds;
+        p.penColor = page.penColor;
+        p.strokeIds = new String[p.nStroke];
+
+        int     nGroup = page.groups.size();
+        p.groupType = new StrokeGroup.Type[nGroup];
+        p.groupId = new String[nGroup];
+        p.groupUser = new String[nGroup];
+        p.groupMembers = new int[nGroup][];
+
+        Stroke[]    strokes = page.strokes.toArray(new Stroke[p.nStroke]);
+        int g = 0;
+        for (StrokeGroup sg: page.groups) {
+            p.groupType[g] = sg.type;
+            p.groupId[g] = sg.id;
+            if (sg.info instanceof SignatureContainer) {
+                p.groupUser[g] = ((SignatureContainer)sg.info).userId;
+            }
+            p.groupMembers[g] = new int[sg.strokes.size()];
+            int m = 0;
+            for (Stroke s: sg.strokes) {
+                p.groupMembers[g][m++] = indexOf(strokes, s);
+            }
+            g++;
+        }
+
+        ByteBuffer  r = records;
+        FloatBuffer c = coords;
+        for (int i=0; i<strokes.length; i++) {
+            Stroke  s = strokes[i];
+            if (s.bounds == null) {
+                s.CalculateBounds();
+            }
+            p.strokeIds[i] = s.id;
+            if (s.region != null) {
+                if (p.regions == null) {
+                    p.regions = new ActiveRegion[p.nStroke];
+                }
+                p.regions[i] = s.region;
+            }
+
+            int     b = (nStroke + i)*RECORD_SIZE;
+            r.putInt(b+R_OFFSET, nCoord);
+            r.putInt(b+R_N, s.nSample);
+            r.putFloat(b+R_MINX, s.bounds.left);
+            r.putFloat(b+R_MINY, s.bounds.top);
+            r.putFloat(b+R_MAXX, s.bounds.right);
+            r.putFloat(b+R_MAXY, s.bounds.bottom);
+            r.putFloat(b+R_CENTROIDX, s.centroid.x);
+            r.putFloat(b+R_CENTROIDY, s.centroid.y);
+            r.putFloat(b+R_MEANX, s.mean.x);
+            r.putFloat(b+R_MEANY, s.mean.y);
+            r.putInt(b+R_GROUP, s.group != null? page.groups.indexOf(s.group): -1);
+            r.putInt(b+R_COLOR, (s.penColor[0]&0xff)<<16 | (s.penColor[1]&0xff)<<8 | (s.penColor[2]&0xff));
+            r.putFloat(b+R_WIDTH, s.penWidth);
+            r.putInt(b+R_TYPE, s.type.ordinal());
+            r.putInt(b+R_FLAGS, s.info instanceof SignatureStroke? F_SIGNATURE: 0);
+
+            float[] xs = s.trace != null? s.trace.x: null;
+            float[] ys = s.trace != null? s.trace.y: null;
+            for (int j=0; j<s.nSample; j++) {
+                c.put(nCoord++, xs[j]);
+                c.put(nCoord++, ys[j]);
+            }
+        }
+        nStroke += p.nStroke;
+        if (nPage == pages.length) {
+            StoredPage  grown[] = new StoredPage[2*nPage];
+            System.arraycopy(pages, 0, grown, 0, nPage);
+            pages = grown;
+        }
+        pages[nPage] = p;
+        nPage++;
+        return nPage-1;
+    }
+
+    /**
+     * Rebuilds a page from the store. The page has the same strokes, bounds, groups and group
+     * membership as when it was stored, but no analysis results: a page stored after
+     * <i>SetupStructures()</i> should not be set up again.
+     *
+     * @param page number of the page in the store
+     * @return a new PageData
+     */
+    public PageData Load(int page)
+    {
+        StoredPage  p = Page(page);
+        LinkedList<Stroke>      strokes = new LinkedList<>();
+        LinkedList<StrokeGroup> groups = new LinkedList<>();
+
+        StrokeGroup[]   g = new StrokeGroup[p.groupType.length];
+        for (int i=0; i<g.length; i++) {
+            g[i] = new StrokeGroup(p.groupType[i], p.groupId[i]);
+            if (p.groupUser[i] != null) {
+                g[i].info = new SignatureContainer(p.groupUser[i], g[i]);
+            }
+            groups.add(g[i]);
+        }
+
+        ByteBuffer  r = records;
+        Stroke[]    s = new Stroke[p.nStroke];
+        for (int i=0; i<p.nStroke; i++) {
+            int     k = p.firstStroke + i;
+            int     b = k*RECORD_SIZE;
+            s[i] = new Stroke();
+            s[i].SetTrace(Trace(k, null));
+            s[i].id = p.strokeIds[i];
+            s[i].bounds = Bounds(k);
+            s[i].centroid = new Point(r.getFloat(b+R_CENTROIDX), r.getFloat(b+R_CENTROIDY));
+            s[i].mean = new Point(r.getFloat(b+R_MEANX), r.getFloat(b+R_MEANY));
+            int rgb = r.getInt(b+R_COLOR);
+            s[i].penColor[0] = (rgb>>16)&0xff;
+            s[i].penColor[1] = (rgb>>8)&0xff;
+            s[i].penColor[2] = rgb&0xff;
+            s[i].penWidth = r.getFloat(b+R_WIDTH);
+            s[i].type = Stroke.StrokeType.values()[r.getInt(b+R_TYPE)];
+            if (p.regions != null) {
+                s[i].region = p.regions[i];
+            }
+            int grp = r.getInt(b+R_GROUP);
+            if (grp >= 0) {
+                s[i].group = g[grp];
+            }
+            if ((r.getInt(b+R_FLAGS) & F_SIGNATURE) != 0) {
+                s[i].info = new SignatureStroke(s[i]);
+            }
+            strokes.add(s[i]);
+        }
+        for (int i=0; i<g.length; i++) {
+            for (int m: p.groupMembers[i]) {
+                if (m >= 0) {
+                    g[i].add(s[m]);
+                }
+            }
+        }
+
+        PageData    d = new PageData(strokes, groups, p.bounds.right, p.bounds.bottom);
+        d.bounds = p.bounds;
+        d.penId = p.penId;
+        d.paperId = p.paperId;
+        d.info = p.info;
+        d.penColor = p.penColor;
+        return d;
+    }
+
+    /**
+     * @return the number of pages in the store
+     */
+    public int PageCount()
+    {
+        return nPage;
+    }
+
+    /**
+     * @param page number of a page in the store
+     * @return the number of strokes on the page
+     */
+    public int StrokeCount(int page)
+    {
+        return Page(page).nStroke;
+    }
+
+    /**
+     * @param page number of a page in the store
+     * @return the store wide number of the first stroke of the page
+     */
+    public int FirstStroke(int page)
+    {
+        return Page(page).firstStroke;
+    }
+
+    /**
+     * @param page number of a page in the store
+     * @return the id of the paper of the page
+     */
+    public String PaperId(int page)
+    {
+        return Page(page).paperId;
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @return the number of samples in the stroke
+     */
+    public int SampleCount(int k)
+    {
+        return records.getInt(k*RECORD_SIZE+R_N);
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @param i index of a sample of the stroke
+     * @return the x co-ordinate of the sample
+     */
+    public float X(int k, int i)
+    {
+        return coords.get(records.getInt(k*RECORD_SIZE+R_OFFSET) + 2*i);
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @param i index of a sample of the stroke
+     * @return the y co-ordinate of the sample
+     */
+    public float Y(int k, int i)
+    {
+        return coords.get(records.getInt(k*RECORD_SIZE+R_OFFSET) + 2*i + 1);
+    }
+
+    /**
+     * Gets the co-ordinates of a stroke, without copying them, as x,y pairs.
+     *
+     * @param k store wide number of a stroke
+     * @return a read only buffer of 2*<i>SampleCount(k)</i> floats
+     */
+    public FloatBuffer Coordinates(int k)
+    {
+        int     b = k*RECORD_SIZE;
+        int     off = records.getInt(b+R_OFFSET);
+        FloatBuffer c = coords.duplicate();
+        c.limit(off + 2*records.getInt(b+R_N));
+        c.position(off);
+        return c.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the co-ordinates of a stroke onto the heap, as a trace that the analysis code can work on
+     *
+     * @param k store wide number of a stroke
+     * @param t a trace to reuse, or null for a new one
+     * @return the trace
+     */
+    public InkTrace Trace(int k, InkTrace t)
+    {
+        int     b = k*RECORD_SIZE;
+        int     off = records.getInt(b+R_OFFSET);
+        int     n = records.getInt(b+R_N);
+        if (t == null) {
+            t = new InkTrace(n);
+        } else {
+            t.n = 0;
+            t.time = null;
+            t.pressure = null;
+            if (t.x.length < n) {
+                t.Grow(n);
+            }
+        }
+        FloatBuffer c = coords;
+        for (int i=0; i<n; i++) {
+            t.x[i] = c.get(off++);
+            t.y[i] = c.get(off++);
+        }
+        t.n = n;
+        return t;
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @return the bounds of the stroke
+     */
+    public Rectangle Bounds(int k)
+    {
+        int     b = k*RECORD_SIZE;
+        ByteBuffer  r = records;
+        return new Rectangle(r.getFloat(b+R_MINX), r.getFloat(b+R_MINY), r.getFloat(b+R_MAXX), r.getFloat(b+R_MAXY));
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @return the centroid of the stroke
+     */
+    public Point Centroid(int k)
+    {
+        int     b = k*RECORD_SIZE;
+        return new Point(records.getFloat(b+R_CENTROIDX), records.getFloat(b+R_CENTROIDY));
+    }
+
+    /**
+     * @param k store wide number of a stroke
+     * @return the index, among the groups of its page, of the group the stroke contains, or -1
+     */
+    public int Group(int k)
+    {
+        return records.getInt(k*RECORD_SIZE+R_GROUP);
+    }
+
+    /**
+     * @return the number of bytes held off the heap, including room not yet used
+     */
+    public long OffHeapBytes()
+    {
+        return (long)records.capacity() + 4L*coords.capacity();
+    }
+
+    /**
+     * Makes sure there is room for the given numbers of strokes and samples, growing the buffers if not
+     *
+     * @throws Cow if a buffer would have to be larger than a ByteBuffer can be
+     */
+    void Reserve(int strokes, int samples) throws Cow
+    {
+        long    needRecords = (long)(nStroke + strokes)*RECORD_SIZE;
+        if (needRecords > records.capacity()) {
+            ByteBuffer  r = allocate(newCapacity(records.capacity(), needRecords));
+            ByteBuffer  old = records.duplicate();
+            old.clear();
+            old.limit(nStroke*RECORD_SIZE);
+            r.put(old);
+            r.clear();
+            records = r;
+        }
+        long    needCoords = (nCoord + 2L*samples)*4;
+        if (needCoords > 4L*coords.capacity()) {
+            FloatBuffer c = allocate(newCapacity(4*coords.capacity(), needCoords)).asFloatBuffer();
+            FloatBuffer old = coords.duplicate();
+            old.clear();
+            old.limit(nCoord);
+            c.put(old);
+            c.clear();
+            coords = c;
+        }
+    }
+
+    /**
+     * @return a capacity at least twice the old one, and at least the needed size
+     */
+    static int newCapacity(int old, long need) throws Cow
+    {
+        long    cap = Math.max(2L*old, need);
+        if (cap > Integer.MAX_VALUE - 8) {
+            if (need > Integer.MAX_VALUE - 8) {
+                throw new Cow("page store full");
+            }
+            cap = Integer.MAX_VALUE - 8;
+        }
+        return (int)cap;
+    }
+
+    /**
+     * @return a direct buffer in native order
+     */
+    static ByteBuffer allocate(int size)
+    {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return the on heap record of a page. This takes no lock: <i>nPage</i> is read before
+     *  <i>pages</i>, and <i>Store()</i> fills in a slot, or copies the table, before it counts the page.
+     */
+    StoredPage Page(int page)
+    {
+        if (page < 0 || page >= nPage) {
+            throw new IndexOutOfBoundsException("no page "+page+" in the store");
+        }
+        return pages[page];
+    }
+
+    /**
+     * @return the index of a stroke in an array, by identity, or -1
+     */
+    static int indexOf(Stroke[] strokes, Stroke s)
+    {
+        for (int i=0; i<strokes.length; i++) {
+            if (strokes[i] == s) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The part of a stored page that is kept on the heap
+     */
+    static class StoredPage
+    {
+        /** store wide number of the first stroke */
+        int                 firstStroke;
+        /** number of strokes */
+        int                 nStroke;
+        /** pen id of the page */
+        String              penId;
+        /** paper id of the page */
+        String              paperId;
+        /** info string of the page */
+        String              info;
+        /** bounds of the page */
+        Rectangle           bounds;
+        /** pen color of the page */
+        int                 penColor[];
+        /** id of each stroke */
+        String              strokeIds[];
+        /** active region of each stroke, or null if no stroke has one */
+        ActiveRegion        regions[];
+        /** type of each group */
+        StrokeGroup.Type    groupType[];
+        /** id of each group */
+        String              groupId[];
+        /** user id of the SignatureContainer of each group, or null */
+        String              groupUser[];
+        /** index on the page of each stroke in each group */
+        int                 groupMembers[][];
+    }
+
+    /** the stroke records, RECORD_SIZE bytes apiece */
+    volatile ByteBuffer         records;
+    /** the co-ordinates of all the strokes, as x,y pairs */
+    volatile FloatBuffer        coords;
+    /** on heap records of the pages, the first <i>nPage</i> of them filled in */
+    volatile StoredPage         pages[];
+    /** number of pages published */
+    volatile int                nPage = 0;
+    /** number of strokes stored */
+    int                         nStroke;
+    /** number of co-ordinates stored */
+    int                         nCoord;
+}
@@ -0,0 +1,229 @@
+/*
+ * PaperRegionRegistry.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import zone.HTMLwriter;
+import zone.Rectangle;
+
+/**
+ * Maps Anoto paper ids onto the active regions of each paper, plus a parser to load these from an
+ * xml file. The registry is loaded once, when the servlet starts, and is then shared, read only, by
+ * every parse. The form of the file is:
+ *<pre>
+ *   &lt;regions&gt;
+ *       &lt;paper id="44.0.3.8"&gt;
+ *           &lt;region id="transmit" kind="transmit" left="385" top="560" right="405" bottom="580"/&gt;
+ *           &lt;region id="name" kind="field" left="40" top="60" right="300" bottom="90"/&gt;
+ *       &lt;/paper&gt;
+ *   &lt;/regions&gt;
+ *</pre>
+ * <i>kind</i> is one of "transmit", "field", or "command". A region can be given a <i>filter</i>
+ * attribute of "true" or "false"; by default only the transmit box is filtered. A paper with the id
+ * "*" holds the regions used for any paper that isn't registered itself.
+ *
+ * @see PaperRegions
+ * @see ActiveRegion
+ * @see AnotoLogParser
+ * @author dak
+ * @since you asked
+ */
+public class PaperRegionRegistry extends DefaultHandler
+{
+    /** paper id under which the regions for unregistered papers are kept */
+    public static final String  ANY_PAPER = "*";
+
+    /**
+     * Creates an empty registry
+     */
+    public PaperRegionRegistry()
+    {
+        papers = new HashMap<>();
+    }
+
+    /**
+     * Creates a registry holding only the transmit box of the Anoto demo sheet, (385,560,405,580)
+     * for paper 44.0.3.8, applied to every paper, which is what gita has always filtered.
+     *
+     * @return the default registry
+     */
+    public static PaperRegionRegistry defaultRegistry()
+    {
+        PaperRegionRegistry reg = new PaperRegionRegistry();
+        reg.add(ANY_PAPER, new ActiveRegion("transmit", ActiveRegion.Kind.TransmitBox,
+                                    new Rectangle(385,560,405,580), true));
+        reg.index();
+        return reg;
+    }
+
+    /**
+     * Gets the active regions of a paper
+     *
+     * @param paperId the Anoto paper id
+     * @return the regions of the paper, or of ANY_PAPER if it isn't registered, or null if neither is
+     */
+    public PaperRegions get(String paperId)
+    {
+        PaperRegions    p = paperId != null? papers.get(paperId): null;
+        if (p == null) {
+            p = papers.get(ANY_PAPER);
+        }
+        return p;
+    }
+
+    /**
+     * Adds a region to a paper. <i>index()</i> has to be called once all the regions are added.
+     *
+     * @param paperId the Anoto paper id
+     * @param r the region
+     */
+    public void add(String paperId, ActiveRegion r)
+    {
+        PaperRegions    p = papers.get(paperId);
+        if (p == null) {
+            p = new PaperRegions(paperId);
+            papers.put(paperId, p);
+        }
+        p.add(r);
+    }
+
+    /**
+     * Builds the grid index for every paper
+     */
+    public void index()
+    {
+        for (PaperRegions p: papers.values()) {
+            p.index();
+        }
+    }
+
+    /**
+     * @return the number of papers with registered regions
+     */
+    public int size()
+    {
+        return papers.size();
+    }
+
+    /**
+     * Parses a file that contains paper regions in xml.
+     *
+     * @param h a HTMLwriter for diagnostic output
+     * @param f a File that is the source of the regions
+     */
+    public void parseRegionsFile(HTMLwriter h, File f)
+            throws FileNotFoundException
+    {
+        FileReader  r = new FileReader(f);
+        try {
+            parseRegions(h, r);
+        } finally {
+            try {
+                r.close();
+            } catch (IOException e) {
+                ;
+            }
+        }
+    }
+
+    /**
+     * Parses the output of a Reader that dishes out paper regions in xml, and indexes them.
+     *
+     * @param h a HTMLwriter for diagnostic output
+     * @param r a Reader that is the source of the regions
+     */
+    public void parseRegions(HTMLwriter h, Reader r)
+    {
+        http = h;
+        currentPaper = null;
+
+        XMLReader   xr = SaxParserPool.acquire(this, this);
+
+        try {
+            xr.parse(new InputSource(r));
+        } catch (IOException e) {
+            http.printbr("io exception: "+e.getMessage());
+        } catch (SAXException e) {
+            http.printbr("sax exception: "+e.getMessage());
+        } finally {
+            SaxParserPool.release(xr);
+        }
+        index();
+    }
+
+//////////////////////////////////////////////////////////////////////
+// parser event handlers ... overrides from DefaultHandler
+//////////////////////////////////////////////////////////////////////
+
+   /**
+    * Event handler called at the start of a tag, overriding the default for the parsing engine
+    */
+    public void startElement (String uri, String name,
+                  String qName, Attributes atts)
+    {
+        if (qName.equals("paper")) {
+            currentPaper = atts.getValue("id");
+        } else if (qName.equals("region")) {
+            if (currentPaper == null) {
+                http.printbr("region outside of a paper element");
+                return;
+            }
+            String  id = atts.getValue("id");
+            String  kindName = atts.getValue("kind");
+            String  filter = atts.getValue("filter");
+            ActiveRegion.Kind kind = ActiveRegion.Kind.FormField;
+            if (kindName != null) {
+                kind = ActiveRegion.kindOf(kindName);
+                if (kind == null) {
+                    http.printbr("unknown kind of region "+kindName+" on paper "+currentPaper);
+                    return;
+                }
+            }
+            try {
+                Rectangle   b = new Rectangle(
+                                    Float.valueOf(atts.getValue("left")),
+                                    Float.valueOf(atts.getValue("top")),
+                                    Float.valueOf(atts.getValue("right")),
+                                    Float.valueOf(atts.getValue("bottom")));
+                boolean filtered = filter != null? filter.equals("true"): kind == ActiveRegion.Kind.TransmitBox;
+                add(currentPaper, new ActiveRegion(id, kind, b, filtered));
+            } catch (NullPointerException e) {
+                http.printbr("region "+id+" on paper "+currentPaper+" needs left, top, right and bottom");
+            } catch (NumberFormatException e) {
+                http.printbr("bad co-ordinate for region "+id+" on paper "+currentPaper);
+            }
+        }
+    }
+
+   /**
+    * Event handler called at the end of a tag, overriding the default for the parsing engine
+    */
+    public void endElement (String uri, String name, String qName)
+    {
+        if (qName.equals("paper")) {
+            currentPaper = null;
+        }
+    }
+
+    /** the regions of each paper, by paper id */
+    HashMap<String,PaperRegions>    papers;
+    /** id of the paper element currently being parsed */
+    String                          currentPaper;
+    /** html output for diagnostics */
+    HTMLwriter                      http;
+}
@@ -0,0 +1,224 @@
+/*
+ * PaperRegions.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import zone.Rectangle;
+
+/**
+ * The active regions of a single Anoto paper, with a uniform grid over them for hit testing samples.
+ *<p>
+ * The grid covers the extent of all the regions, with about as many cells to a side as the square root
+ * of the number of regions, and each cell lists the regions that overlap it. Samples outside the extent,
+ * which is most of them on most pages, are rejected by four comparisons; the rest only need to be tested
+ * against the few regions in one cell. Within a cell, filtered regions come first, so they win where
+ * regions overlap.
+ *<p>
+ * Regions are added while the registry is loaded, and <i>index()</i> then builds the grid. After that
+ * it is only read, and can be shared between parser threads.
+ *
+ * @see ActiveRegion
+ * @see PaperRegionRegistry
+ * @author dak
+ * @since you asked
+ */
+public class PaperRegions
+{
+    /** most cells along each side of the grid */
+    public static final int MAX_GRID = 64;
+
+    /**
+     * create an empty set of regions for a paper
+     *
+     * @param paperId the Anoto paper id
+     */
+    public PaperRegions(String paperId)
+    {
+        this.paperId = paperId;
+        regions = new LinkedList<>();
+        cells = null;
+    }
+
+    /**
+     * add a region. <i>index()</i> has to be called again once all the regions are added.
+     *
+     * @param r the region
+     */
+    public void add(ActiveRegion r)
+    {
+        regions.add(r);
+        cells = null;
+    }
+
+    /**
+     * builds the grid index over the current regions
+     */
+    public void index()
+    {
+        nGrid = 0;
+        cells = null;
+        if (regions.isEmpty()) {
+            return;
+        }
+        boolean first = true;
+        for (ActiveRegion r: regions) {
+            if (first) {
+                left = r.bounds.left;
+                top = r.bounds.top;
+                right = r.bounds.right;
+                bottom = r.bounds.bottom;
+                first = false;
+            } else {
+                if (r.bounds.left < left) left = r.bounds.left;
+                if (r.bounds.top < top) top = r.bounds.top;
+                if (r.bounds.right > right) right = r.bounds.right;
+                if (r.bounds.bottom > bottom) bottom = r.bounds.bottom;
+            }
+        }
+        nGrid = (int)Math.ceil(Math.sqrt(regions.size()));
+        if (nGrid > MAX_GRID) {
+            nGrid = MAX_GRID;
+        }
+        cellWidth = (right - left)/nGrid;
+        cellHeight = (bottom - top)/nGrid;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayList<ActiveRegion>[] lists = new ArrayList[nGrid*nGrid];
+        for (int pass=0; pass<2; pass++) {
+// filtered regions go in first, so they are found first
+            for (ActiveRegion r: regions) {
+                if (r.filtered != (pass == 0)) {
+                    continue;
+                }
+                int c0 = column(r.bounds.left);
+                int c1 = column(r.bounds.right);
+                int r0 = row(r.bounds.top);
+                int r1 = row(r.bounds.bottom);
+                for (int j=r0; j<=r1; j++) {
+                    for (int i=c0; i<=c1; i++) {
+                        int k = j*nGrid + i;
+                        if (lists[k] == null) {
+                            lists[k] = new ArrayList<>();
+                        }
+                        lists[k].add(r);
+                    }
+                }
+            }
+        }
+        ActiveRegion[][] c = new ActiveRegion[nGrid*nGrid][];
+        for (int k=0; k<c.length; k++) {
+            c[k] = lists[k] != null? lists[k].toArray(new ActiveRegion[lists[k].size()]): null;
+        }
+        cells = c;
+    }
+
+    /**
+     * finds the region a point lies in. Where regions overlap, a filtered region is returned in
+     * preference to any other.
+     *
+     * @param x x co-ordinate
+     * @param y y co-ordinate
+     * @return the region, or null if the point isn't in any
+     */
+    public ActiveRegion Find(float x, float y)
+    {
+        ActiveRegion[][] c = cells;
+        if (c == null || x < left || x > right || y < top || y > bottom) {
+            return null;
+        }
+        ActiveRegion[] cell = c[row(y)*nGrid + column(x)];
+        if (cell != null) {
+            for (ActiveRegion r: cell) {
+                if (r.Contains(x, y)) {
+                    return r;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * finds the first region overlapping a rectangle, such as the bounds of a stroke. Filtered
+     * regions are returned in preference to any other.
+     *
+     * @param b the rectangle
+     * @return the region, or null if the rectangle doesn't overlap any
+     */
+    public ActiveRegion Find(Rectangle b)
+    {
+        ActiveRegion[][] c = cells;
+        if (c == null || b.right < left || b.left > right || b.bottom < top || b.top > bottom) {
+            return null;
+        }
+        ActiveRegion    found = null;
+        int c0 = column(b.left);
+        int c1 = column(b.right);
+        int r0 = row(b.top);
+        int r1 = row(b.bottom);
+        for (int j=r0; j<=r1; j++) {
+            for (int i=c0; i<=c1; i++) {
+                ActiveRegion[] cell = c[j*nGrid + i];
+                if (cell == null) {
+                    continue;
+                }
+                for (ActiveRegion r: cell) {
+                    if (b.right >= r.bounds.left && b.left <= r.bounds.right &&
+                            b.bottom >= r.bounds.top && b.top <= r.bounds.bottom) {
+                        if (r.filtered) {
+                            return r;
+                        }
+                        if (found == null) {
+                            found = r;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * grid column holding an x co-ordinate, clamped to the grid
+     */
+    int column(float x)
+    {
+        int i = cellWidth > 0? (int)((x - left)/cellWidth): 0;
+        return i < 0? 0: (i >= nGrid? nGrid-1: i);
+    }
+
+    /**
+     * grid row holding a y co-ordinate, clamped to the grid
+     */
+    int row(float y)
+    {
+        int j = cellHeight > 0? (int)((y - top)/cellHeight): 0;
+        return j < 0? 0: (j >= nGrid? nGrid-1: j);
+    }
+
+    /** the Anoto paper id */
+    public String                   paperId;
+    /** the regions of this paper */
+    public LinkedList<ActiveRegion> regions;
+
+    /** the grid cells, row by row, each holding the regions that overlap it, or null if none do */
+    ActiveRegion[][]    cells;
+    /** number of cells along each side of the grid */
+    int                 nGrid;
+    /** left edge of the grid */
+    float               left;
+    /** top edge of the grid */
+    float               top;
+    /** right edge of the grid */
+    float               right;
+    /** bottom edge of the grid */
+    float               bottom;
+    /** width of a grid cell */
+    float               cellWidth;
+    /** height of a grid cell */
+    float               cellHeight;
+}
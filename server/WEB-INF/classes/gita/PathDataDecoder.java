@@ -0,0 +1,261 @@
+/*
+ * PathDataDecoder.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+/**
+ * Decoder for the path data in the "d" attribute of an svg path element, as used by
+ * <i>SvgStrokeParser</i>. Coordinates are decoded straight from the attribute string into a pair
+ * of reusable float arrays, and the bounds, and the sums needed for the mean, of the decoded points
+ * are worked out in the same pass.
+ *<p>
+ * Only the straight line commands that turn up in stroke data are handled: M, L, H, V and their
+ * relative forms m, l, h, v, along with the implicit lineto that follows a moveto. Anything else,
+ * curves, arcs or closepath, makes <i>decode()</i> return false, and the caller should hand the
+ * attribute over to a zone.PathDataAttribute instead.
+ *
+ * @see SvgStrokeParser
+ * @author dak
+ * @since you asked
+ */
+public class PathDataDecoder
+{
+    /**
+     * create a decoder, with buffers for a modest sized stroke. The buffers grow as needed, and are
+     * kept from one path to the next.
+     */
+    public PathDataDecoder()
+    {
+        x = new float[256];
+        y = new float[256];
+        n = 0;
+    }
+
+    /**
+     * decode a string of svg path data. On success, the points are in the first <i>n</i> entries of
+     * <i>x</i> and <i>y</i>, and their moments, bounds included, are in <i>xMoments</i> and
+     * <i>yMoments</i>, which are new for each path, so can be handed on to the stroke.
+     *
+     * @param d the path data
+     * @return false if the path data uses a command this decoder doesn't handle, or is badly formed
+     */
+    public boolean decode(String d)
+    {
+        data = d;
+        pos = 0;
+        len = d.length();
+        n = 0;
+        xMoments = new Moments();
+        yMoments = new Moments();
+
+        int est = len/6 + 1;
+        if (est > x.length) {
+            x = new float[est];
+            y = new float[est];
+        }
+
+        float   curX = 0;
+        float   curY = 0;
+        char    cmd = 0;
+        for (;;) {
+            skipSeparators();
+            if (pos >= len) {
+                break;
+            }
+            char c = data.charAt(pos);
+            if (isCommand(c)) {
+                cmd = c;
+                pos++;
+                skipSeparators();
+            } else if (cmd == 0) {
+                return false;
+            }
+            switch (cmd) {
+                case 'M':
+                case 'L': {
+                    if (!number()) return false;
+                    curX = value;
+                    if (!number()) return false;
+                    curY = value;
+                    break;
+                }
+                case 'm':
+                case 'l': {
+                    if (!number()) return false;
+                    curX += value;
+                    if (!number()) return false;
+                    curY += value;
+                    break;
+                }
+                case 'H': {
+                    if (!number()) return false;
+                    curX = value;
+                    break;
+                }
+                case 'h': {
+                    if (!number()) return false;
+                    curX += value;
+                    break;
+                }
+                case 'V': {
+                    if (!number()) return false;
+                    curY = value;
+                    break;
+                }
+                case 'v': {
+                    if (!number()) return false;
+                    curY += value;
+                    break;
+                }
+                default: {
+                    return false;
+                }
+            }
+            add(curX, curY);
+// coordinate pairs after a moveto are implicit linetos
+            if (cmd == 'M') {
+                cmd = 'L';
+            } else if (cmd == 'm') {
+                cmd = 'l';
+            }
+        }
+        data = null;
+        return true;
+    }
+
+    /**
+     * append a point to the buffers, growing them if need be, and fold it into the moments
+     */
+    void add(float px, float py)
+    {
+        if (n == x.length) {
+            float   nx[] = new float[2*n];
+            float   ny[] = new float[2*n];
+            System.arraycopy(x, 0, nx, 0, n);
+            System.arraycopy(y, 0, ny, 0, n);
+            x = nx;
+            y = ny;
+        }
+        xMoments.Add(px);
+        yMoments.Add(py);
+        x[n] = px;
+        y[n] = py;
+        n++;
+    }
+
+    /**
+     * tests for any svg path command letter, handled or not. The exponent marker 'e' isn't one.
+     */
+    static boolean isCommand(char c)
+    {
+        switch (c) {
+            case 'M': case 'm': case 'L': case 'l': case 'H': case 'h': case 'V': case 'v':
+            case 'C': case 'c': case 'S': case 's': case 'Q': case 'q': case 'T': case 't':
+            case 'A': case 'a': case 'Z': case 'z':
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * skips white space and commas
+     */
+    void skipSeparators()
+    {
+        while (pos < len) {
+            char c = data.charAt(pos);
+            if (c != ' ' && c != ',' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * reads a number into <i>value</i>. The result is the same as Float.parseFloat() on the text of
+     * the number, but the common case of a short decimal is done without making a String.
+     *
+     * @return false if there isn't a number here
+     */
+    boolean number()
+    {
+        skipSeparators();
+        int     start = pos;
+        boolean negative = false;
+        if (pos < len && (data.charAt(pos) == '-' || data.charAt(pos) == '+')) {
+            negative = data.charAt(pos) == '-';
+            pos++;
+        }
+        long    mantissa = 0;
+        int     nDigit = 0;
+        int     nFrac = 0;
+        boolean dot = false;
+        while (pos < len) {
+            char c = data.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (nDigit < 18) {
+                    mantissa = mantissa*10 + (c - '0');
+                    if (dot) {
+                        nFrac++;
+                    }
+                }
+                nDigit++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (nDigit == 0) {
+            pos = start;
+            return false;
+        }
+        boolean exponent = false;
+        if (pos < len && (data.charAt(pos) == 'e' || data.charAt(pos) == 'E')) {
+            exponent = true;
+            pos++;
+            if (pos < len && (data.charAt(pos) == '-' || data.charAt(pos) == '+')) {
+                pos++;
+            }
+            int expStart = pos;
+            while (pos < len && data.charAt(pos) >= '0' && data.charAt(pos) <= '9') {
+                pos++;
+            }
+            if (pos == expStart) {
+                pos = start;
+                return false;
+            }
+        }
+        if (!exponent) {
+            value = AnotoLogScanner.decimalToFloat(mantissa, nDigit, nFrac, negative);
+            if (!Float.isNaN(value)) {
+                return true;
+            }
+        }
+        value = Float.parseFloat(data.substring(start, pos));
+        return true;
+    }
+
+    /** x co-ordinates of the decoded points */
+    public float    x[];
+    /** y co-ordinates of the decoded points */
+    public float    y[];
+    /** number of decoded points */
+    public int      n;
+    /** moments of the x co-ordinates decoded */
+    public Moments  xMoments;
+    /** moments of the y co-ordinates decoded */
+    public Moments  yMoments;
+
+    /** the path data being decoded */
+    String          data;
+    /** position of the next character of <i>data</i> */
+    int             pos;
+    /** length of <i>data</i> */
+    int             len;
+    /** value of the most recently read number */
+    float           value;
+}
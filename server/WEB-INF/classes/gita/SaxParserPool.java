@@ -0,0 +1,153 @@
+/*
+ * SaxParserPool.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xml.sax.XMLReader;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.apache.xerces.parsers.SAXParser;
+
+/**
+ * A pool of configured Xerces SAX parsers, shared by <i>SvgStrokeParser</i> and <i>GitaGrammar</i>.
+ * Building a Xerces parser, and warming up its symbol tables, costs more than parsing a small svg
+ * upload, so parsers are kept and reused from one document to the next.
+ *<p>
+ * <i>acquire()</i> hands out an idle parser, or builds a fresh one if there are none, with the
+ * features gita wants already set. <i>release()</i> hands it back. A Xerces parser resets itself at
+ * the start of each parse, so all that is done on release is to drop the handlers. At most
+ * <i>maxSize</i> idle parsers are kept; any more released are left to the garbage collector.
+ *<p>
+ * Everything here is thread safe, and the counts of hits (reused parsers) and misses (new parsers)
+ * are kept so the pool size can be tuned.
+ *
+ * @see SvgStrokeParser
+ * @see GitaGrammar
+ * @author dak
+ * @since you asked
+ */
+public class SaxParserPool
+{
+    /** default number of idle parsers kept */
+    public static final int DEFAULT_SIZE = 8;
+
+    /**
+     * get a parser, with the given handlers attached
+     *
+     * @param handler content handler for the parse
+     * @param errorHandler error handler for the parse
+     * @return a parser ready for use
+     */
+    public static XMLReader acquire(ContentHandler handler, ErrorHandler errorHandler)
+    {
+        XMLReader   xr = idle.poll();
+        if (xr != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            xr = newParser();
+        }
+        xr.setContentHandler(handler);
+        xr.setErrorHandler(errorHandler);
+        return xr;
+    }
+
+    /**
+     * give a parser back to the pool, once a parse is finished
+     *
+     * @param xr a parser from <i>acquire()</i>
+     */
+    public static void release(XMLReader xr)
+    {
+        if (xr == null) {
+            return;
+        }
+        xr.setContentHandler(null);
+        xr.setErrorHandler(null);
+        idle.offer(xr);
+    }
+
+    /**
+     * sets the number of idle parsers that will be kept. Any currently idle are dropped.
+     *
+     * @param n the new maximum number of idle parsers
+     */
+    public static void setMaxSize(int n)
+    {
+        if (n < 1) {
+            n = 1;
+        }
+        maxSize = n;
+        idle = new ArrayBlockingQueue<XMLReader>(n);
+    }
+
+    /**
+     * @return the maximum number of idle parsers kept
+     */
+    public static int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of parsers currently idle in the pool
+     */
+    public static int size()
+    {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of times a pooled parser has been reused
+     */
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of times a new parser has had to be built
+     */
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return a one line summary of the pool, for diagnostic output
+     */
+    public static String stats()
+    {
+        return "sax parser pool: "+size()+"/"+maxSize+" idle, "+getHits()+" hits, "+getMisses()+" misses";
+    }
+
+    /**
+     * builds and configures a new parser.
+     */
+    static XMLReader newParser()
+    {
+        XMLReader   xr = new SAXParser();
+        try {
+            xr.setFeature("http://xml.org/sax/features/validation", false);
+            xr.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (SAXException e) {
+            ;
+        }
+        return xr;
+    }
+
+    /** maximum number of idle parsers kept */
+    static volatile int                             maxSize = DEFAULT_SIZE;
+    /** the idle parsers */
+    static volatile ArrayBlockingQueue<XMLReader>   idle = new ArrayBlockingQueue<XMLReader>(DEFAULT_SIZE);
+    /** number of times a pooled parser has been reused */
+    static final AtomicLong                         hits = new AtomicLong();
+    /** number of times a new parser has been built */
+    static final AtomicLong                         misses = new AtomicLong();
+}
@@ -33,7 +33,7 @@ public class SignaturEater
          */
         public KeypointNode()
         {
-            keys = new LinkedList();
+            keys = new LinkedList<>();
         }
 
         /**
@@ -116,6 +116,7 @@ public class SignatureContainer extends StrokeGroupInfo
             }
             try {
                 sig.CalculateFeatures(http);
+                sig.calculated = true;
                 if (s.bounds.left < signatureBounds.left) {
                     signatureBounds.left = s.bounds.left;
                 }
@@ -158,8 +159,7 @@ public class SignatureContainer extends StrokeGroupInfo
             Stroke s = group.get(i);
             if (s.info == null) {
                 http.printbr("<B>Removing stroke...</B>");
-                group.nStrokes--;
-                group.strokes.remove(i);
+                group.remove(i);
             }
         }
 /*
@@ -170,45 +170,49 @@ public class SignatureContainer extends StrokeGroupInfo
         for (Stroke s: group.strokes) {
                 // info is guaranteed set to a SignatureStroke by code at start of this method
             SignatureStroke sig = (SignatureStroke) s.info;
-            totalSamples += sig.lfData.length;
+            totalSamples += sig.lfData.n;
         }
-        uberSig = new SignatureSample[totalSamples];
+        uberTrace = new InkTrace(totalSamples);
+        uberKeypoint = new float[totalSamples];
         subStrokeUberOffset = new int[group.nStrokes];
         nSigSample = 0;
-        Point       prev = null;
+        float       prevX = 0;
+        float       prevY = 0;
         int         ssCnt = 0;
         for (Stroke s: group.strokes) {
-//            http.printbr("lf data "+s.sigStroke.lfData.length+", nsam "+s.nSample);
+//            http.printbr("lf data "+s.sigStroke.lfData.n+", nsam "+s.nSample);
             SignatureStroke sig = (SignatureStroke) s.info;
-            Point   p = sig.lfData[0];
+            InkTrace    lf = sig.lfData;
             boolean firstInserted = false;
-            for (int i=0; i<sig.lfData.length; i++) {
-                p = sig.lfData[i];
-                if (!p.equals(prev)) {  // just in case the data hasn't been filtered
-                    uberSig[nSigSample] = new SignatureSample(p);
+            for (int i=0; i<lf.n; i++) {
+                // just in case the data hasn't been filtered
+                if (nSigSample == 0 || lf.x[i] != prevX || lf.y[i] != prevY) {
+                    uberTrace.Add(lf, i);
                     if (!firstInserted) {
-                        uberSig[nSigSample].keypoint = 1;
+                        uberKeypoint[nSigSample] = 1;
                         subStrokeUberOffset[ssCnt++] = nSigSample;
                         firstInserted = true;
                     }
                     nSigSample++;
-                    prev = p;
+                    prevX = lf.x[i];
+                    prevY = lf.y[i];
                 }
             }
         }
 /*
  * work out the normalized arklength components
  */
-        sigdL = InkFilta.SegmentLengths(uberSig.length, uberSig);
+        sigdL = InkFilta.SegmentLengths(uberTrace);
         sigdL = InkFilta.NormalizeLengthVector(sigdL);
         float arklen = 0;
         float dl[] = new float[sigdL.length];
-        uberSig[0].arklen = 0;
+        uberArklen = new float[sigdL.length];
+        uberArklen[0] = 0;
         dl[0] = 0;
         for (int i=1; i<sigdL.length; i++) {
             arklen += sigdL[i];
             dl[i] = sigdL[i] + sigdL[i-1];
-            uberSig[i].arklen = arklen;
+            uberArklen[i] = arklen;
         }
 /*
  * calculate all the features for this uber beast...
@@ -216,7 +220,7 @@ public class SignatureContainer extends StrokeGroupInfo
  * significant spatial stuff will be encoded in the uber details
  */ 
         try {
-            sigTangle = InkFilta.DelTheta(uberSig.length, uberSig, false);
+            sigTangle = InkFilta.DelTheta(uberTrace, false);
             sigCos = new float[sigTangle.length];
             sigSin = new float[sigTangle.length];
             sigA = new float[sigTangle.length];
@@ -225,8 +229,8 @@ public class SignatureContainer extends StrokeGroupInfo
             segmentScore = new float[sigTangle.length];
             
             for (int i=0; i<sigTangle.length; i++) {
-                sigCos[i] = (float)Math.cos(sigTangle[i]);
-                sigSin[i] = (float)Math.sin(sigTangle[i]);
+                sigCos[i] = Trigga.Cos(sigTangle[i]);
+                sigSin[i] = Trigga.Sin(sigTangle[i]);
                 sigA[i] = sigdL[i] * sigCos[i];
                 sigB[i] = sigdL[i] * sigSin[i];
                 segmentScore[i] = (float) Math.abs(sigTangle[i]/Math.PI);
@@ -424,12 +428,16 @@ public class SignatureContainer extends StrokeGroupInfo
     /** composite bounding box for the signature as a whole. the union of all the bounding boxes of composing strokes */
     Rectangle           signatureBounds = null; 
     
-    /** total number of samples contained in the signature <= uberSig.length */
+    /** total number of samples contained in the signature, the same as uberTrace.n */
     int                 nSigSample = 0;
     /** composite stroke for all constituent strokes in signature. i.e. their union */
-    SignatureSample[]   uberSig = null;
+    InkTrace            uberTrace = null;
+    /** keypoint rating of each sample of the uber-stroke. the first sample of each component stroke is rated 1 */
+    float[]             uberKeypoint = null;
+    /** normalised arc length to each sample of the uber-stroke */
+    float[]             uberArklen = null;
     /** index of all component strokes within the signature uber-stroke */
-    int                 subStrokeUberOffset[] = null;   // index of composing strokes in the uberSig
+    int                 subStrokeUberOffset[] = null;   // index of composing strokes in the uberTrace
     /** lengths of segments in a (theta,dL) representation of the composite signature */
     float[]             sigdL = null; 
     /** tangent angle in a (theta,dL) representation of the composite signature */
@@ -48,25 +48,20 @@ public class SignatureStroke extends StrokeCurveInfo
      */
     public void CalculateFeatures(HTMLwriter http) throws Cow
     {
-        // length filter data to eliminate degeneracy
-        dL = InkFilta.SegmentLengths(stroke.nSample, stroke.sample); 
-        http.print("doing a bit of squeezing from "+dL.length);
-        lfData = InkFilta.ShortStrokeFilter(
-                                            (float)1.0,
-                                            stroke.nSample,
-                                            stroke.sample,
-                                            dL);
-        http.printbr(" to "+ lfData.length);
-        // convert (x,y) to (dTheta, dL)
-        dL = InkFilta.SegmentLengths(lfData.length, lfData);
-        dL = InkFilta.NormalizeLengthVector(dL);
+        // length filter data to eliminate degeneracy, and convert (x,y) to (dTheta, dL). these are
+        // shared with the cache of the stroke
+        StrokeCache.Filtered    f = stroke.Derived().Chain((float)1.0);
+        http.print("doing a bit of squeezing from "+stroke.nSample);
+        lfData = f.lengthFiltered;
+        http.printbr(" to "+ lfData.n);
+        dL = InkFilta.NormalizeLengthVector(f.lfLengths);
         float len = 0;
         arcLen = new float[dL.length];
         for (int i=0; i<dL.length; i++) {
             len += dL[i];
             arcLen[i] = len;
         }
-        tangle = InkFilta.DelTheta(lfData.length, lfData, false);
+        tangle = f.lfTangles;
         // calculate 1st derivative dTheta/dL
         dTangledL = InkFilta.DyDx(tangle, dL);
     }
@@ -77,6 +72,6 @@ public class SignatureStroke extends StrokeCurveInfo
     Point       groupRelativeMean = null;
     /** vector of relative arc lengths for each sample in the stroke */
     float[]     arcLen = null;
-    /** the length filtered form of the InkSample data of the stroke */
-    InkSample[] lfData = null;
+    /** the length filtered form of the sample data of the stroke */
+    InkTrace    lfData = null;
 }
@@ -29,7 +29,7 @@ import zone.Rectangle;
  * @see StrokeGroup
  * @see Symbol
  */
-public class Stroke
+public class Stroke implements Analysable
 {
     /**
      * Creates a new instance of Stroke. It defaults to a <i>penColor</i> of black, and <i>type</i> of
@@ -48,17 +48,91 @@ public class Stroke
         
         info = null;
         group = null;
+        region = null;
     }
     
     /**
-     * Re-allocates the array of sample points for the stroke. Sample count is set to 0.
+     * Re-allocates the sample data for the stroke. Sample count is set to 0.
      *
      * @param maxSample the new length of the sample data.
      */
     public void SetMax(int maxSample)
     {
-        sample = new InkSample[maxSample];
+        trace = new InkTrace(maxSample);
+        sample = null;
         nSample = 0;
+        Changed();
+    }
+    
+    /**
+     * Appends a sample to the stroke
+     *
+     * @param x x co-ordinate
+     * @param y y co-ordinate
+     */
+    public void Add(float x, float y)
+    {
+        trace.Add(x, y);
+        nSample = trace.n;
+        Changed();
+    }
+    
+    /**
+     * Sets the sample data of the stroke to the given trace
+     *
+     * @param t the trace
+     */
+    public void SetTrace(InkTrace t)
+    {
+        trace = t;
+        sample = null;
+        nSample = t.n;
+        Changed();
+    }
+    
+    /**
+     * Throws away everything worked out from the samples, when they change: the cache of derived
+     * forms, and the bounds, mean, centroid and moments, which are worked out again when next needed
+     */
+    void Changed()
+    {
+        derived = null;
+        bounds = null;
+        centroid = null;
+        mean = null;
+        xMoments = null;
+        yMoments = null;
+    }
+    
+    /**
+     * Returns the cache of derived forms of the sample data, such as filtered traces, lengths and
+     * angles, which is made the first time it's asked for. Changing the samples throws it away.
+     *
+     * @return the cache for this stroke
+     * @see StrokeCache
+     */
+    public synchronized StrokeCache Derived()
+    {
+        if (derived == null) {
+            derived = new StrokeCache(this);
+        }
+        return derived;
+    }
+    
+    /**
+     * Returns the sample data as an array of InkSample, for code that still deals in those. The array is
+     * made from <i>trace</i> the first time it's asked for, and kept.
+     *
+     * @return an array of <i>nSample</i> InkSample
+     */
+    public InkSample[] Samples()
+    {
+        InkSample[] s = sample;
+        if (s == null || s.length != nSample) {
+            s = trace != null? trace.ToSamples(): new InkSample[0];
+            sample = s;
+        }
+        return s;
     }
     
     /**
@@ -67,10 +141,7 @@ public class Stroke
      */
     public PathDataAttribute PathData()
     {
-        if (nSample == sample.length) {
-            return new PathDataAttribute(sample);
-        }
-        return PathData(nSample, sample);
+        return new PathDataAttribute(Samples());
     }
     
     /**
@@ -178,7 +249,8 @@ public class Stroke
     
     /**
      * Perform the non standard feature calculations using virtuals provided by instantiations of the
-     * <i>StrokeInfo</i> abstract class. The values are set in the StrokeInfo structure
+     * <i>StrokeInfo</i> abstract class. The values are set in the StrokeInfo structure. If the stroke
+     * contains a group, the features of the group are calculated too, unless they already have been
      *
      * @param http a wrapper for html output to the relevant ouput page
      */
@@ -197,6 +269,7 @@ public class Stroke
                     info = new StrokeAlysis(this);
                 }
                 info.CalculateFeatures(http);
+                info.calculated = true;
                 break;
             }
             
@@ -206,12 +279,13 @@ public class Stroke
                     info = new VanillaStrokeInfo(this);
                 }
                 info.CalculateFeatures(http);
+                info.calculated = true;
                 break;
             }
         }
         
-        if (group != null) {
-            group.CalculateFeatures(http);
+        if (group != null) {    // unless the page has already done it
+            group.CalculateFeaturesOnce(http);
         } else {
             
         }
@@ -219,44 +293,46 @@ public class Stroke
     
     /**
      * Perform the standard feature calculations common to all strokes: bound, mean, and centroid. The values
-     * are set in the corresponding class variables
+     * are set in the corresponding class variables. The moments of the co-ordinates are gathered in the
+     * same pass, and kept in <i>xMoments</i> and <i>yMoments</i>. A very long stroke has them gathered
+     * in chunks, in parallel, by <i>Moments.Of()</i>
      */
     public void CalculateBounds()
     {
-        float           sumX = 0;
-        float           sumY = 0;
-        float           minX = 0,
-                        minY = 0,
-                        maxX = 0,
-                        maxY = 0;
+        Moments     mx = new Moments();
+        Moments     my = new Moments();
         
         if (nSample > 0) {
-             minX = maxX = sample[0].x;
-             minY = maxY = sample[0].y;
+            mx = Moments.Of(trace.x, 0, nSample);
+            my = Moments.Of(trace.y, 0, nSample);
         }
-        
-        for (int i=0; i<nSample; i++) {
-            float   x = sample[i].x;
-            float   y = sample[i].y;
-            
-            sumX += x;
-            sumY += y;
+        SetBounds(mx, my);
+    }
+    
+    /**
+     * Sets the bound, mean, and centroid of the stroke from the moments of its co-ordinates, gathered
+     * elsewhere, eg. while the stroke was being parsed. The moments are kept in <i>xMoments</i> and
+     * <i>yMoments</i>, so they needn't be gathered again.
+     *
+     * @param mx moments of the x co-ordinates of the samples
+     * @param my moments of the y co-ordinates of the samples
+     */
+    public void SetBounds(Moments mx, Moments my)
+    {
+        if (mx.Count() > 0) {
+            float medX = (mx.Max() + mx.Min())/2;
+            float medY = (my.Max() + my.Min())/2;
             
-            if (x < minX) minX = x;
-            if (x > maxX) maxX = x;
-            if (y < minY) minY = y;
-            if (y > maxY) maxY = y;
+            bounds = new Rectangle(mx.Min(), my.Min(), mx.Max(), my.Max());
+            centroid = new Point(medX, medY);
+            mean = new Point((float)mx.Mean(), (float)my.Mean());
+        } else {
+            bounds = new Rectangle(0, 0, 0, 0);
+            centroid = new Point(0, 0);
+            mean = new Point(Float.NaN, Float.NaN);
         }
-        
-        float meanX = sumX/nSample;
-        float meanY = sumY/nSample;
-        
-        float medX = (maxX + minX)/2;
-        float medY = (maxY + minY)/2;
-        
-        bounds = new Rectangle(minX, minY, maxX, maxY);
-        centroid = new Point(medX, medY);
-        mean = new Point(meanX, meanY);
+        xMoments = mx;
+        yMoments = my;
     }
     
     /**
@@ -317,20 +393,30 @@ public class Stroke
     /** The pen width with which to stroke the stroke */
     public float           penWidth;
 
-    /** The number of actual points constituting the stroke. This may be shorter than sample.length */
+    /** The number of actual points constituting the stroke, always the same as trace.n */
     public int             nSample;
-    /** The actual point data for the stroke */
-    public InkSample       sample[] = null;
+    /** The actual point data for the stroke, packed into parallel arrays */
+    public InkTrace        trace = null;
+    /** The point data as an array of InkSample, made from <i>trace</i> when asked for by <i>Samples()</i>, otherwise null */
+    InkSample              sample[] = null;
+    /** Derived forms of the sample data, made when asked for by <i>Derived()</i>, otherwise null */
+    StrokeCache            derived = null;
 
     /** String name for this stroke: the id attribute of the corresponding svg path */
     public String          id;
+    /** Number of this stroke in the <i>StrokeTable</i> of its page, or -1 if it isn't in one yet */
+    public int             number = -1;
 
-    /** The bounding box of the stroke, the extreme values of the point data in <i>sample</i> */
+    /** The bounding box of the stroke, the extreme values of the point data in <i>trace</i> */
     public Rectangle       bounds=null;
     /** The centre point of the bounding box of the stroke */
     public Point           centroid=null;
-    /** The mean values of the point values of <i>sample</i>. Note that this is different to <i>centroid</i> */
+    /** The mean values of the point values of <i>trace</i>. Note that this is different to <i>centroid</i> */
     public Point           mean=null;
+    /** The moments of the x co-ordinates of <i>trace</i>, or null if they haven't been gathered by <i>CalculateBounds()</i> */
+    public Moments         xMoments=null;
+    /** The moments of the y co-ordinates of <i>trace</i>, or null if they haven't been gathered by <i>CalculateBounds()</i> */
+    public Moments         yMoments=null;
 
     /**
      * Set to a <i>StrokeGroup</i> structure if this stroke is a container for other strokes, otherwise null
@@ -341,6 +427,12 @@ public class Stroke
      * The <i>StrokeInfo</i> structure of this stroke. It may be of several kinds, depending on the value of <i>type</i>
      */
     public StrokeInfo      info = null;
+    
+    /**
+     * The active region of the paper that the stroke starts in, such as a form field or command box,
+     * or null if it is made on the open page
+     */
+    public ActiveRegion    region = null;
 //    SignatureStroke sigStroke = null;
 //    StrokeAlysis    sally = null;
 }
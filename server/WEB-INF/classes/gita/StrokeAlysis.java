@@ -12,6 +12,7 @@ import zone.HTMLwriter;
 import zone.Point;
 import java.lang.Math;
 import java.lang.Float;
+import java.util.EnumSet;
 import java.util.LinkedList;
 
 /**
@@ -36,8 +37,139 @@ public class StrokeAlysis extends StrokeInfo
     public StrokeAlysis(Stroke s)
     {
         super(s);
+        resampleMode = defaultResampleMode;
+        straightenMode = defaultStraightenMode;
+        features = defaultFeatures.clone();
+        if (calculateTransforms) {
+            features.add(Feature.Transforms);
+        }
+    }
+    
+    /**
+     * Creates a new instance of StrokeAlysis that only works out some of the features
+     *
+     * @param s Stroke to analyse. This is a reference, and not a copy.
+     * @param features the groups of features for <i>CalculateFeatures()</i> to work out
+     */
+    public StrokeAlysis(Stroke s, EnumSet<Feature> features)
+    {
+        this(s);
+        this.features = features.clone();
+    }
+    
+    /** the ways of resampling the contour into equal segments */
+    public enum ResampleMode {
+        /** equal chords, found by <i>InkFilta.DaEqualizaFilta</i> */
+        Equaliza,
+        /** equal lengths of path, by <i>InkFilta.ArcLengthResample</i> */
+        ArcLength,
+        /** a fixed number of points equally spaced along the path, <i>Tolerance.contourResamplePoints</i> of them, by <i>InkFilta.ArcLengthResampleCount</i> */
+        ArcLengthCount
+    }
+    
+    /**
+     * maps the name of a resampling mode, as given in an init parameter, onto a ResampleMode
+     *
+     * @param s "equaliza", "arclength", or "arclength-count"
+     * @return the mode, or null if the name isn't known
+     */
+    public static ResampleMode resampleModeOf(String s)
+    {
+        if (s.equals("equaliza")) {
+            return ResampleMode.Equaliza;
+        } else if (s.equals("arclength")) {
+            return ResampleMode.ArcLength;
+        } else if (s.equals("arclength-count")) {
+            return ResampleMode.ArcLengthCount;
+        }
+        return null;
+    }
+    
+    /** the ways of straightening the length filtered contour */
+    public enum StraightenMode {
+        /** dropping points where the contour turns by less than an angle, by <i>InkFilta.LineStraighteningFilter</i> */
+        Angle,
+        /** dropping points within a distance of the path, by <i>InkFilta.DouglasPeuckerFilter</i> */
+        DouglasPeucker,
+        /** dropping points that make triangles of small area with their neighbours, by <i>InkFilta.VisvalingamFilter</i> */
+        Visvalingam
+    }
+    
+    /**
+     * maps the name of a straightening mode, as given in an init parameter, onto a StraightenMode
+     *
+     * @param s "angle", "douglas-peucker", or "visvalingam"
+     * @return the mode, or null if the name isn't known
+     */
+    public static StraightenMode straightenModeOf(String s)
+    {
+        if (s.equals("angle")) {
+            return StraightenMode.Angle;
+        } else if (s.equals("douglas-peucker")) {
+            return StraightenMode.DouglasPeucker;
+        } else if (s.equals("visvalingam")) {
+            return StraightenMode.Visvalingam;
+        }
+        return null;
+    }
+    
+    /**
+     * The groups of features that <i>CalculateFeatures()</i> can work out. Each is worked out after
+     * the groups it needs, so asking for one gets everything it depends on as well, and nothing else.
+     */
+    public enum Feature {
+        /** the bounding box, its diagonal, and the distance from start to end */
+        Bounds,
+        /** variance, skew and kurtosis of the sample positions */
+        Moments(Bounds),
+        /** densities and diagonals of the boxes about the mean */
+        Densities(Moments),
+        /** the length filtered contour, with its angles and curvature */
+        LengthFiltered(Bounds),
+        /** the straightened contour, with its angles and curvature */
+        Straightened(LengthFiltered),
+        /** the contour resampled in equal segments, with its angles */
+        Equalised(Bounds),
+        /** fourier transforms of the angles of the equalised and straightened contours */
+        Transforms(Equalised, Straightened);
+        
+        Feature(Feature... needs)
+        {
+            this.needs = needs;
+        }
+        
+        /** the groups this one is worked out from */
+        final Feature[] needs;
     }
     
+    /**
+     * maps a list of names of groups of features, as given in an init parameter, onto a set of them
+     *
+     * @param s names of features separated by commas, as in the Feature enum but in any case, or "all"
+     * @return the features, or null if any name isn't known
+     */
+    public static EnumSet<Feature> featuresOf(String s)
+    {
+        EnumSet<Feature>    f = EnumSet.noneOf(Feature.class);
+        for (String name: s.split(",")) {
+            name = name.trim();
+            if (name.equalsIgnoreCase("all")) {
+                f.addAll(EnumSet.allOf(Feature.class));
+                continue;
+            }
+            Feature     g = null;
+            for (Feature h: Feature.values()) {
+                if (h.name().equalsIgnoreCase(name)) {
+                    g = h;
+                }
+            }
+            if (g == null) {
+                return null;
+            }
+            f.add(g);
+        }
+        return f;
+    }
 
     
 /////////////////////////////////////////
@@ -54,80 +186,148 @@ public class StrokeAlysis extends StrokeInfo
      */
     public void CalculateTheta(int n, InkSample d[]) throws Cow
     {
+        CalculateTheta(new InkTrace(n, d));
+    }
+    
+    /**
+     * calculates the vector of tangent angles necessary for a (theta,dl) representation of the stroke,
+     * as above, from a trace. The results are left in the members above, which none of the groups of
+     * features use: they each keep their own.
+     *
+     * @param d the trace of the stroke, or of some filtered form of it
+     * @throws Cow
+     */
+    public void CalculateTheta(InkTrace d) throws Cow
+    {
+        Angles  a = new Angles();
+        try {
+            CalculateAngles(d, a);
+        } finally {
+            if (a.theta != null) {
+                dyDx = a.dyDx;
+                d2yDx2 = a.d2yDx2;
+                tanThetaDiff = a.tanThetaDiff;
+                theta = a.theta;
+                cumTheta = a.cumTheta;
+                cumModTheta = a.cumModTheta;
+                cumTheta2 = a.cumTheta2;
+                cumTheta2deg = a.cumTheta2deg;
+            }
+        }
+    }
+    
+    /**
+     * The (theta,dl) representation of one form of a stroke, as worked out by <i>CalculateAngles()</i>
+     */
+    public static class Angles
+    {
+        /** conventional derivative of contour */
+        public float    dyDx[] = null;
+        /** conventional second derivative of contour */
+        public float    d2yDx2[] = null;
+        /** tan of the tangent angle */
+        public float    tanThetaDiff[] = null;
+        /** vector of tangent angles */
+        public float    theta[] = null;
+        /** vector of the cumulative tangent angle */
+        public float    cumTheta[] = null;
+        /** vector of the cumulative absolute value of tangent angle */
+        public float    cumModTheta[] = null;
+        /** vector of the cumulative square of the tangent angle */
+        public float    cumTheta2[] = null;
+        /** vector of the cumulative square of the tangent angle, measured in degrees */
+        public float    cumTheta2deg[] = null;
+    }
+    
+    /**
+     * calculates the tangent angles of a trace, and the rest of its (theta,dl) representation, into
+     * the given structure. Its arrays are allocated before any Cow is thrown for a trace too short
+     * to have angles.
+     *
+     * @param d the trace of the stroke, or of some filtered form of it
+     * @param a where to put the results
+     * @throws Cow
+     */
+    void CalculateAngles(InkTrace d, Angles a) throws Cow
+    {
+        int         n = d.n;
+        float[]     xs = d.x;
+        float[]     ys = d.y;
         if (n <= 0) {
             throw new Cow("StrokeAlysis::CalculateFeature(): zero samples in input");
         }
-        dyDx = new float[n];
-        d2yDx2 = new float[n];
-        tanThetaDiff = new float[n];
-        theta = new float[n];
-        cumTheta = new float[n];
-        cumModTheta = new float[n];
-        cumTheta2 = new float[n];
-        cumTheta2deg = new float[n];
+        a.dyDx = new float[n];
+        a.d2yDx2 = new float[n];
+        a.tanThetaDiff = new float[n];
+        a.theta = new float[n];
+        a.cumTheta = new float[n];
+        a.cumModTheta = new float[n];
+        a.cumTheta2 = new float[n];
+        a.cumTheta2deg = new float[n];
         
         if (n > 2) {
-            d2yDx2[0] = Float.NaN;
-            d2yDx2[1] = Float.NaN;
+            a.d2yDx2[0] = Float.NaN;
+            a.d2yDx2[1] = Float.NaN;
         }
             
-        dyDx[0] = Float.NaN;
+        a.dyDx[0] = Float.NaN;
 
-        tanThetaDiff[0] = Float.NaN;
-        theta[0] = Float.NaN;
-        cumTheta[0] = cumModTheta[0] = cumTheta2[0] = cumTheta2deg[0] = 0;
+        a.tanThetaDiff[0] = Float.NaN;
+        a.theta[0] = Float.NaN;
+        a.cumTheta[0] = a.cumModTheta[0] = a.cumTheta2[0] = a.cumTheta2deg[0] = 0;
         if (n <= 1) {   // should return something
             throw new Cow("no angles");
         }
-        tanThetaDiff[1] = Float.NaN;
-        theta[1] = Float.NaN;
-        cumTheta[1] = cumModTheta[1] = cumTheta2[1] = cumTheta2deg[1] = 0;
+        a.tanThetaDiff[1] = Float.NaN;
+        a.theta[1] = Float.NaN;
+        a.cumTheta[1] = a.cumModTheta[1] = a.cumTheta2[1] = a.cumTheta2deg[1] = 0;
 
-        float   lX = d[0].x;
-        float   lY = d[0].y;
+        float   lX = xs[0];
+        float   lY = ys[0];
         float   ldX = 0;
         float   ldY = 0;
         
         boolean closedPath = false;
         boolean forceClosed = false;
         
-        if (forceClosed || d[n-1].equals(stroke.sample[0])) {
+// the InkSample form compared the samples as objects, so this only ever held when forced, as in DelTheta
+        if (forceClosed) {
             closedPath = true;
 
-            ldX = d[n-1].x - d[n-2].x;
-            ldY = d[n-1].y - d[n-2].y;
+            ldX = xs[n-1] - xs[n-2];
+            ldY = ys[n-1] - ys[n-2];
         }
         
         for (int i=1; i<n; i++) {
-            float   x = d[i].x;
-            float   y = d[i].y;
+            float   x = xs[i];
+            float   y = ys[i];
             float   dX = x - lX;
             float   dY = y - lY;
 
             if (dX == 0) {
                 if (dY == 0) {
-                    dyDx[i] = 0; //dyDx[i-1];
-                    d2yDx2[i] = 0; //d2yDx2[i-1];
-                    tanThetaDiff[i] = 0;
-                    theta[i] = 0;
+                    a.dyDx[i] = 0; //a.dyDx[i-1];
+                    a.d2yDx2[i] = 0; //a.d2yDx2[i-1];
+                    a.tanThetaDiff[i] = 0;
+                    a.theta[i] = 0;
                 } else {
                     if (y>lY) {
-                        dyDx[i] = Float.POSITIVE_INFINITY;
+                        a.dyDx[i] = Float.POSITIVE_INFINITY;
                     } else {
-                        dyDx[i] = Float.NEGATIVE_INFINITY;
+                        a.dyDx[i] = Float.NEGATIVE_INFINITY;
                     }
-                    if (dyDx[i] == dyDx[i-1]) {
-                        d2yDx2[i] = 0; //d2yDx2[i-1];
-                    } else if (dyDx[i] > dyDx[i-1]) {
-                        d2yDx2[i] = Float.POSITIVE_INFINITY;
+                    if (a.dyDx[i] == a.dyDx[i-1]) {
+                        a.d2yDx2[i] = 0; //a.d2yDx2[i-1];
+                    } else if (a.dyDx[i] > a.dyDx[i-1]) {
+                        a.d2yDx2[i] = Float.POSITIVE_INFINITY;
                     } else {
-                        d2yDx2[i] = Float.NEGATIVE_INFINITY;
+                        a.d2yDx2[i] = Float.NEGATIVE_INFINITY;
                     }
                 }
             } else {
-                dyDx[i] = (y-lY)/(x-lX);
-                if (i > 1 && d2yDx2 != null) {
-                    d2yDx2[i] = (dyDx[i]-dyDx[i-1])/(x-lX);
+                a.dyDx[i] = (y-lY)/(x-lX);
+                if (i > 1 && a.d2yDx2 != null) {
+                    a.d2yDx2[i] = (a.dyDx[i]-a.dyDx[i-1])/(x-lX);
                 }
             }
 
@@ -135,33 +335,37 @@ public class StrokeAlysis extends StrokeInfo
             float   tanominator = dX*ldX + dY*ldY;
             if (tanominator == 0) {
                 if (tanumerator < 0) {
-                    tanThetaDiff[i] = Float.NEGATIVE_INFINITY;
-                    theta[i] = - (float) Math.PI/2;
+                    a.tanThetaDiff[i] = Float.NEGATIVE_INFINITY;
+                    a.theta[i] = - (float) Math.PI/2;
                 } else if (tanumerator > 0) {
-                    tanThetaDiff[i] = Float.POSITIVE_INFINITY;
-                    theta[i] = (float) Math.PI/2;
+                    a.tanThetaDiff[i] = Float.POSITIVE_INFINITY;
+                    a.theta[i] = (float) Math.PI/2;
                 } else {
-                    tanThetaDiff[i] = 0;
-                    theta[i] = 0;
+                    a.tanThetaDiff[i] = 0;
+                    a.theta[i] = 0;
                 }
             } else {
-                tanThetaDiff[i] = (dY*ldX - ldY*dX)/(dX*ldX + dY*ldY);
-                theta[i] = (float)Math.atan(tanThetaDiff[i]);
-//    http.printbr("tan "+i+" "+tanThetaDiff[i]+" "+thetaDiff[i]+" "+tanumerator+" "+tanominator);
-                if (tanThetaDiff[i] < 0) {
-                    if (tanumerator > 0) {
-                        theta[i] += Math.PI;
-                    }
+                a.tanThetaDiff[i] = (dY*ldX - ldY*dX)/(dX*ldX + dY*ldY);
+                if (Tolerance.fastTrig) {
+                    a.theta[i] = Trigga.Tangle(tanumerator, tanominator);
                 } else {
-                    if (tanumerator < 0) {
-                        theta[i] -= Math.PI;
+                    a.theta[i] = (float)Math.atan(a.tanThetaDiff[i]);
+//    http.printbr("tan "+i+" "+a.tanThetaDiff[i]+" "+thetaDiff[i]+" "+tanumerator+" "+tanominator);
+                    if (a.tanThetaDiff[i] < 0) {
+                        if (tanumerator > 0) {
+                            a.theta[i] += Math.PI;
+                        }
+                    } else {
+                        if (tanumerator < 0) {
+                            a.theta[i] -= Math.PI;
+                        }
                     }
                 }
             }
-            cumTheta[i] = theta[i] + cumTheta[i-1];
-            cumModTheta[i] = (float)Math.abs(theta[i]) + cumModTheta[i-1];
-            cumTheta2[i] = theta[i]*theta[i] + cumTheta2[i-1];
-            cumTheta2deg[i] = theta[i]*theta[i]*((float)(180*180/(Math.PI*Math.PI))) + cumTheta2deg[i-1];
+            a.cumTheta[i] = a.theta[i] + a.cumTheta[i-1];
+            a.cumModTheta[i] = Math.abs(a.theta[i]) + a.cumModTheta[i-1];
+            a.cumTheta2[i] = a.theta[i]*a.theta[i] + a.cumTheta2[i-1];
+            a.cumTheta2deg[i] = a.theta[i]*a.theta[i]*((float)(180*180/(Math.PI*Math.PI))) + a.cumTheta2deg[i-1];
 
             ldX = dX;
             ldY = dY;
@@ -204,55 +408,56 @@ public class StrokeAlysis extends StrokeInfo
      * displays the rows of theta based features of this analysis as row data in a html table
      *
      * @param http the web page to display on.
+     * @param a the angles to display
      */
-    public void DisplayThetaFeatureRows(HTMLwriter http)
+    public void DisplayThetaFeatureRows(HTMLwriter http, Angles a)
     {
         http.tablerow();
 
         http.tabledata();
         http.print("tan(theta)");
         http.tabledata();
-        for (int i=1; i<tanThetaDiff.length; i++) {
+        for (int i=1; i<a.tanThetaDiff.length; i++) {
             http.tabledata();
-            http.print(Float.toString(tanThetaDiff[i]));
+            http.print(Float.toString(a.tanThetaDiff[i]));
         }
 
         http.tablerow();
         http.tabledata();
         http.print("theta");
         http.tabledata();
-        for (int i=1; i<theta.length; i++) {
+        for (int i=1; i<a.theta.length; i++) {
             http.tabledata();
-            http.printbr(Float.toString(theta[i]));
-            http.print(Float.toString((float)(360*theta[i]/(2*Math.PI))));
+            http.printbr(Float.toString(a.theta[i]));
+            http.print(Float.toString((float)(360*a.theta[i]/(2*Math.PI))));
         }
 
         http.tablerow();
         http.tabledata();
         http.print("sigma(theta)");
         http.tabledata();
-        for (int i=1; i<cumTheta.length; i++) {
+        for (int i=1; i<a.cumTheta.length; i++) {
             http.tabledata();
-            http.print(Float.toString(cumTheta[i]));
+            http.print(Float.toString(a.cumTheta[i]));
         }
 
         http.tablerow();
         http.tabledata();
         http.print("sigma(|theta|)");
         http.tabledata();
-        for (int i=1; i<cumModTheta.length; i++) {
+        for (int i=1; i<a.cumModTheta.length; i++) {
             http.tabledata();
-            http.print(Float.toString(cumModTheta[i]));
+            http.print(Float.toString(a.cumModTheta[i]));
         }
 
         http.tablerow();
         http.tabledata();
         http.print("sigma(theta^2)");
         http.tabledata();
-        for (int i=1; i<cumTheta2.length; i++) {
+        for (int i=1; i<a.cumTheta2.length; i++) {
             http.tabledata();
-            http.printbr(Float.toString(cumTheta2[i]));
-            http.print(Float.toString(cumTheta2deg[i]));
+            http.printbr(Float.toString(a.cumTheta2[i]));
+            http.print(Float.toString(a.cumTheta2deg[i]));
         }
     }
     
@@ -260,26 +465,27 @@ public class StrokeAlysis extends StrokeInfo
      * displays the rows of derivative based features of this analysis as row data in a html table
      *
      * @param http the web page to display on.
+     * @param a the angles to display
      */
-    public void DisplayDerivativeFeatureRows(HTMLwriter http)
+    public void DisplayDerivativeFeatureRows(HTMLwriter http, Angles a)
     {
         http.tablerow();
         http.tabledata();
         http.print("dy/dx");
         http.tabledata();
-        for (int i=1; i<dyDx.length; i++) {
+        for (int i=1; i<a.dyDx.length; i++) {
             http.tabledata();
-            http.print(Float.toString(dyDx[i]));
+            http.print(Float.toString(a.dyDx[i]));
         }
-        if (d2yDx2.length > 2) {
+        if (a.d2yDx2.length > 2) {
             http.tablerow();
             http.tabledata();
             http.print("d2y/dx2");
             http.tabledata();
             http.tabledata();
-            for (int i=2; i<d2yDx2.length; i++) {
+            for (int i=2; i<a.d2yDx2.length; i++) {
                 http.tabledata();
-                http.print(Float.toString(d2yDx2[i]));
+                http.print(Float.toString(a.d2yDx2[i]));
             }
         }
     }
@@ -298,19 +504,35 @@ public class StrokeAlysis extends StrokeInfo
             InkSample d[],
             float la[])
     {
+        DisplaySampleRows(http, new InkTrace(n, d), la);
+    }
+    
+    /**
+     * Displays the positional data of a trace to a HTMLwriter as data in a html table
+     * @param http the HTMLwriter for output
+     * @param d the trace
+     * @param la the segment length data
+     * @see HTMLwriter
+     */
+    public void DisplaySampleRows(
+            HTMLwriter http,
+            InkTrace d,
+            float la[])
+    {
+        int     n = d.n;
         http.tablerow();
         http.tabledata();
         http.print("x");
         for (int i=0; i<n; i++) {
             http.tabledata();
-            http.print(Float.toString(d[i].x));
+            http.print(Float.toString(d.x[i]));
         }
         http.tablerow();
         http.tabledata();
         http.print("y");
         for (int i=0; i<n; i++) {
             http.tabledata();
-            http.print(Float.toString(d[i].y));
+            http.print(Float.toString(d.y[i]));
         }
         http.tablerow();
         http.tabledata();
@@ -324,7 +546,9 @@ public class StrokeAlysis extends StrokeInfo
     
     
     /**
-     * calculates the full range of features used to analyse a Stroke.
+     * calculates the features used to analyse a Stroke, in the groups named by <i>features</i>,
+     * each after the groups it is worked out from. Anything left out can still be had later, by
+     * <i>Require()</i>.
      * basic features include:
      * <ul>
      *     <li> bounding box
@@ -391,34 +615,156 @@ public class StrokeAlysis extends StrokeInfo
      * @see StrokeInfo
      * @see Furrier
      */
-    public void CalculateFeatures(HTMLwriter http)
+    public synchronized void CalculateFeatures(HTMLwriter http)
+    {
+        calculated.clear();
+        for (Feature f: features) {
+            Require(f, http);
+        }
+    }
+    
+    /**
+     * makes sure that a group of features has been calculated, calculating it and anything it depends
+     * on if it hasn't, without diagnostic output
+     *
+     * @param f the group of features wanted
+     * @return this, so that the features can be read straight off
+     */
+    public StrokeAlysis Require(Feature f)
+    {
+        return Require(f, null);
+    }
+    
+    /**
+     * makes sure that a group of features has been calculated, as above
+     *
+     * @param f the group of features wanted
+     * @param http a HTMLwriter to use for diagnostic output, or null
+     * @return this
+     */
+    public synchronized StrokeAlysis Require(Feature f, HTMLwriter http)
+    {
+        if (calculated.contains(f)) {
+            return this;
+        }
+        for (Feature g: f.needs) {
+            Require(g, http);
+        }
+        switch (f) {
+            case Bounds:
+                CalculateBoxFeatures(http);
+                break;
+            case Moments:
+                CalculateMoments(http);
+                break;
+            case Densities:
+                CalculateDensities(http);
+                break;
+            case LengthFiltered:
+                CalculateLengthFiltered(http);
+                break;
+            case Straightened:
+                CalculateStraightened(http);
+                break;
+            case Equalised:
+                CalculateEqualised(http);
+                break;
+            case Transforms:
+                CalculateTransforms(http);
+                break;
+        }
+        calculated.add(f);
+        return this;
+    }
+    
+    /**
+     * @param f a group of features
+     * @return true if it has been calculated
+     */
+    public synchronized boolean Calculated(Feature f)
+    {
+        return calculated.contains(f);
+    }
+    
+    /**
+     * calculates the features of the bounding box, and the distance from start to end
+     */
+    void CalculateBoxFeatures(HTMLwriter http)
     {
-// basic statistical analysis
-        float           sum2X = 0;
-        float           sum2Y = 0;
-        
         if (stroke.bounds == null || stroke.mean == null || stroke.centroid == null) {
             stroke.CalculateBounds();
         }
 
-        for (int i=0; i<stroke.nSample; i++) {
-            float   x = stroke.sample[i].x;
-            float   y = stroke.sample[i].y;
-            sum2X += x*x;
-            sum2Y += y*y;
-        }
-        
-        float meanX = stroke.mean.x;
-        float meanY = stroke.mean.y;
+        float[]         xs = stroke.trace.x;
+        float[]         ys = stroke.trace.y;
+        rawBoxDiagLen = stroke.bounds.diagLen();
+        rawBoxDiagAngle = stroke.bounds.diagAngleDeg();
         
-        varX = (sum2X/stroke.nSample) - (meanX*meanX);
-        varY = (sum2Y/stroke.nSample) - (meanY*meanY);
+        start2endLen = pointLen(
+                    xs[0],
+                    ys[0],
+                    xs[stroke.nSample-1],
+                    ys[stroke.nSample-1]
+                    );
+        normStart2endLen = start2endLen/rawBoxDiagLen;
+
+        pathLength = 0;
+
+        if (http != null) {
+            if (stroke.id != null) {
+                    http.printbr("stroke: "+stroke.id);
+            }
+            http.printbr("bounds: "
+                    +stroke.bounds.left+", "+stroke.bounds.top+", "
+                    +stroke.bounds.right+", "+stroke.bounds.bottom);
+            http.printbr("centroid: "+stroke.centroid.x+", "+stroke.centroid.y);
+            http.printbr("mean: "+stroke.mean.x+", "+stroke.mean.y);
+            http.printbr("bound angle/length: "+rawBoxDiagAngle+" "+rawBoxDiagLen);
+            http.printbr("start to end length: "+start2endLen);
+            http.printbr("normalized start to end length: "+normStart2endLen);
+        }
+    }
+    
+    /**
+     * calculates the variance, skew and kurtosis of the sample positions about the mean
+     */
+    void CalculateMoments(HTMLwriter http)
+    {
+// the moments are gathered along with the bounds, in one pass
+        if (stroke.xMoments == null || stroke.yMoments == null) {
+            stroke.CalculateBounds();
+        }
+        Moments mx = stroke.xMoments;
+        Moments my = stroke.yMoments;
         
-        if (varX < 0) varX = 0;
-        if (varY < 0) varY = 0;
+        varX = (float) mx.Variance();
+        varY = (float) my.Variance();
         
         devX = (float) Math.sqrt(varX);
         devY = (float) Math.sqrt(varY);
+        
+// 3rd and 4th statistical moments, skew and kurtosis. these are the sums, rather than the means, of
+// the cubes and fourth powers over the powers of the deviation, as they always have been
+        skewX = (float) (mx.M3()/(devX*devX*devX));
+        skewY = (float) (my.M3()/(devY*devY*devY));
+        kurtX = (float) (mx.M4()/(devX*devX*devX*devX));
+        kurtY = (float) (my.M4()/(devY*devY*devY*devY));
+
+        if (http != null) {
+            http.printbr("deviation: "+devX+", "+devY);
+            http.printbr("length: "+pathLength); 
+            http.printbr("skew: "+skewX+", "+skewY);
+            http.printbr("kurtosis: "+kurtX+", "+kurtY);
+        }
+    }
+    
+    /**
+     * calculates the densities and diagonals of the boxes one and two deviations about the mean
+     */
+    void CalculateDensities(HTMLwriter http)
+    {
+        float meanX = stroke.mean.x;
+        float meanY = stroke.mean.y;
        
         Rectangle sigma1bounds = new Rectangle(
                                     meanX-devX, meanY-devY,
@@ -431,198 +777,213 @@ public class StrokeAlysis extends StrokeInfo
         densitySigma1 = pixelDensity(stroke.nSample, sigma1bounds);
         densitySigma2 = pixelDensity(stroke.nSample, sigma2bounds);
         
-        rawBoxDiagLen = stroke.bounds.diagLen();
         sigma1BoxDiagLen = sigma1bounds.diagLen();
         sigma2BoxDiagLen = sigma2bounds.diagLen();
     
-        rawBoxDiagAngle = stroke.bounds.diagAngleDeg();
         sigma1BoxDiagAngle = sigma1bounds.diagAngleDeg();
         sigma2BoxDiagAngle = sigma2bounds.diagAngleDeg();
-        
-        start2endLen = pointLen(
-                    stroke.sample[0].x,
-                    stroke.sample[0].y,
-                    stroke.sample[stroke.nSample-1].x,
-                    stroke.sample[stroke.nSample-1].y
-                    );
-        normStart2endLen = start2endLen/rawBoxDiagLen;
-
-        pathLength = 0;
-       
-        
-// calculate 3rd and 4th statistical moments, skew and kurtosis
-        float   sum3X = 0, sum3Y = 0, sum4X = 0, sum4Y = 0;
-        
-        for (int i=0; i<stroke.nSample; i++) {
-            float   x = stroke.sample[i].x;
-            float   y = stroke.sample[i].y;
-            
-            float dx = x - meanX;
-            float dy = y - meanY;
-            
-            sum3X += dx*dx*dx;
-            sum4X += dx*dx*dx*dx;
-            sum3Y += dy*dy*dy;
-            sum4Y += dy*dy*dy*dy;
-        }
-        
-        skewX = sum3X/(devX*devX*devX);
-        skewY = sum3Y/(devY*devY*devY);
-        kurtX = sum4X/(devX*devX*devX*devX);
-        kurtY = sum4Y/(devY*devY*devY*devY);
 
         if (http != null) {
-            if (stroke.id != null) {
-                    http.printbr("stroke: "+stroke.id);
-            }
-            http.printbr("bounds: "
-                    +stroke.bounds.left+", "+stroke.bounds.top+", "
-                    +stroke.bounds.right+", "+stroke.bounds.bottom);
-            http.printbr("centroid: "+stroke.centroid.x+", "+stroke.centroid.y);
-            http.printbr("mean: "+stroke.mean.x+", "+stroke.mean.y);
-            http.printbr("deviation: "+devX+", "+devY);
-            http.printbr("length: "+pathLength); 
-            http.printbr("skew: "+skewX+", "+skewY);
-            http.printbr("kurtosis: "+kurtX+", "+kurtY);
             http.printbr("density: "+density);
             http.printbr("sigma1 density: "+densitySigma1);
             http.printbr("sigma2 density: "+densitySigma2);
-            http.printbr("bound angle/length: "+rawBoxDiagAngle+" "+rawBoxDiagLen);
             http.printbr("sigma1 angle/length: "+sigma1BoxDiagAngle+" "+sigma1BoxDiagLen);
             http.printbr("sigma2 angle/length: "+sigma2BoxDiagAngle+" "+sigma2BoxDiagLen);
-            http.printbr("start to end length: "+start2endLen);
-            http.printbr("normalized start to end length: "+normStart2endLen);
         }
-
-        if (stroke.nSample > 1) {         
-            dL = InkFilta.SegmentLengths(stroke.nSample, stroke.sample);  
-            if (http != null && displayRawContourValues) {
-                http.table(1);
-                if (displaySampleValues) {
-                    DisplaySampleRows(http, stroke.nSample, stroke.sample, dL);
-                }
-                http.closetag();
+    }
+    
+    /**
+     * calculates the length filtered contour, with its angles and curvature
+     */
+    void CalculateLengthFiltered(HTMLwriter http)
+    {
+        if (stroke.nSample <= 1) {
+            return;
+        }
+        StrokeCache derived = stroke.Derived();
+        dL = derived.SegmentLengths();  
+        if (http != null && displayRawContourValues) {
+            http.table(1);
+            if (displaySampleValues) {
+                DisplaySampleRows(http, stroke.trace, dL);
             }
-            
+            http.closetag();
+        }
+        
 // do some basic filtering ... the short stroke filter removes points based on distance
 // between segments. short ones, duplicates in particular, are removed.
-// segment angle, theta is calculated for use by next filter.
-            InkSample   lengthFiltered[] = 
-                            InkFilta.ShortStrokeFilter(
-                                Tolerance.lengthThreshold,
-                                stroke.nSample,
-                                stroke.sample,
-                                dL);   
-            lengthendStroke = lengthFiltered;
-            dLfiltered = InkFilta.SegmentLengths(lengthFiltered.length, lengthFiltered);   
-            try {
-                CalculateTheta(lengthFiltered.length, lengthFiltered);
-            } catch (Cow c) {   // one thing to throw a cow.. another thing altogether to catch it
+// segment angle, theta is calculated for use by next filter. the filtered form and its lengths
+// come from the cache of the stroke, and are shared
+        StrokeCache.Filtered    lf = derived.Chain(Tolerance.lengthThreshold);
+        InkTrace    lengthFiltered = lf.lengthFiltered;
+        lengthendStroke = lengthFiltered;
+        float[]     dl = lf.lfLengths;
+        lengthenDl = dl;
+        Angles      a = new Angles();
+        try {
+            CalculateAngles(lengthFiltered, a);
+        } catch (Cow c) {   // one thing to throw a cow.. another thing altogether to catch it
+        }
+        float[]     theta = a.theta;
+        if (http != null && displayLengthenedContourValues) {
+            http.table(1);
+            if (displaySampleValues) {
+                DisplaySampleRows(http, lengthFiltered, dl);
             }
-            if (http != null && displayLengthenedContourValues) {
-                http.table(1);
-                if (displaySampleValues) {
-                    DisplaySampleRows(http, lengthFiltered.length, lengthFiltered, dLfiltered);
-                }
-                if (displayDerivativeValues) {
-                    DisplayDerivativeFeatureRows(http);
-                }
-                if (displayThetaValues) {
-                    DisplayThetaFeatureRows(http);
-                }
-                http.closetag(); 
+            if (displayDerivativeValues) {
+                DisplayDerivativeFeatureRows(http, a);
             }
-            lengthendTheta = theta;
-            lengthenDthetaDl = new float[theta.length];
-            lengthenD2thetaDl2 = new float[theta.length];
-            lengthenDthetaDl[0] = 0;
-            lengthenD2thetaDl2[0] = 0;
-            for (int i=1; i<theta.length; i++) {
-                float   len = dLfiltered[i]+dLfiltered[i-1];
-                lengthenDthetaDl[i] = theta[i]/len;
-                lengthenD2thetaDl2[i] = (lengthenDthetaDl[i]-lengthenDthetaDl[i-1])/len;
+            if (displayThetaValues) {
+                DisplayThetaFeatureRows(http, a);
             }
-            
+            http.closetag(); 
+        }
+        lengthendTheta = theta;
+        lengthenDthetaDl = new float[theta.length];
+        lengthenD2thetaDl2 = new float[theta.length];
+        lengthenDthetaDl[0] = 0;
+        lengthenD2thetaDl2[0] = 0;
+        for (int i=1; i<theta.length; i++) {
+            float   len = dl[i]+dl[i-1];
+            lengthenDthetaDl[i] = theta[i]/len;
+            lengthenD2thetaDl2[i] = (lengthenDthetaDl[i]-lengthenDthetaDl[i-1])/len;
+        }
+        
 // keep this result for theta
-            rawishTheta = theta;
-            rawishTheta[0] = 0; //we set it to NaN as a notational thing but this get messy ....)
-
+        rawishTheta = theta;
+        rawishTheta[0] = 0; //we set it to NaN as a notational thing but this get messy ....)
+    }
+    
+    /**
+     * calculates the straightened contour, with its angles and curvature
+     */
+    void CalculateStraightened(HTMLwriter http)
+    {
+        if (stroke.nSample <= 1) {
+            return;
+        }
 // next bit of filtering ... the line straightening filter removes points based on low or
 // zero thete between segments. hopefully we get lots of straight lines
-// segment angle, theta is calculated for use by next filter.
-            InkSample   angleFiltered[] =
-                            InkFilta.LineStraighteningFilter(
-                                false,
-                                true,
-                                Tolerance.absoluteAngleFilterThreshold,
-                                lengthFiltered.length,
-                                lengthFiltered,
-                                theta);
-            dLfiltered = InkFilta.SegmentLengths(angleFiltered.length, angleFiltered);   
-            try {
-                CalculateTheta(angleFiltered.length, angleFiltered);
-            } catch (Cow c) {
+// segment angle, theta is calculated for use by next filter. the simplification filters
+// go by distance or area instead, and don't need theta
+        InkTrace    lengthFiltered = lengthendStroke;
+        InkTrace    angleFiltered;
+        switch (straightenMode) {
+        case DouglasPeucker:
+            angleFiltered = InkFilta.DouglasPeuckerFilter(
+                            Tolerance.simplifyDistanceTolerance,
+                            lengthFiltered);
+            break;
+        case Visvalingam:
+            angleFiltered = InkFilta.VisvalingamFilter(
+                            Tolerance.simplifyAreaTolerance,
+                            lengthFiltered);
+            break;
+        default:
+            angleFiltered = InkFilta.LineStraighteningFilter(
+                            false,
+                            true,
+                            Tolerance.absoluteAngleFilterThreshold,
+                            lengthFiltered,
+                            lengthendTheta);
+            break;
+        }
+        float[]     dl = InkFilta.SegmentLengths(angleFiltered);
+        Angles      a = new Angles();
+        try {
+            CalculateAngles(angleFiltered, a);
+        } catch (Cow c) {
+        }
+        float[]     theta = a.theta;
+        if (http != null && displayStraightenedContourValues) {
+            http.printbr("<B>Straightened form: "+angleFiltered.n+" interpolated points</B>");
+            http.table(1);
+            if (displaySampleValues) {
+                DisplaySampleRows(http, angleFiltered, dl);
             }
-            if (http != null && displayStraightenedContourValues) {
-                http.printbr("<B>Straightened form: "+angleFiltered.length+" interpolated points</B>");
-                http.table(1);
-                if (displaySampleValues) {
-                    DisplaySampleRows(http, angleFiltered.length, angleFiltered, dLfiltered);
-                }
-                if (displayDerivativeValues) {
-                    DisplayDerivativeFeatureRows(http);
-                }
-                if (displayThetaValues) {
-                    DisplayThetaFeatureRows(http);
-                }
-                http.closetag();
+            if (displayDerivativeValues) {
+                DisplayDerivativeFeatureRows(http, a);
             }
-// keep this result for theta
-            straightendTheta = theta;
-            straightenDl = dLfiltered;
-            straightendTheta[0] = 0; //we set it to NaN as a notational thing but this gets messy ....)
-            
-            straightenDthetaDl = new float[theta.length];
-            straightenD2thetaDl2 = new float[theta.length];
-            straightenDthetaDl[0] = 0;
-            straightenD2thetaDl2[0] = 0;
-            for (int i=1; i<theta.length; i++) {
-                float   len = dLfiltered[i]+dLfiltered[i-1];
-                straightenDthetaDl[i] = theta[i]/len;
-                straightenD2thetaDl2[i] = (straightenDthetaDl[i]-straightenDthetaDl[i-1])/len;
+            if (displayThetaValues) {
+                DisplayThetaFeatureRows(http, a);
             }
-            
-            straightendStroke = angleFiltered;
+            http.closetag();
         }
+// keep this result for theta
+        straightendTheta = theta;
+        straightenDl = dl;
+        straightendTheta[0] = 0; //we set it to NaN as a notational thing but this gets messy ....)
         
-                
+        straightenDthetaDl = new float[theta.length];
+        straightenD2thetaDl2 = new float[theta.length];
+        straightenDthetaDl[0] = 0;
+        straightenD2thetaDl2[0] = 0;
+        for (int i=1; i<theta.length; i++) {
+            float   len = dl[i]+dl[i-1];
+            straightenDthetaDl[i] = theta[i]/len;
+            straightenD2thetaDl2[i] = (straightenDthetaDl[i]-straightenDthetaDl[i-1])/len;
+        }
+        
+        straightendStroke = angleFiltered;
+    }
+    
+    /**
+     * calculates the contour resampled in equal segments, and its angles
+     */
+    void CalculateEqualised(HTMLwriter http)
+    {
         if (http != null) {
             http.printbr("");
             http.printbr("");
         }
-         if (stroke.nSample > 1) {  
+        if (stroke.nSample <= 1) {
+            return;
+        }
  // calculate the resampled form
-            float  equalSegLength = rawBoxDiagLen/50;
-           if (equalSegLength < Tolerance.minimumContourResampleSegment) {
-               equalSegLength = (float)Tolerance.minimumContourResampleSegment;
-           }
-           if (http != null) {
-               http.printbr("segmenting into equal lengths of "+equalSegLength);
-           }
-           InkSample[] esr = InkFilta.DaEqualizaFilta(null, //http, 
-                                        stroke.nSample,
-                                        stroke.sample,
-                                        equalSegLength);
-            equalisedStroke = esr;
-            dLfiltered = InkFilta.SegmentLengths(esr.length, esr);     
-            try {
-                CalculateTheta(esr.length, esr);
-            } catch (Cow c) {   // someone in there keeps throwing them
-                
+        float  equalSegLength = rawBoxDiagLen/50;
+        if (equalSegLength < Tolerance.minimumContourResampleSegment) {
+            equalSegLength = Tolerance.minimumContourResampleSegment;
+        }
+        InkTrace    esr;
+        switch (resampleMode) {
+            case ArcLength: {
+                if (http != null) {
+                    http.printbr("segmenting into equal lengths of path of "+equalSegLength);
+                }
+                esr = InkFilta.ArcLengthResample(stroke.trace, equalSegLength);
+                break;
+            }
+            case ArcLengthCount: {
+                if (http != null) {
+                    http.printbr("segmenting into "+Tolerance.contourResamplePoints+" points along the path");
+                }
+                esr = InkFilta.ArcLengthResampleCount(stroke.trace, Tolerance.contourResamplePoints);
+                break;
+            }
+            case Equaliza:
+            default: {
+                if (http != null) {
+                    http.printbr("segmenting into equal lengths of "+equalSegLength);
+                }
+                InkSample[] eq = InkFilta.DaEqualizaFilta(null, //http, 
+                                     stroke.nSample,
+                                     stroke.Samples(),
+                                     equalSegLength);
+                esr = new InkTrace(eq.length, eq);
+                break;
             }
+        }
+        equalisedStroke = esr;
+        equalisedDl = InkFilta.SegmentLengths(esr);
+        Angles      a = new Angles();
+        try {
+            CalculateAngles(esr, a);
+        } catch (Cow c) {   // someone in there keeps throwing them
             
-            equalisedTheta = theta;
-            equalisedTheta[0] = 0;
+        }
+        
+        equalisedTheta = a.theta;
+        equalisedTheta[0] = 0;
 
 // a few test impulses hacked in to test/calibrate the fourier code
 //            equalisedTheta = new float[128];
@@ -635,9 +996,33 @@ public class StrokeAlysis extends StrokeInfo
 //            equalisedTheta[0] = 0;
 //            equalisedTheta[1] = 1;
 //            equalisedTheta[2] = 1;
-            
-            boolean gotFurrier=false;
-            furrier = new Furrier();
+        
+        if (http != null && displayEqualisedContourValues) {
+            http.printbr("<B>Resampled form: "+esr.n+" interpolated points</B>");
+            http.table(1);
+            if (displaySampleValues) {
+                DisplaySampleRows(http, esr, equalisedDl);
+            }
+//                DisplayDerivativeFeatureRows(http, a);
+            if (displayThetaValues) {
+                DisplayThetaFeatureRows(http, a);
+            }
+            http.closetag();
+            http.printbr("");
+            http.printbr("");
+        }
+    }
+    
+    /**
+     * calculates the fourier transforms of the angles of the equalised and straightened contours
+     */
+    void CalculateTransforms(HTMLwriter http)
+    {
+        if (stroke.nSample <= 1 || equalisedTheta == null || straightendTheta == null) {
+            return;
+        }
+        boolean gotFurrier=false;
+        furrier = new Furrier();
 
 // a few test impulses hacked in to test/calibrate the fourier code
 //            straightendTheta = equalisedTheta;
@@ -645,73 +1030,52 @@ public class StrokeAlysis extends StrokeInfo
 //                straightendTheta[i] = 0;
 //            }
 //            straightendTheta[0] = 2;
-           
-            if (calculateTransforms) {
-                gotFurrier = furrier.TrancefumRealToMagPhs(http, equalisedTheta);
-                equalisedSignatureRe = furrier.xRe;
-                equalisedSignatureIm = furrier.xIm;
-                equalisedSignatureMg = furrier.mag;
-                equalisedSignaturePh = furrier.phs;
+       
+        gotFurrier = furrier.TrancefumRealToMagPhs(http, equalisedTheta);
+        equalisedSignatureRe = furrier.xRe;
+        equalisedSignatureIm = furrier.xIm;
+        equalisedSignatureMg = furrier.mag;
+        equalisedSignaturePh = furrier.phs;
+
+        gotFurrier = furrier.TrancefumComplexToMagPhs(http, straightendTheta, straightenDl);
+        straightendSignatureRe = furrier.xRe;
+        straightendSignatureIm = furrier.xIm;
+        straightendSignatureMg = furrier.mag;
+        straightendSignaturePh = furrier.phs;
 
-                gotFurrier = furrier.TrancefumComplexToMagPhs(http, straightendTheta, straightenDl);
-                straightendSignatureRe = furrier.xRe;
-                straightendSignatureIm = furrier.xIm;
-                straightendSignatureMg = furrier.mag;
-                straightendSignaturePh = furrier.phs;
+        if (http != null && displayEqualisedContourValues && gotFurrier && displayTransformValues) {
+            http.printbr("<B>Transformed: "+equalisedSignatureRe.length+" transform points</B>");
+            http.table(1);
+            http.tablerow();
+            http.tabledata();
+            http.print("xre");
+            for (int i=0; i<equalisedSignatureRe.length; i++) {
+                http.tabledata();
+                http.print(Float.toString(equalisedSignatureRe[i]));
             }
-            if (http != null && displayEqualisedContourValues) {
-                http.printbr("<B>Resampled form: "+esr.length+" interpolated points</B>");
-                http.table(1);
-                if (displaySampleValues) {
-                    DisplaySampleRows(http, esr.length, esr, dLfiltered);
-                }
-//                DisplayDerivativeFeatureRows(http);
-                if (displayThetaValues) {
-                    DisplayThetaFeatureRows(http);
-                }
-                http.closetag();
-                http.printbr("");
-                http.printbr("");
-                
-                if (gotFurrier && displayTransformValues) {
-                    if (!gotFurrier) {
-                        http.printbr("transform failed");
-                    } else {
-                        http.printbr("<B>Transformed: "+equalisedSignatureRe.length+" transform points</B>");
-                        http.table(1);
-                        http.tablerow();
-                        http.tabledata();
-                        http.print("xre");
-                        for (int i=0; i<equalisedSignatureRe.length; i++) {
-                            http.tabledata();
-                            http.print(Float.toString(equalisedSignatureRe[i]));
-                        }
-                        http.tablerow();
-                        http.tabledata();
-                        http.print("xim");
-                        for (int i=0; i<equalisedSignatureIm.length; i++) {
-                            http.tabledata();
-                            http.print(Float.toString(equalisedSignatureIm[i]));
-                        }
-                        http.tablerow();
-                        http.tabledata();
-                        http.print("mag");
-                        for (int i=0; i<equalisedSignatureMg.length; i++) {
-                            http.tabledata();
-                            http.print(Float.toString(equalisedSignatureMg[i]));
-                        }
-                        http.tablerow();
-                        http.tabledata();
-                        http.print("phs");
-                        for (int i=0; i<equalisedSignaturePh.length; i++) {
-                            http.tabledata();
-                            http.print(Float.toString(equalisedSignaturePh[i]));
-                        }
-                        http.closetag();
-                    }
-                }
-             }
-         }
+            http.tablerow();
+            http.tabledata();
+            http.print("xim");
+            for (int i=0; i<equalisedSignatureIm.length; i++) {
+                http.tabledata();
+                http.print(Float.toString(equalisedSignatureIm[i]));
+            }
+            http.tablerow();
+            http.tabledata();
+            http.print("mag");
+            for (int i=0; i<equalisedSignatureMg.length; i++) {
+                http.tabledata();
+                http.print(Float.toString(equalisedSignatureMg[i]));
+            }
+            http.tablerow();
+            http.tabledata();
+            http.print("phs");
+            for (int i=0; i<equalisedSignaturePh.length; i++) {
+                http.tabledata();
+                http.print(Float.toString(equalisedSignaturePh[i]));
+            }
+            http.closetag();
+        }
     }
     
     /**
@@ -723,7 +1087,8 @@ public class StrokeAlysis extends StrokeInfo
      */
     public void DisplayFeatures(HTMLwriter http) 
     {
-          DisplaySampleRows(http, equalisedStroke.length, equalisedStroke, dLfiltered);
+          Require(Feature.Equalised);
+          DisplaySampleRows(http, equalisedStroke, equalisedDl);
     }
   
     /** variance in x co-ordinate */
@@ -797,7 +1162,7 @@ public class StrokeAlysis extends StrokeInfo
     /** vector of length components for each segment */
     public float            dL[] = null;
     /** vector of length components for the  length filtered contour */
-    public float            dLfiltered[] = null;
+    public float            lengthenDl[] = null;
     /** vector of segment length components for the straightened contour */
     public float            straightenDl[] = null;
     /** vector of curvature, dTheta/dL components for the straightened contour */
@@ -813,6 +1178,8 @@ public class StrokeAlysis extends StrokeInfo
 
     /** vector of theta component for the equal length resamples contour */
     public float            rawishTheta[] = null;
+    /** vector of segment length components for the equal length resampled contour */
+    public float            equalisedDl[] = null;
     /** vector of theta component for the equal length resamples contour */
     public float            equalisedTheta[] = null;
     /** vector of theta component for the equal length resamples contour */
@@ -837,11 +1204,11 @@ public class StrokeAlysis extends StrokeInfo
     public float            straightendSignaturePh[] = null;
    
     /** resampled form of input sample. same contour resampled for to eliminate short segments and repeated points */
-    public InkSample        lengthendStroke[] = null;
+    public InkTrace         lengthendStroke = null;
     /** resampled form of input sample. same contour resampled for to eliminate minor curvatures, hopefully giving us more straight line geometry */
-    public InkSample        straightendStroke[] = null;
+    public InkTrace         straightendStroke = null;
     /** resampled form of input sample. same contour, resampled for segments of a given fixed length */
-    public InkSample        equalisedStroke[] = null;
+    public InkTrace         equalisedStroke = null;
 
     /** fourier analysis component */
     Furrier                 furrier = null;
@@ -869,4 +1236,22 @@ public class StrokeAlysis extends StrokeInfo
    
     /** do calculations of transforms of contours */
     boolean         calculateTransforms = false;
+    /** how the contour is resampled into equal segments */
+    ResampleMode    resampleMode;
+    
+    /** resampling mode given to new instances. set by the "resample-mode" init parameter */
+    static ResampleMode defaultResampleMode = ResampleMode.Equaliza;
+    /** how the length filtered contour is straightened */
+    StraightenMode  straightenMode;
+    
+    /** straightening mode given to new instances. set by the "straighten-mode" init parameter */
+    static StraightenMode defaultStraightenMode = StraightenMode.Angle;
+    
+    /** the groups of features that CalculateFeatures() works out */
+    EnumSet<Feature>    features;
+    /** the groups of features worked out so far */
+    EnumSet<Feature>    calculated = EnumSet.noneOf(Feature.class);
+    
+    /** features given to new instances, all but the transforms. set by the "stroke-features" init parameter */
+    static EnumSet<Feature> defaultFeatures = EnumSet.range(Feature.Bounds, Feature.Equalised);
 }
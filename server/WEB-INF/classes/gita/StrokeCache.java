@@ -0,0 +1,247 @@
+/*
+ * StrokeCache.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Derived forms of the data of a stroke, worked out the first time they are asked for and kept for
+ * the life of the stroke, so that the <i>StrokeInfo</i> structures that want the same filtered
+ * trace, lengths, or angles of a stroke don't each work them out again. A stroke is made afresh
+ * for each request, so this lasts for the request.
+ *<p>
+ * Results are kept by the name of the filter and its parameter. As the angles depend on
+ * <i>Tolerance.fastTrig</i>, that is part of the key too. Anything that isn't one of the standard
+ * forms can be kept with <i>Get()</i> and <i>Put()</i>.
+ *<p>
+ * The arrays and traces handed out are shared, and must not be changed. Anyone who wants to
+ * change one should copy it first.
+ *<p>
+ * Counts of hits and misses for each filter are kept over all strokes in the process, for
+ * <i>Stats()</i>. They are only meaningful to a tool that owns the process, such as the
+ * <i>ArchiveReanalyser</i>, which resets them before a run.
+ *
+ * @see Stroke#Derived()
+ * @see InkFiltaChain
+ * @author dak
+ * @since you asked
+ */
+public class StrokeCache
+{
+    /**
+     * Creates an empty cache for a stroke
+     *
+     * @param s the stroke
+     */
+    StrokeCache(Stroke s)
+    {
+        stroke = s;
+    }
+
+    /**
+     * The results of a run of <i>InkFiltaChain</i> over a stroke
+     */
+    public static class Filtered
+    {
+        /** the length filtered trace */
+        public InkTrace    lengthFiltered;
+        /** segment lengths of the length filtered trace */
+        public float       lfLengths[];
+        /** tangent angles of the length filtered trace */
+        public float       lfTangles[];
+        /** the artifact filtered trace */
+        public InkTrace    artifactFiltered;
+        /** segment lengths of the artifact filtered trace, in pixels */
+        public float       afLengths[];
+        /** tangent angles of the artifact filtered trace */
+        public float       afTangles[];
+    }
+
+    /**
+     * @param threshold the shortest length of path kept between samples by the short stroke filter
+     * @return the results of the filter chain over the stroke
+     */
+    public synchronized Filtered Chain(float threshold)
+    {
+        Filtered    f = (Filtered) Get(CHAIN, threshold);
+        if (f == null) {
+            InkFiltaChain   chain = InkFiltaChain.Local();
+            chain.Run(threshold, stroke.trace);
+            f = new Filtered();
+            f.lengthFiltered = chain.CopyLengthFiltered();
+            f.lfLengths = chain.CopyLengthFilteredLengths();
+            f.lfTangles = chain.CopyLengthFilteredTangles();
+            f.artifactFiltered = chain.CopyArtifactFiltered(f.lengthFiltered);
+            f.afTangles = chain.CopyTangles();
+            f.afLengths = new float[chain.ArtifactFilteredCount()];
+            System.arraycopy(chain.Lengths(), 0, f.afLengths, 0, f.afLengths.length);
+            Put(CHAIN, threshold, f);
+        }
+        return f;
+    }
+
+    /**
+     * @return the segment lengths of the raw trace of the stroke
+     */
+    public synchronized float[] SegmentLengths()
+    {
+        float   dL[] = (float[]) Get(SEGMENT_LENGTHS, 0);
+        if (dL == null) {
+            dL = InkFilta.SegmentLengths(stroke.trace);
+            Put(SEGMENT_LENGTHS, 0, dL);
+        }
+        return dL;
+    }
+
+    /**
+     * @param threshold the shortest length of path kept between samples
+     * @return the stroke after the short stroke filter, the same as
+     *          <i>InkFilta.ShortStrokeFilter(threshold, stroke.trace, SegmentLengths())</i>
+     */
+    public InkTrace ShortStrokeFiltered(float threshold)
+    {
+        return Chain(threshold).lengthFiltered;
+    }
+
+    /**
+     * Gets a result, counting a hit or a miss
+     *
+     * @param filter name of the filter
+     * @param param the parameter of the filter
+     * @return the result, or null if there isn't one yet
+     */
+    public synchronized Object Get(String filter, float param)
+    {
+        Object  o = results.get(new Key(filter, param));
+        Count(filter, o != null);
+        return o;
+    }
+
+    /**
+     * Keeps a result
+     *
+     * @param filter name of the filter
+     * @param param the parameter of the filter
+     * @param result the result
+     */
+    public synchronized void Put(String filter, float param, Object result)
+    {
+        results.put(new Key(filter, param), result);
+    }
+
+    /**
+     * Throws away everything kept, for if the trace of the stroke is changed
+     */
+    public synchronized void Clear()
+    {
+        results.clear();
+    }
+
+    /**
+     * @return the total number of hits, over all strokes and filters
+     */
+    public static long Hits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the total number of misses, over all strokes and filters
+     */
+    public static long Misses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the hits and misses for each filter, as text
+     */
+    public static String Stats()
+    {
+        StringBuilder   b = new StringBuilder();
+        b.append("stroke cache: ").append(hits.get()).append(" hits, ").append(misses.get()).append(" misses");
+        for (String f: filterCounts.keySet()) {
+            AtomicLong[]    c = filterCounts.get(f);
+            b.append("; ").append(f).append(' ').append(c[0].get()).append('/').append(c[1].get());
+        }
+        return b.toString();
+    }
+
+    /**
+     * Sets the counts back to zero
+     */
+    public static void ResetStats()
+    {
+        hits.set(0);
+        misses.set(0);
+        filterCounts.clear();
+    }
+
+    /**
+     * counts a hit or a miss on a filter
+     */
+    static void Count(String filter, boolean hit)
+    {
+        (hit? hits: misses).incrementAndGet();
+        AtomicLong[]    c = filterCounts.get(filter);
+        if (c == null) {
+            filterCounts.putIfAbsent(filter, new AtomicLong[] { new AtomicLong(), new AtomicLong() });
+            c = filterCounts.get(filter);
+        }
+        c[hit? 0: 1].incrementAndGet();
+    }
+
+    /**
+     * A filter and its parameter, along with the trig mode in force
+     */
+    static class Key
+    {
+        Key(String filter, float param)
+        {
+            this.filter = filter;
+            this.param = param;
+            this.fastTrig = Tolerance.fastTrig;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return filter.equals(k.filter) && Float.floatToIntBits(param) == Float.floatToIntBits(k.param)
+                        && fastTrig == k.fastTrig;
+        }
+
+        public int hashCode()
+        {
+            return 31*(31*filter.hashCode() + Float.floatToIntBits(param)) + (fastTrig? 1: 0);
+        }
+
+        String  filter;
+        float   param;
+        boolean fastTrig;
+    }
+
+    /** name of the filter chain results */
+    public static final String  CHAIN = "chain";
+    /** name of the raw segment lengths */
+    public static final String  SEGMENT_LENGTHS = "dL";
+
+    /** the stroke */
+    Stroke                  stroke;
+    /** the results kept */
+    HashMap<Key,Object>     results = new HashMap<>();
+
+    /** hits over all strokes */
+    static final AtomicLong hits = new AtomicLong();
+    /** misses over all strokes */
+    static final AtomicLong misses = new AtomicLong();
+    /** hits and misses for each filter */
+    static final ConcurrentHashMap<String,AtomicLong[]> filterCounts = new ConcurrentHashMap<>();
+}
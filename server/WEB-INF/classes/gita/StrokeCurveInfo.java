@@ -51,50 +51,54 @@ public class StrokeCurveInfo extends StrokeInfo
      */
     public void CalculateFeatures(HTMLwriter http) throws Cow
     {
-// length filter data to eliminate degeneracy. the filter operation, of course, invalidates the segment
-// lengths used to calculate the filtered data
-        dL = InkFilta.SegmentLengths(stroke.nSample, stroke.sample);
-        lengthFilteredStroke = InkFilta.ShortStrokeFilter(
-                                            (float)1.0,
-                                            stroke.nSample,
-                                            stroke.sample,
-                                            dL);
-        
-// convert (x,y) representation to a (dTheta, dL) representation
-        dL = InkFilta.SegmentLengths(lengthFilteredStroke.length, lengthFilteredStroke);
-// get the tangent angle array
-        tangle = InkFilta.DelTheta(lengthFilteredStroke.length, lengthFilteredStroke, false); 
+// length filter data to eliminate degeneracy, convert (x,y) representation to a (dTheta, dL)
+// representation, and trim pen artifacts from the ends, all in one pass in the scratch buffers of
+// the chain. only the results that are kept are copied out
+        StrokeCache.Filtered    f = stroke.Derived().Chain((float)1.0);
+        lengthFilteredStroke = f.lengthFiltered;
+        artifactFilteredStroke = f.artifactFiltered;
+        tangle = f.afTangles.clone();   // shared with the cache, and changed below
+        int         n = artifactFilteredStroke.n;
+        float[]     rawDL = f.afLengths;
 
-        artifactFilteredStroke = InkFilta.PenArtifactFilter(
-                                            lengthFilteredStroke.length,
-                                            lengthFilteredStroke, dL, tangle);
-        dL = InkFilta.SegmentLengths(artifactFilteredStroke.length, artifactFilteredStroke);
-        tangle = InkFilta.DelTheta(artifactFilteredStroke.length, artifactFilteredStroke, false); 
+// optionally cut the points down further, keeping within a distance of the path
+        if (Tolerance.curveSimplifyTolerance > 0 && n > 2) {
+            artifactFilteredStroke = InkFilta.DouglasPeuckerFilter(
+                                        Tolerance.curveSimplifyTolerance,
+                                        artifactFilteredStroke);
+            n = artifactFilteredStroke.n;
+            rawDL = InkFilta.SegmentLengths(artifactFilteredStroke);
+            tangle = InkFilta.DelTheta(artifactFilteredStroke, false);
+        }
 
 // get some totals and stats on the angles therein contained
         pathLength = 0;
-        for (int i=0; i<dL.length; i++) {
-            pathLength += dL[i];
+        for (int i=0; i<n; i++) {
+            pathLength += rawDL[i];
         }
         
 // normalise length segment vector to a total length of 1. note that some useful information
 // is innate in the raw pixel lengths
-        dL = InkFilta.NormalizeLengthVector(dL);
+        dL = new float[n];
+        for (int i=0; i<n; i++) {
+            dL[i] = rawDL[i]/pathLength;
+        }
      
         float   sumAbsTangle = 0;
         sumTangle = 0;
         weightedSumTangle = 0;
         tangle[0] = 0; // set to NaN by DelTheta()
-        float       sumTSquare = 0;
+        Moments     m = new Moments();
+        m.Add(tangle[0]);
         for (int i=1; i<tangle.length; i++) {
             sumAbsTangle += abs(tangle[i]);
             sumTangle += tangle[i];
             weightedSumTangle += tangle[i]*(dL[i-1]+dL[i])/2;
-            sumTSquare += tangle[i]*tangle[i];
+            m.Add(tangle[i]);
         }
-        meanTangle = sumTangle/(tangle.length);
+        meanTangle = (float) m.Mean();
         meanAbsTangle = sumAbsTangle/tangle.length;
-        devTangle = (float) sqrt(((sumTSquare/tangle.length) - (meanTangle*meanTangle))); 
+        devTangle = (float) m.Deviation(); 
         
 // calculate 1st derivative dTheta/dL
         dTangledL = InkFilta.DyDx(tangle, dL);
@@ -128,6 +132,7 @@ public class StrokeCurveInfo extends StrokeInfo
                     type = Type.FullPosCurve;
             }
         }
+        curveFeatures = true;
     }
     
     /**
@@ -171,9 +176,9 @@ public class StrokeCurveInfo extends StrokeInfo
     }
 
     /** version of stroke, filtered to remove short segments. this should be kept, as the artifact filtering process might remove key data */
-    public InkSample[]      lengthFilteredStroke = null;
+    public InkTrace         lengthFilteredStroke = null;
     /** version of stroke, filtered to remove pen artifracts at the beginning and end of strokes */
-    public InkSample[]      artifactFilteredStroke = null;
+    public InkTrace         artifactFilteredStroke = null;
     /**
      * vector of segment legnths for each sample point. Given an array of samples, data[0 .. i .. n-1],
      * the length array element dL[i] is the distance between points (i-1:i).
@@ -202,4 +207,6 @@ public class StrokeCurveInfo extends StrokeInfo
     public float            pathLength = 0;
     /** rough categorization of stroke based on basic geometry */
     public Type             type = Type.Complex;
+    /** true once the features above, from <i>sumTangle</i> to <i>type</i>, have been worked out. A <i>SignatureStroke</i> doesn't work them out */
+    public boolean          curveFeatures = false;
 }
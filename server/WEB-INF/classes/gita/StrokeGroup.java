@@ -6,7 +6,8 @@
 
 package gita;
  
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.lang.UnsupportedOperationException;
@@ -18,6 +19,11 @@ import zone.HTMLwriter;
  * structure, to which the list kept here is references, not copies. Thus the stroke groups are non-exclusive
  * and non hierarchical.
  * <p>
+ * The strokes are kept in an array list, so <i>get(i)</i> is quick, and membership is recorded in a
+ * bit set indexed by <i>Stroke.number</i>, so <i>contains()</i> doesn't have to search the list. Strokes
+ * added before they were numbered by the <i>StrokeTable</i> of their page are searched for until
+ * <i>Renumber()</i> is called, which PageData does when it builds its table.
+ * <p>
  * When the page is stored as SVG data, the stroke group information is reflected as
  * SVG groups, which are hierarchically arranged. Hopefully this won't cause too many issues.
  *<p>
@@ -31,10 +37,11 @@ import zone.HTMLwriter;
  * @see PageData
  * @see Stroke
  * @see StrokeGroupInfo
+ * @see StrokeTable
  * @author dak
  * @since you asked
  */
-public class StrokeGroup implements Collection<Stroke>
+public class StrokeGroup implements Collection<Stroke>, Analysable
 {
     
     /**
@@ -80,19 +87,21 @@ public class StrokeGroup implements Collection<Stroke>
     {
         nStrokes = 0;
         id = nm;
-        strokes = new LinkedList();
+        strokes = new ArrayList<>();
+        members = new BitSet();
+        indexed = true;
         type = gt;
         
     }
 
     /**
-     * adds all strokes in a LinkedList that are enclosed by the bounding box of the given
+     * adds all strokes in a Collection that are enclosed by the bounding box of the given
      * enclosing stroke.
      *
      * @param strokes the list of strokes to add from
      * @param enclosingStroke the stroke which will enclose strokes of interest
      */
-    public void AppendEnclosedStrokes(Stroke enclosingStroke, LinkedList<Stroke> strokes)
+    public void AppendEnclosedStrokes(Stroke enclosingStroke, Collection<Stroke> strokes)
     {
         for (Stroke sj: strokes) {
             if (sj != enclosingStroke) {
@@ -114,6 +123,33 @@ public class StrokeGroup implements Collection<Stroke>
         }
     }
     
+    /**
+     * adds all strokes of a page that are enclosed by the bounding box of the given enclosing stroke,
+     * as above, but only looking at the strokes the index of the page finds near it
+     *
+     * @param enclosingStroke the stroke which will enclose strokes of interest
+     * @param index a StrokeIndex over the strokes of the page
+     * @see StrokeIndex
+     */
+    public void AppendEnclosedStrokes(Stroke enclosingStroke, StrokeIndex index)
+    {
+        for (Stroke sj: index.Intersecting(enclosingStroke.bounds)) {
+            if (sj != enclosingStroke) {
+                switch (type) {
+                    case SignatureTraining:
+                    case Signature: {
+                        sj.info = new SignatureStroke(sj);
+                        break;
+                    }
+                    case Vanilla: {
+                        break;
+                    }
+                }
+                add(sj); 
+            }
+        }
+    }
+    
     /**
      * returns the i-th stroke of this group
      * @param i the index of stroke to return
@@ -139,10 +175,25 @@ public class StrokeGroup implements Collection<Stroke>
      * @param http HTMLwriter for diagnostic output
      * @throws Cow
      */
-    public void CalculateFeatures(HTMLwriter http) throws Cow
+    public synchronized void CalculateFeatures(HTMLwriter http) throws Cow
     {
         if (info != null) {
             info.CalculateFeatures(http);
+            info.calculated = true;
+        }
+    }
+    
+    /**
+     * calls the feature calculation routine associated with the <i>info</i> structure, as above, unless
+     * it has already been run
+     *
+     * @param http HTMLwriter for diagnostic output
+     * @throws Cow
+     */
+    public synchronized void CalculateFeaturesOnce(HTMLwriter http) throws Cow
+    {
+        if (info != null && !info.calculated) {
+            CalculateFeatures(http);
         }
     }
     
@@ -153,6 +204,25 @@ public class StrokeGroup implements Collection<Stroke>
     {
         nStrokes = 0;
         strokes.clear();
+        members.clear();
+        indexed = true;
+    }
+    
+    /**
+     * rebuilds the membership bit set from the stroke numbers, once the strokes of the page have all
+     * been numbered
+     */
+    public void Renumber()
+    {
+        members.clear();
+        indexed = true;
+        for (Stroke s: strokes) {
+            if (s.number >= 0) {
+                members.set(s.number);
+            } else {
+                indexed = false;
+            }
+        }
     }
     
     /**
@@ -175,6 +245,11 @@ public class StrokeGroup implements Collection<Stroke>
     {
         if (strokes.add(o)) {
             nStrokes++;
+            if (o.number >= 0) {
+                members.set(o.number);
+            } else {
+                indexed = false;
+            }
             return true;
         }
         return false;
@@ -217,6 +292,9 @@ public class StrokeGroup implements Collection<Stroke>
      */
     public boolean contains(Object o)
     {
+        if (indexed && o instanceof Stroke && ((Stroke)o).number >= 0) {
+            return members.get(((Stroke)o).number);
+        }
         return strokes.contains(o);
     }
     
@@ -300,11 +378,36 @@ public class StrokeGroup implements Collection<Stroke>
     {
         if (strokes.remove(o)) {
             nStrokes--;
+            unmark((Stroke)o);
             return true;
         }
         return false;
     }
     
+    /**
+     * Removes the i-th stroke of this group
+     *
+     * @param i the index of the stroke to remove
+     * @return the stroke removed
+     */
+    public Stroke remove(int i)
+    {
+        Stroke  s = strokes.remove(i);
+        nStrokes--;
+        unmark(s);
+        return s;
+    }
+    
+    /**
+     * clears the membership bit of a stroke just removed, unless it is in the list more than once
+     */
+    void unmark(Stroke s)
+    {
+        if (s.number >= 0 && !strokes.contains(s)) {
+            members.clear(s.number);
+        }
+    }
+    
     /**
      * Removes all this collection's elements that are also contained in the specified collection
      *
@@ -391,5 +494,9 @@ public class StrokeGroup implements Collection<Stroke>
     /** the number of strokes in this group */
     int                 nStrokes = 0;
     /** a list of the strokes in this group */
-    LinkedList<Stroke>  strokes = null;
+    ArrayList<Stroke>   strokes = null;
+    /** the numbers of the strokes in this group */
+    BitSet              members = null;
+    /** true if every stroke in the group is numbered, and so has its bit set in <i>members</i> */
+    boolean             indexed = true;
 }
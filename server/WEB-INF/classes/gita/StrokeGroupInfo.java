@@ -41,4 +41,6 @@ public abstract class StrokeGroupInfo
     
     /** the group that this structure provides info for */
     public StrokeGroup group=null;
+    /** set once CalculateFeatures() has been run on this structure, so that later passes can skip it */
+    boolean     calculated=false;
 }
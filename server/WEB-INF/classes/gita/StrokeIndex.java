@@ -0,0 +1,314 @@
+/*
+ * StrokeIndex.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+
+import zone.Point;
+import zone.Rectangle;
+
+/**
+ * A uniform grid over the bounds of the strokes of a page, for finding the strokes that intersect or
+ * lie within a rectangle, or that are nearest a point, without testing every stroke on the page.
+ *<p>
+ * The grid covers the extent of the stroke bounds when it is built, with about as many cells to a side
+ * as the square root of the number of strokes, and each cell lists the strokes whose bounds overlap it.
+ * Strokes added later go in the cells they overlap, clamped to the edge of the grid if they lie outside
+ * it, so queries stay correct; the grid just gets less selective, and is rebuilt when a page is set up
+ * again.
+ *<p>
+ * Queries return strokes in the order they were added, which is the order of the stroke list of the
+ * page, so results don't depend on the layout of the grid. Strokes must have their bounds calculated
+ * before they are indexed.
+ *
+ * @see PageData
+ * @see StrokeGroup
+ * @author dak
+ * @since you asked
+ */
+public class StrokeIndex
+{
+    /** most cells along each side of the grid */
+    public static final int MAX_GRID = 64;
+
+    /**
+     * builds an index over a list of strokes, all of which must have bounds
+     *
+     * @param strokes the strokes of a page
+     */
+    public StrokeIndex(Collection<Stroke> strokes)
+    {
+        this.strokes = new ArrayList<>(strokes.size());
+        boolean first = true;
+        for (Stroke s: strokes) {
+            Rectangle   b = s.bounds;
+            if (first) {
+                left = b.left;
+                top = b.top;
+                right = b.right;
+                bottom = b.bottom;
+                first = false;
+            } else {
+                if (b.left < left) left = b.left;
+                if (b.top < top) top = b.top;
+                if (b.right > right) right = b.right;
+                if (b.bottom > bottom) bottom = b.bottom;
+            }
+        }
+        nGrid = (int)Math.ceil(Math.sqrt(strokes.size()));
+        if (nGrid < 1) {
+            nGrid = 1;
+        } else if (nGrid > MAX_GRID) {
+            nGrid = MAX_GRID;
+        }
+        cellWidth = (right - left)/nGrid;
+        cellHeight = (bottom - top)/nGrid;
+        cells = new int[nGrid*nGrid][];
+        cellSize = new int[nGrid*nGrid];
+        for (Stroke s: strokes) {
+            add(s);
+        }
+    }
+
+    /**
+     * adds a stroke to the index. The stroke must have bounds.
+     *
+     * @param s the stroke
+     */
+    public void add(Stroke s)
+    {
+        int     k = strokes.size();
+        strokes.add(s);
+        Rectangle   b = s.bounds;
+        int c0 = column(b.left);
+        int c1 = column(b.right);
+        int r0 = row(b.top);
+        int r1 = row(b.bottom);
+        for (int j=r0; j<=r1; j++) {
+            for (int i=c0; i<=c1; i++) {
+                int     c = j*nGrid + i;
+                int[]   cell = cells[c];
+                if (cell == null) {
+                    cell = cells[c] = new int[4];
+                } else if (cellSize[c] == cell.length) {
+                    cell = cells[c] = Arrays.copyOf(cell, 2*cell.length);
+                }
+                cell[cellSize[c]++] = k;
+            }
+        }
+    }
+
+    /**
+     * @return the number of strokes in the index
+     */
+    public int size()
+    {
+        return strokes.size();
+    }
+
+    /**
+     * finds the strokes whose bounds intersect a rectangle
+     *
+     * @param r the rectangle
+     * @return the strokes, in the order they were added
+     */
+    public LinkedList<Stroke> Intersecting(Rectangle r)
+    {
+        LinkedList<Stroke>  found = new LinkedList<>();
+        for (int k: candidates(r)) {
+            Stroke  s = strokes.get(k);
+            if (r.Intersects(s.bounds)) {
+                found.add(s);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * finds the strokes whose bounds lie entirely within a rectangle
+     *
+     * @param r the rectangle
+     * @return the strokes, in the order they were added
+     */
+    public LinkedList<Stroke> Enclosed(Rectangle r)
+    {
+        LinkedList<Stroke>  found = new LinkedList<>();
+        for (int k: candidates(r)) {
+            Stroke      s = strokes.get(k);
+            Rectangle   b = s.bounds;
+            if (b.left >= r.left && b.right <= r.right && b.top >= r.top && b.bottom <= r.bottom) {
+                found.add(s);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * finds the strokes nearest a point, by the distance from the point to their bounds. Strokes whose
+     * bounds contain the point are at distance 0. The search works outwards from the cell holding the
+     * point, a ring of cells at a time, and stops once no unvisited cell can hold anything nearer.
+     *
+     * @param p the point
+     * @param k how many strokes to find
+     * @return at most <i>k</i> strokes, nearest first, ties in the order they were added
+     */
+    public LinkedList<Stroke> Nearest(Point p, int k)
+    {
+        LinkedList<Stroke>  found = new LinkedList<>();
+        int     n = strokes.size();
+        if (k <= 0 || n == 0) {
+            return found;
+        }
+        if (k > n) {
+            k = n;
+        }
+        boolean seen[] = new boolean[n];
+        int     best[] = new int[k];
+        float   bestD[] = new float[k];
+        int     nBest = 0;
+
+        int     pc = column(p.x);
+        int     pr = row(p.y);
+        float   ring = Math.min(cellWidth, cellHeight);
+        for (int r=0; r<nGrid; r++) {
+            for (int j=pr-r; j<=pr+r; j++) {
+                if (j < 0 || j >= nGrid) {
+                    continue;
+                }
+                boolean edge = j == pr-r || j == pr+r;
+                for (int i=pc-r; i<=pc+r; i+=(edge? 1: 2*r)) {
+                    if (i >= 0 && i < nGrid) {
+                        int[]   cell = cells[j*nGrid + i];
+                        int     m = cellSize[j*nGrid + i];
+                        for (int q=0; q<m; q++) {
+                            int     s = cell[q];
+                            if (seen[s]) {
+                                continue;
+                            }
+                            seen[s] = true;
+                            float   d = distance(p, strokes.get(s).bounds);
+                            if (nBest < k || d < bestD[nBest-1] || (d == bestD[nBest-1] && s < best[nBest-1])) {
+// insertion into the sorted list of the best so far
+                                int     at = nBest < k? nBest++: k-1;
+                                while (at > 0 && (bestD[at-1] > d || (bestD[at-1] == d && best[at-1] > s))) {
+                                    bestD[at] = bestD[at-1];
+                                    best[at] = best[at-1];
+                                    at--;
+                                }
+                                bestD[at] = d;
+                                best[at] = s;
+                            }
+                        }
+                    }
+                    if (r == 0) {
+                        break;
+                    }
+                }
+            }
+// anything not yet seen is in a cell at least r whole cells away
+            if (nBest == k && bestD[k-1] < r*ring) {
+                break;
+            }
+        }
+        for (int i=0; i<nBest; i++) {
+            found.add(strokes.get(best[i]));
+        }
+        return found;
+    }
+
+    /**
+     * gathers the indices of the strokes in the cells overlapping a rectangle, without repeats, in
+     * ascending order
+     */
+    int[] candidates(Rectangle r)
+    {
+        int c0 = column(r.left);
+        int c1 = column(r.right);
+        int r0 = row(r.top);
+        int r1 = row(r.bottom);
+        if (c0 == c1 && r0 == r1) {
+            int     c = r0*nGrid + c0;
+            return cells[c] != null? Arrays.copyOf(cells[c], cellSize[c]): new int[0];
+        }
+        int     n = 0;
+        for (int j=r0; j<=r1; j++) {
+            for (int i=c0; i<=c1; i++) {
+                n += cellSize[j*nGrid + i];
+            }
+        }
+        int[]   k = new int[n];
+        n = 0;
+        for (int j=r0; j<=r1; j++) {
+            for (int i=c0; i<=c1; i++) {
+                int     c = j*nGrid + i;
+                if (cells[c] != null) {
+                    System.arraycopy(cells[c], 0, k, n, cellSize[c]);
+                    n += cellSize[c];
+                }
+            }
+        }
+        Arrays.sort(k);
+        int     m = 0;
+        for (int i=0; i<n; i++) {
+            if (m == 0 || k[i] != k[m-1]) {
+                k[m++] = k[i];
+            }
+        }
+        return Arrays.copyOf(k, m);
+    }
+
+    /**
+     * distance from a point to a rectangle, 0 if it is inside
+     */
+    static float distance(Point p, Rectangle b)
+    {
+        float   dx = p.x < b.left? b.left - p.x: (p.x > b.right? p.x - b.right: 0);
+        float   dy = p.y < b.top? b.top - p.y: (p.y > b.bottom? p.y - b.bottom: 0);
+        return (float)Math.sqrt(dx*dx + dy*dy);
+    }
+
+    /**
+     * grid column holding an x co-ordinate, clamped to the grid
+     */
+    int column(float x)
+    {
+        int i = cellWidth > 0? (int)((x - left)/cellWidth): 0;
+        return i < 0? 0: (i >= nGrid? nGrid-1: i);
+    }
+
+    /**
+     * grid row holding a y co-ordinate, clamped to the grid
+     */
+    int row(float y)
+    {
+        int j = cellHeight > 0? (int)((y - top)/cellHeight): 0;
+        return j < 0? 0: (j >= nGrid? nGrid-1: j);
+    }
+
+    /** the indexed strokes, in the order they were added */
+    ArrayList<Stroke>   strokes;
+    /** the grid cells, row by row, each holding the indices of the strokes that overlap it */
+    int                 cells[][];
+    /** number of strokes held in each cell */
+    int                 cellSize[];
+    /** number of cells along each side of the grid */
+    int                 nGrid;
+    /** left edge of the grid */
+    float               left;
+    /** top edge of the grid */
+    float               top;
+    /** right edge of the grid */
+    float               right;
+    /** bottom edge of the grid */
+    float               bottom;
+    /** width of a grid cell */
+    float               cellWidth;
+    /** height of a grid cell */
+    float               cellHeight;
+}
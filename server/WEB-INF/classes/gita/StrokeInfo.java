@@ -39,4 +39,6 @@ public abstract class StrokeInfo
      
      /** the Stroke for which this StrokeInfo is created */
      Stroke     stroke=null;
+     /** set once CalculateFeatures() has been run on this structure, so that later passes can skip it */
+     boolean    calculated=false;
 }
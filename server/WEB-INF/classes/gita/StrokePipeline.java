@@ -0,0 +1,138 @@
+/*
+ * StrokePipeline.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import zone.HTMLwriter;
+
+/**
+ * Hands strokes and stroke groups over to a pool of worker threads for feature calculation while a
+ * page is still being parsed, so that parsing of a large document overlaps with its analysis.
+ *<p>
+ * <i>SvgStrokeParser</i> submits each stroke as its path element is read, if it is not part of a
+ * signature, and each signature group as its closing group tag is read, when all its strokes are
+ * known. Strokes that enclose other strokes can only be resolved once the whole document has been
+ * read, so they, and anything else missed here, are left for <i>PageData.AnalyseStrokes()</i>, which
+ * skips the work already done.
+ *<p>
+ * The executor should have a bounded queue, with a caller-runs policy when the queue is full, so that
+ * a parser running well ahead of the workers does some of the work itself instead of queueing up
+ * the entire document. Each job writes diagnostics to its own buffer, and <i>drain()</i> copies them
+ * out in the order the jobs were submitted.
+ *
+ * @see SvgStrokeParser
+ * @see PageData#AnalyseStrokes(HTMLwriter)
+ * @author dak
+ * @since you asked
+ */
+public class StrokePipeline
+{
+    /**
+     * create a pipeline feeding the given executor
+     *
+     * @param e the executor that runs feature calculations
+     */
+    public StrokePipeline(ExecutorService e)
+    {
+        executor = e;
+        jobs = new LinkedList<>();
+    }
+
+    /**
+     * start feature calculation for a stroke. Its bounds should already be set.
+     *
+     * @param s the stroke
+     */
+    public void submit(final Stroke s)
+    {
+        jobs.add(executor.submit(new Callable<String>() {
+            public String call() throws Cow
+            {
+                StringWriter    buf = new StringWriter();
+                PrintWriter     w = new PrintWriter(buf);
+                s.CalculateFeatures(new HTMLwriter(w));
+                w.flush();
+                return buf.toString();
+            }
+        }));
+    }
+
+    /**
+     * start feature calculation for a group, whose strokes are all known.
+     *
+     * @param g the stroke group
+     */
+    public void submit(final StrokeGroup g)
+    {
+        jobs.add(executor.submit(new Callable<String>() {
+            public String call() throws Cow
+            {
+                StringWriter    buf = new StringWriter();
+                PrintWriter     w = new PrintWriter(buf);
+                g.CalculateFeatures(new HTMLwriter(w));
+                w.flush();
+                return buf.toString();
+            }
+        }));
+    }
+
+    /**
+     * waits for all submitted jobs to finish, copying their diagnostic output to the given
+     * HTMLwriter. This has to be done before anything else touches the strokes.
+     *<p>
+     * If the wait is interrupted, the jobs not yet finished are cancelled and the interrupt is
+     * passed on as a parse failure: the strokes may still be in the hands of the workers, so the
+     * page they belong to must not be built.
+     *
+     * @param http HTMLwriter for diagnostic output
+     * @throws LogParseException if interrupted while waiting
+     */
+    public void drain(HTMLwriter http)
+        throws LogParseException
+    {
+        for (Future<String> f: jobs) {
+            try {
+                http.print(f.get());
+            } catch (InterruptedException e) {
+                for (Future<String> c: jobs) {
+                    c.cancel(true);
+                }
+                nDrained += jobs.size();
+                jobs.clear();
+                Thread.currentThread().interrupt();
+                throw new LogParseException("Interrupted while waiting for stroke analysis");
+            } catch (ExecutionException e) {
+                Throwable   cause = e.getCause();
+                String      msg = cause!=null? cause.getMessage(): null;
+                http.printbr("Stroke analysis throws a cow"+(msg!=null?msg:""));
+            }
+        }
+        nDrained += jobs.size();
+        jobs.clear();
+    }
+
+    /**
+     * @return the number of jobs handled so far
+     */
+    public int count()
+    {
+        return nDrained + jobs.size();
+    }
+
+    /** executor that runs the feature calculations */
+    ExecutorService             executor;
+    /** jobs submitted and not yet drained, in order of submission */
+    LinkedList<Future<String>>  jobs;
+    /** number of jobs drained */
+    int                         nDrained = 0;
+}
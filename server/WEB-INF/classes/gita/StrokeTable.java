@@ -0,0 +1,92 @@
+/*
+ * StrokeTable.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The strokes of a page, held in an array. Each stroke is given a number when it is added to the
+ * table, its index in the table, which it keeps in <i>Stroke.number</i>. Strokes are never removed
+ * from a page, so the numbers are stable, and stroke groups can record their members by number.
+ *<p>
+ * Only appending is supported; the other ways of changing a list throw an
+ * UnsupportedOperationException.
+ *
+ * @see PageData
+ * @see StrokeGroup
+ * @author dak
+ * @since you asked
+ */
+public class StrokeTable extends AbstractList<Stroke> implements RandomAccess
+{
+    /**
+     * Creates an empty table
+     */
+    public StrokeTable()
+    {
+        strokes = new Stroke[16];
+        n = 0;
+    }
+
+    /**
+     * Creates a table holding the given strokes, numbered in the order given
+     *
+     * @param c the strokes
+     */
+    public StrokeTable(Collection<Stroke> c)
+    {
+        strokes = new Stroke[Math.max(c.size(), 16)];
+        n = 0;
+        for (Stroke s: c) {
+            add(s);
+        }
+    }
+
+    /**
+     * Appends a stroke to the table, and numbers it
+     *
+     * @param s the stroke
+     * @return true
+     */
+    public boolean add(Stroke s)
+    {
+        if (n == strokes.length) {
+            strokes = Arrays.copyOf(strokes, 2*n);
+        }
+        s.number = n;
+        strokes[n++] = s;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * @param i the number of a stroke
+     * @return the stroke
+     */
+    public Stroke get(int i)
+    {
+        if (i < 0 || i >= n) {
+            throw new IndexOutOfBoundsException("no stroke "+i);
+        }
+        return strokes[i];
+    }
+
+    /**
+     * @return the number of strokes in the table
+     */
+    public int size()
+    {
+        return n;
+    }
+
+    /** the strokes, by number */
+    Stroke      strokes[];
+    /** number of strokes in the table */
+    int         n;
+}
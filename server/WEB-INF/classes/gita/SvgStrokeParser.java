@@ -19,6 +19,8 @@
 package gita;
  
 import java.io.StringReader;
+import java.io.Reader;
+import java.io.InputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -32,7 +34,6 @@ import org.xml.sax.helpers.XMLReaderFactory;
 import org.xml.sax.helpers.DefaultHandler;
 //import javax.xml.parsers.SAXParser;
 import org.apache.crimson.parser.Parser2;
-import org.apache.xerces.parsers.SAXParser;
 import org.xml.sax.SAXException;
 
 import zone.HTMLwriter;
@@ -78,28 +79,62 @@ public class SvgStrokeParser extends DefaultHandler
      */
     PageData parseLogData(String logData, HTMLwriter h)
            throws LogParseException
+    {
+        return parseLogData(new InputSource(new StringReader(logData)), h);
+    }
+
+    /**
+     * calls up the xml parser to process svg data read from a Reader.
+     *
+     * @param logData a Reader giving svg data for a page of stroke input
+     * @param h a HTMLwriter for sending diagnostic output
+     * @return a PageData holding all the read and processed strokes
+     * @throws LogParseException
+     */
+    PageData parseLogData(Reader logData, HTMLwriter h)
+           throws LogParseException
+    {
+        return parseLogData(new InputSource(logData), h);
+    }
+
+    /**
+     * calls up the xml parser to process svg data read from a byte stream. The xml parser works out
+     * the character encoding from the document itself.
+     *
+     * @param logData an InputStream giving svg data for a page of stroke input
+     * @param h a HTMLwriter for sending diagnostic output
+     * @return a PageData holding all the read and processed strokes
+     * @throws LogParseException
+     */
+    PageData parseLogData(InputStream logData, HTMLwriter h)
+           throws LogParseException
+    {
+        return parseLogData(new InputSource(logData), h);
+    }
+
+    /**
+     * calls up the xml parser to process an svg document. The SAX parser pulls the document through
+     * in chunks, and strokes are built as each path element arrives, so the document as a whole never
+     * needs to be held in memory.
+     *
+     * @param is an InputSource for svg data for a page of stroke input
+     * @param h a HTMLwriter for sending diagnostic output
+     * @return a PageData holding all the read and processed strokes
+     * @throws LogParseException
+     */
+    PageData parseLogData(InputSource is, HTMLwriter h)
+           throws LogParseException
    {
        http = h;
        
 // initialise all the basic structures to build up a fresh page
-        strokeList = new LinkedList();
-        groupList = new LinkedList();
-        groupStack = new Stack();
+        strokeList = new LinkedList<>();
+        groupList = new LinkedList<>();
+        groupStack = new Stack<>();
         maxX = maxY = 0;
         
-        XMLReader   xr = new SAXParser();
-	xr.setContentHandler(this);
-	xr.setErrorHandler(this);
-        try {
-            xr.setFeature("http://xml.org/sax/features/validation", false); 
-            xr.setFeature("http://xml.org/sax/features/external-parameter-entities", false); 
-        } catch (SAXException e) {
-            ;
-        }
+        XMLReader   xr = SaxParserPool.acquire(this, this);
 
-        StringReader r = new StringReader(logData);
-        InputSource is = new InputSource(r);
-        
         strokeList.clear();
         
         try {
@@ -108,6 +143,11 @@ public class SvgStrokeParser extends DefaultHandler
             http.printbr("io exception: "+e.getMessage());
         } catch (SAXException e) {
             http.printbr("sax exception: "+e.getMessage());
+        } finally {
+            SaxParserPool.release(xr);
+        }
+        if (pipeline != null) {
+            pipeline.drain(http);
         }
 
         PageData page = new PageData(strokeList, groupList, maxX, maxY); 
@@ -134,9 +174,6 @@ public class SvgStrokeParser extends DefaultHandler
    {
         int i;
         
-        Pattern pathStyleElementPattern = Pattern.compile(
-                "");
-        
         Stroke  s = new Stroke();
         if (!groupStack.empty()) {
             StrokeGroup   g = groupStack.peek();
@@ -186,15 +223,33 @@ public class SvgStrokeParser extends DefaultHandler
                 groupList.add(s.group);
             } else if (qualifiedName.equals("d")) {
                 /*
-                 * the path data for the stroke
+                 * the path data for the stroke. the usual straight line paths are done by the PathDataDecoder,
+                 * anything more interesting by a PathDataAttribute
                  */
+                 if (pathDecoder.decode(atts.getValue(i))) {
+                     int    n = pathDecoder.n;
+                     float  x[] = new float[n];
+                     float  y[] = new float[n];
+// the decoder's buffers are reused for the next path
+                     System.arraycopy(pathDecoder.x, 0, x, 0, n);
+                     System.arraycopy(pathDecoder.y, 0, y, 0, n);
+                     s.SetTrace(new InkTrace(n, x, y));
+                     s.SetBounds(pathDecoder.xMoments, pathDecoder.yMoments);
+                     if (n > 0) {
+                         if (pathDecoder.xMoments.Max() > maxX) {
+                             maxX = pathDecoder.xMoments.Max();
+                         }
+                         if (pathDecoder.yMoments.Max() > maxY) {
+                             maxY = pathDecoder.yMoments.Max();
+                         }
+                     }
+                     continue;
+                 }
                  PathDataAttribute  p = new PathDataAttribute(atts.getValue(i));
                  LinkedList<Point>  coords = p.decompilePathData();
-                 s.nSample = coords.size();
-                 s.sample = new InkSample[s.nSample];
-                 int ind = 0;
+                 s.SetMax(coords.size());
                  for (Point pt: coords) {
-                     s.sample[ind++] = new InkSample(pt);
+                     s.Add(pt.x, pt.y);
                  }
                  s.CalculateBounds(); 
 
@@ -277,10 +332,16 @@ public class SvgStrokeParser extends DefaultHandler
         switch (g.type) {
             case Signature: {
                 groupList.add(g);
+                if (pipeline != null && g.info != null) {
+                    pipeline.submit(g);
+                }
                 break;
             }
             case SignatureTraining: {
                 groupList.add(g);
+                if (pipeline != null && g.info != null) {
+                    pipeline.submit(g);
+                }
                 break;
             }
             case Vanilla: {
@@ -329,7 +390,16 @@ public class SvgStrokeParser extends DefaultHandler
         
         if (qName.equals("path")) {
             try {
-                strokeList.add(getStrokeFromPath(atts));
+                Stroke  s = getStrokeFromPath(atts);
+                strokeList.add(s);
+/*
+ * strokes in a signature group are done with their group, and strokes that enclose others have to wait
+ * until the whole document has been read. anything else can be started on straight away
+ */
+                if (pipeline != null && s.group == null && s.bounds != null &&
+                        (groupStack.empty() || groupStack.peek().type == StrokeGroup.Type.Vanilla)) {
+                    pipeline.submit(s);
+                }
             } catch (ZoneException e) {
                 http.printbr(e.getMessage());
             } catch (LogParseException e) {
@@ -381,4 +451,8 @@ public class SvgStrokeParser extends DefaultHandler
     float                   maxX;
     /** maximum path y value, used to set up page bounding box */
     float                   maxY;
+    /** if set, strokes and groups are handed to this for feature calculation as soon as they are read */
+    StrokePipeline          pipeline = null;
+    /** decoder for path data, reused from one path to the next */
+    PathDataDecoder         pathDecoder = new PathDataDecoder();
 }
@@ -153,7 +153,7 @@ public class Symbol extends DoubleLinkNode
      {
         type = t;
         certainty = c;
-        strokes = new LinkedList();
+        strokes = new LinkedList<>();
         for (Stroke s: si) {
             strokes.add(s);
         }
@@ -173,7 +173,7 @@ public class Symbol extends DoubleLinkNode
      {
         type = t;
         certainty = c;
-        strokes = new LinkedList();
+        strokes = new LinkedList<>();
         for (Stroke s: si) {
             strokes.add(s);
         }
@@ -1,9 +1,16 @@
 
 package gita;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /** 
  * wrapper around tolerances used by gita ... attempt to centralize as much config stuff
  * as possible
+ *<p>
+ * The non-final statics are changed only through <i>Set()</i>, which takes <i>lock</i> for
+ * writing. A page analysis holds it for reading, so the values can't change half way through one.
  */
 public class Tolerance
 {
@@ -35,6 +42,14 @@ public class Tolerance
     public static float    absoluteAngleFilterThreshold = (float)0.22;
     /** smallest size segment used when resampling the original contour. this prevents a fair amount of degeneracy in the resampled results */
     public static float    minimumContourResampleSegment = (float)1.0;
+    /** number of points the contour is resampled to, when resampling to a fixed number of points along the path */
+    public static int      contourResamplePoints = 64;
+    /** use the fast approximate trig functions of Trigga for the per sample angle calculations */
+    public static boolean  fastTrig = false;
+    /** greatest distance in pixels of a dropped point from the path, when straightening by the Douglas-Peucker filter */
+    public static float    simplifyDistanceTolerance = (float)1.0;
+    /** least area in square pixels of the triangle made by a point kept and its neighbours, when straightening by the Visvalingam filter */
+    public static float    simplifyAreaTolerance = (float)2.0;
 ////////////////////////////////////////////////////////////////////////
 // global threshold values, used by Stroke
 //////////////////////////////////////////////////////////////////////
@@ -57,6 +72,8 @@ public class Tolerance
     public static final float slightTangleThresh = (float) 1.0;
     /** threshold value within which a stroke is considered a strong curve, anything from a quarter arc to nearly a full circle. In radians. */
     public static final float strongTangleThresh = (float) 6.0;
+    /** greatest distance in pixels of a dropped point from the path, when the filtered stroke is simplified by the Douglas-Peucker filter. 0 leaves it as it is */
+    public static float       curveSimplifyTolerance = (float) 0.0;
 ////////////////////////////////////////////////////////////////////////
 // global threshold values, used by InkFilta
 //////////////////////////////////////////////////////////////////////
@@ -66,6 +83,45 @@ public class Tolerance
     public static final float penArtifactFiltaLengthThresh = (float) 4.0;
     /** threshold value within which a stroke is considered a strong curve, anything from a quarter arc to nearly a full circle. In radians. */
     public static final int penArtifactFiltaPointThresh = 3;
-   
+
+    /**
+     * sets one of the non-final statics from a string, waiting for any analysis in progress to finish
+     *
+     * @param name the name of the tolerance
+     * @param value its new value
+     * @throws IllegalArgumentException if the name isn't a settable tolerance, or the value doesn't parse
+     */
+    public static void Set(String name, String value)
+    {
+        lock.writeLock().lock();
+        try {
+            Field   f = Tolerance.class.getField(name);
+            int     mod = f.getModifiers();
+            if (!Modifier.isStatic(mod) || Modifier.isFinal(mod)) {
+                throw new IllegalArgumentException("tolerance "+name+" can't be changed");
+            }
+            Class<?> t = f.getType();
+            if (t == float.class) {
+                f.setFloat(null, Float.parseFloat(value));
+            } else if (t == int.class) {
+                f.setInt(null, Integer.parseInt(value));
+            } else if (t == boolean.class) {
+                f.setBoolean(null, Boolean.parseBoolean(value));
+            } else {
+                throw new IllegalArgumentException("tolerance "+name+" has an unsupported type");
+            }
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("no such tolerance "+name);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad value for tolerance "+name+": "+value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("tolerance "+name+" can't be changed");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** held for reading while the strokes of a page are analysed, and for writing by <i>Set()</i> */
+    public static final ReentrantReadWriteLock  lock = new ReentrantReadWriteLock();
 }
 
@@ -0,0 +1,164 @@
+/*
+ * Trigga.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+/**
+ * The trig functions used per sample by the feature calculations, with a fast approximate form of
+ * each, selected by <i>Tolerance.fastTrig</i>. With it off, the exact forms just call <i>Math</i>.
+ *<p>
+ * The fast arc tangent is an odd minimax polynomial of degree 15 in the ratio of the smaller to the larger
+ * of |x| and |y|, folded out to the four quadrants. Its error is no more than 4e-7 radians,
+ * a couple of ULP at pi. The fast sine and cosine interpolate linearly in a table of 4096 sines over
+ * a full turn, with an error of no more than 4e-7. These are well below the size of the angles
+ * that any of the classification thresholds in <i>Tolerance</i> care about, but they aren't
+ * the same as the exact results, so features calculated in the two modes differ in the last
+ * few places. <i>ArchiveReanalyser -c</i> reports how far.
+ *
+ * @see Tolerance
+ * @see InkFilta
+ * @author dak
+ * @since you asked
+ */
+public class Trigga
+{
+    /**
+     * @return atan2(y, x), fast or exact as <i>Tolerance.fastTrig</i> says
+     */
+    public static float Atan2(float y, float x)
+    {
+        if (Tolerance.fastTrig) {
+            return FastAtan2(y, x);
+        }
+        return (float)Math.atan2(y, x);
+    }
+
+    /**
+     * @return sin(a), fast or exact as <i>Tolerance.fastTrig</i> says
+     */
+    public static float Sin(float a)
+    {
+        if (Tolerance.fastTrig) {
+            return FastSin(a);
+        }
+        return (float)Math.sin(a);
+    }
+
+    /**
+     * @return cos(a), fast or exact as <i>Tolerance.fastTrig</i> says
+     */
+    public static float Cos(float a)
+    {
+        if (Tolerance.fastTrig) {
+            return FastCos(a);
+        }
+        return (float)Math.cos(a);
+    }
+
+    /**
+     * the angle turned between two segments, from the cross and dot products of their directions,
+     * as <i>InkFilta.Tangle</i> works it out but with the fast arc tangent. As there, a segment
+     * that doubles straight back turns by 0, not pi.
+     *
+     * @param cross the cross product of the segment before and the segment
+     * @param dot the dot product of the segment before and the segment
+     * @return the angle, in the range [-pi, pi]
+     */
+    public static float Tangle(float cross, float dot)
+    {
+        if (cross == 0) {
+            return 0;
+        }
+        return FastAtan2(cross, dot);
+    }
+
+    /**
+     * @return an approximation of atan2(y, x), good to 4e-7 radians
+     */
+    public static float FastAtan2(float y, float x)
+    {
+        float   ax = Math.abs(x);
+        float   ay = Math.abs(y);
+        float   hi = Math.max(ax, ay);
+        if (hi == 0) {
+            return 0;
+        }
+        float   z = Math.min(ax, ay)/hi;
+        float   a = AtanPoly(z);
+        if (ay > ax) {
+            a = HALF_PI - a;
+        }
+        if (x < 0) {
+            a = PI - a;
+        }
+        return y < 0? -a: a;
+    }
+
+    /**
+     * @return an approximation of atan(z), for z in [0, 1]
+     */
+    static float AtanPoly(float z)
+    {
+        float   z2 = z*z;
+        return z*(A1 + z2*(A3 + z2*(A5 + z2*(A7 + z2*(A9 + z2*(A11 + z2*(A13 + z2*A15)))))));
+    }
+
+    /**
+     * @return an approximation of sin(a), good to 4e-7
+     */
+    public static float FastSin(float a)
+    {
+        return Lookup(a*STEPS_PER_RADIAN);
+    }
+
+    /**
+     * @return an approximation of cos(a), good to 4e-7
+     */
+    public static float FastCos(float a)
+    {
+        return Lookup(a*STEPS_PER_RADIAN + TABLE_SIZE/4);
+    }
+
+    /**
+     * interpolates in the sine table
+     *
+     * @param p the angle, in table steps. this is a double so that the fraction of a step is still
+     *          good for angles of several turns
+     */
+    static float Lookup(double p)
+    {
+        if (Double.isNaN(p) || Double.isInfinite(p)) {
+            return Float.NaN;
+        }
+        double  f = Math.floor(p);
+        int     i = ((int)(long)f) & (TABLE_SIZE-1);
+        float   t = (float)(p - f);
+        return sinTable[i] + t*(sinTable[i+1] - sinTable[i]);
+    }
+
+    /** number of steps in a full turn of the sine table. a power of 2 */
+    static final int        TABLE_SIZE = 4096;
+    /** table steps in a radian */
+    static final double     STEPS_PER_RADIAN = TABLE_SIZE/(2*Math.PI);
+    /** sines at each step, with the first repeated at the end so interpolation needn't wrap */
+    static final float[]    sinTable = new float[TABLE_SIZE+1];
+    static {
+        for (int i=0; i<=TABLE_SIZE; i++) {
+            sinTable[i] = (float)Math.sin(2*Math.PI*i/TABLE_SIZE);
+        }
+    }
+
+    static final float      PI = (float)Math.PI;
+    static final float      HALF_PI = (float)(Math.PI/2);
+    /** coefficients of the minimax polynomial for atan on [0, 1] */
+    static final float      A1 = 0.99999934f;
+    static final float      A3 = -0.33329861f;
+    static final float      A5 = 0.19946566f;
+    static final float      A7 = -0.13908630f;
+    static final float      A9 = 0.09642197f;
+    static final float      A11 = -0.05591233f;
+    static final float      A13 = 0.02186296f;
+    static final float      A15 = -0.00405457f;
+}
@@ -0,0 +1,177 @@
+/*
+ * InkVectaSimd.java
+ *
+ * Created on 18 October 2026
+ */
+package gita;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The <i>InkVecta</i> kernels, done with the incubating Vector API over as many lanes as the machine
+ * has. The ends of the arrays that don't fill a vector are left to the scalar forms.
+ *<p>
+ * This is the only class that refers to jdk.incubator.vector. It needs --add-modules
+ * jdk.incubator.vector to compile and to run, and is only ever loaded by name, from
+ * <i>InkVecta.Use()</i>, so that the rest of the package does without it. For the same reason it
+ * is kept in its own source root, WEB-INF/simd, and is compiled on its own, against the classes of
+ * the rest of the package, only where the module is there:
+ *<pre>
+ *  javac --add-modules jdk.incubator.vector -cp classes -d classes simd/gita/InkVectaSimd.java
+ *</pre>
+ *
+ * @see InkVecta
+ * @author dak
+ * @since you asked
+ */
+public class InkVectaSimd extends InkVecta
+{
+    /**
+     * Creates the SIMD kernels
+     */
+    public InkVectaSimd()
+    {
+    }
+
+    public String Name()
+    {
+        return "simd "+S.length()+"x"+S.elementSize();
+    }
+
+    public void SegmentLengths(float xs[], float ys[], int n, float la[])
+    {
+        if (n <= L) {
+            super.SegmentLengths(xs, ys, n, la);
+            return;
+        }
+        la[0] = 0;
+        int     i = 1;
+        for (int bound=1+S.loopBound(n-1); i<bound; i+=L) {
+            FloatVector dX = FloatVector.fromArray(S, xs, i).sub(FloatVector.fromArray(S, xs, i-1));
+            FloatVector dY = FloatVector.fromArray(S, ys, i).sub(FloatVector.fromArray(S, ys, i-1));
+            dX.mul(dX).add(dY.mul(dY)).lanewise(VectorOperators.SQRT).intoArray(la, i);
+        }
+        for (; i<n; i++) {
+            float   dX = xs[i] - xs[i-1];
+            float   dY = ys[i] - ys[i-1];
+            la[i] = (float)Math.sqrt(dX*dX + dY*dY);
+        }
+    }
+
+    public void Tangles(float xs[], float ys[], int n, float ldX, float ldY, float theta[])
+    {
+        if (n <= L+1) {
+            super.Tangles(xs, ys, n, ldX, ldY, theta);
+            return;
+        }
+        theta[1] = InkFilta.Tangle(xs[1] - xs[0], ys[1] - ys[0], ldX, ldY);
+        int     i = 2;
+        for (int bound=2+S.loopBound(n-2); i<bound; i+=L) {
+            FloatVector x1 = FloatVector.fromArray(S, xs, i-1);
+            FloatVector y1 = FloatVector.fromArray(S, ys, i-1);
+            FloatVector dX = FloatVector.fromArray(S, xs, i).sub(x1);
+            FloatVector dY = FloatVector.fromArray(S, ys, i).sub(y1);
+            FloatVector lX = x1.sub(FloatVector.fromArray(S, xs, i-2));
+            FloatVector lY = y1.sub(FloatVector.fromArray(S, ys, i-2));
+            FloatVector num = dY.mul(lX).sub(lY.mul(dX));
+            FloatVector den = dX.mul(lX).add(dY.mul(lY));
+            if (Tolerance.fastTrig) {
+                FastTangles(num, den).intoArray(theta, i);
+                continue;
+            }
+            FloatVector tan = num.div(den);
+            FloatVector t = tan.lanewise(VectorOperators.ATAN);
+            VectorMask<Float>   numNeg = num.lt(0);
+            VectorMask<Float>   numPos = num.compare(VectorOperators.GT, 0);
+            VectorMask<Float>   tanNeg = tan.lt(0);
+            t = t.add(PI, tanNeg.and(numPos));
+            t = t.sub(PI, tanNeg.not().and(numNeg));
+// a zero denominator is a right angle, or no angle at all
+            VectorMask<Float>   denZero = den.eq(0);
+            FloatVector right = ZERO.blend(HALF_PI, numPos).blend(-HALF_PI, numNeg);
+            t.blend(right, denZero).intoArray(theta, i);
+        }
+        for (; i<n; i++) {
+            theta[i] = InkFilta.Tangle(xs[i] - xs[i-1], ys[i] - ys[i-1],
+                                       xs[i-1] - xs[i-2], ys[i-1] - ys[i-2]);
+        }
+    }
+
+    /**
+     * the angles turned, by the fast arc tangent, as <i>Trigga.Tangle</i> and to the bit the same
+     *
+     * @param num cross products of the segments and the segments before
+     * @param den dot products of the segments and the segments before
+     * @return the angles
+     */
+    static FloatVector FastTangles(FloatVector num, FloatVector den)
+    {
+        FloatVector ax = den.abs();
+        FloatVector ay = num.abs();
+        FloatVector z = ax.min(ay).div(ax.max(ay));
+        FloatVector z2 = z.mul(z);
+        FloatVector p = z2.mul(Trigga.A15).add(Trigga.A13);
+        p = p.mul(z2).add(Trigga.A11);
+        p = p.mul(z2).add(Trigga.A9);
+        p = p.mul(z2).add(Trigga.A7);
+        p = p.mul(z2).add(Trigga.A5);
+        p = p.mul(z2).add(Trigga.A3);
+        p = p.mul(z2).add(Trigga.A1);
+        FloatVector t = p.mul(z);
+        t = t.blend(t.neg().add(Trigga.HALF_PI), ay.compare(VectorOperators.GT, ax));
+        t = t.blend(t.neg().add(Trigga.PI), den.lt(0));
+        t = t.blend(t.neg(), num.lt(0));
+        return t.blend(0, num.eq(0));
+    }
+
+    public void DyDx(float dy[], float dx[], int n, float dYdX[])
+    {
+        int     i = 0;
+        for (int bound=S.loopBound(n); i<bound; i+=L) {
+            FloatVector y = FloatVector.fromArray(S, dy, i);
+            FloatVector x = FloatVector.fromArray(S, dx, i);
+            FloatVector inf = INF.blend(Float.NEGATIVE_INFINITY, y.lt(0));
+            y.div(x).blend(inf, x.eq(0)).intoArray(dYdX, i);
+        }
+        for (; i<n; i++) {
+            if (dx[i] == 0) {
+                dYdX[i] = dy[i] < 0? Float.NEGATIVE_INFINITY: Float.POSITIVE_INFINITY;
+            } else {
+                dYdX[i] = dy[i]/dx[i];
+            }
+        }
+    }
+
+    public void Normalize(float dL[], int n, float nudl[])
+    {
+        int         bound = S.loopBound(n);
+        FloatVector sum = ZERO;
+        int         i = 0;
+        for (; i<bound; i+=L) {
+            sum = sum.add(FloatVector.fromArray(S, dL, i));
+        }
+        float       len = sum.reduceLanes(VectorOperators.ADD);
+        for (; i<n; i++) {
+            len += dL[i];
+        }
+        FloatVector vLen = FloatVector.broadcast(S, len);
+        for (i=0; i<bound; i+=L) {
+            FloatVector.fromArray(S, dL, i).div(vLen).intoArray(nudl, i);
+        }
+        for (; i<n; i++) {
+            nudl[i] = dL[i]/len;
+        }
+    }
+
+    /** the widest float vectors the machine does well */
+    static final VectorSpecies<Float>   S = FloatVector.SPECIES_PREFERRED;
+    /** number of lanes */
+    static final int            L = S.length();
+    static final FloatVector    ZERO = FloatVector.zero(S);
+    static final FloatVector    INF = FloatVector.broadcast(S, Float.POSITIVE_INFINITY);
+    static final float          PI = (float) Math.PI;
+    static final float          HALF_PI = (float) Math.PI/2;
+}